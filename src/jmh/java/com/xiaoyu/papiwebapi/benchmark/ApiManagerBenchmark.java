@@ -0,0 +1,83 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.api.ApiManager;
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlugin;
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ApiManager 的查询开销，每个HTTP请求都会查询端点对应的占位符
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiManagerBenchmark {
+
+    @Param({"10", "500"})
+    public int endpoints;
+
+    private SimulatedPlugin plugin;
+    private ApiManager apiManager;
+    private String[] queries;
+    private int cursor;
+
+    @Setup
+    public void setup() throws Exception {
+        plugin = SimulatedPlugin.create(SimulatedServer.install(), Collections.emptyMap());
+        apiManager = new ApiManager(plugin);
+        Map<String, String> apis = new HashMap<>();
+        for (int i = 0; i < endpoints; i++) {
+            apis.put("endpoint" + i, "placeholder_" + i);
+        }
+        apiManager.registerApis(apis);
+
+        Random random = new Random(42);
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = "endpoint" + random.nextInt(endpoints);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        apiManager.shutdown();
+        plugin.disable();
+    }
+
+    @Benchmark
+    public String getPlaceholderHit() {
+        return apiManager.getPlaceholder(queries[cursor++ & 1023]);
+    }
+
+    @Benchmark
+    public boolean isRegisteredMiss() {
+        return apiManager.isApiRegistered("NoSuchEndpoint");
+    }
+
+    @Benchmark
+    public long getVersion() {
+        return apiManager.getVersion();
+    }
+
+    /**
+     * 路由表检查版本后读取整个注册表，返回的是当前快照，不会复制
+     */
+    @Benchmark
+    public Map<String, String> getRegisteredApis() {
+        return apiManager.getRegisteredApis();
+    }
+}
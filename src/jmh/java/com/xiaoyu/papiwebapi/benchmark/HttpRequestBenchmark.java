@@ -0,0 +1,144 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlaceholders;
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlugin;
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import com.xiaoyu.papiwebapi.simulation.ValueDistribution;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的HTTP请求路径：在模拟服务器上启用插件，通过本地回环地址发送请求
+ * 包括路由、限流、快照或排行榜查询、响应编码和访问日志
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpRequestBenchmark {
+
+    private static final String ENDPOINT = "level";
+    private static final String PLACEHOLDER = "%player_level%";
+
+    @Param({"10000"})
+    public int players;
+
+    @Param({"200"})
+    public int online;
+
+    @Param({"UNIFORM"})
+    public ValueDistribution distribution;
+
+    @Param({"true"})
+    public boolean compression;
+
+    private SimulatedPlugin plugin;
+    private HttpClient client;
+    private String baseUrl;
+    private HttpRequest[] playerRequests;
+    private int cursor;
+
+    @Setup
+    public void setup() throws Exception {
+        SimulatedServer server = SimulatedServer.install();
+        server.setPlayers(players, online);
+        PlaceholderUtils.setEvaluator(new SimulatedPlaceholders(server, distribution, 0));
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        Map<String, Object> config = new HashMap<>();
+        config.put("server.host", "127.0.0.1");
+        config.put("server.port", port);
+        config.put("server.compression.enabled", compression);
+        config.put("security.authentication.enabled", false);
+        config.put("security.rate_limit.enabled", false);
+        config.put("geolocation.provider", "offline");
+        config.put("leaderboard.backfill_per_tick", players);
+        plugin = SimulatedPlugin.create(server, config);
+        plugin.enable();
+        server.callOnMainThread(() -> {
+            plugin.getApiManager().registerApi(ENDPOINT, PLACEHOLDER);
+            return null;
+        });
+
+        // 等待快照和排行榜索引就绪，之后的请求不再进入主线程
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (plugin.getSnapshotService().getEndpointSnapshot(ENDPOINT) == null
+                || plugin.getLeaderboardService().getReadyIndex(ENDPOINT, PLACEHOLDER) == null) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Snapshot or leaderboard not ready after 60 seconds");
+            }
+            Thread.sleep(50);
+        }
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://127.0.0.1:" + port + "/";
+
+        Random random = new Random(42);
+        playerRequests = new HttpRequest[256];
+        for (int i = 0; i < playerRequests.length; i++) {
+            playerRequests[i] = request(ENDPOINT + "/" + SimulatedServer.playerName(random.nextInt(players)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        plugin.disable();
+    }
+
+    @Benchmark
+    public int onlineText() throws Exception {
+        return send(request(ENDPOINT));
+    }
+
+    @Benchmark
+    public int onlineJson() throws Exception {
+        return send(request(ENDPOINT + "?format=json"));
+    }
+
+    @Benchmark
+    public int player() throws Exception {
+        return send(playerRequests[cursor++ & 255]);
+    }
+
+    @Benchmark
+    public int sortTop10() throws Exception {
+        return send(request(ENDPOINT + "/sort/htl/10"));
+    }
+
+    @Benchmark
+    public int notFound() throws Exception {
+        return send(request("nosuchendpoint"));
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Accept-Encoding", "gzip")
+                .build();
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        return response.statusCode() + response.body().length;
+    }
+}
@@ -0,0 +1,84 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.utils.geo.IPDatabaseConverter;
+import com.xiaoyu.papiwebapi.utils.geo.OfflineIPDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线IP数据库查询性能
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IPLocationBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int ranges;
+
+    private File databaseFile;
+    private OfflineIPDatabase database;
+    private String[] ipv4Addresses;
+    private String[] ipv6Addresses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+
+        // 将IPv4地址空间均分为若干区间，IPv6使用2001:db8::/32下的子网
+        long step = (1L << 32) / ranges;
+        for (int i = 0; i < ranges; i++) {
+            long start = i * step;
+            converter.addRange(toIPv4(start), toIPv4(start + step - 1), "Region " + (i % 500));
+        }
+        for (int i = 0; i < ranges / 10; i++) {
+            converter.addCidr(String.format("2001:db8:%x::/48", i), "Region " + (i % 500));
+        }
+
+        databaseFile = Files.createTempFile("ip-region", ".db").toFile();
+        converter.write(databaseFile);
+        database = OfflineIPDatabase.open(databaseFile);
+
+        ipv4Addresses = new String[4096];
+        ipv6Addresses = new String[4096];
+        for (int i = 0; i < ipv4Addresses.length; i++) {
+            ipv4Addresses[i] = toIPv4(random.nextInt() & 0xFFFFFFFFL);
+            ipv6Addresses[i] = String.format("2001:db8:%x::%x", random.nextInt(Math.max(1, ranges / 10)), random.nextInt(0xFFFF));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        databaseFile.delete();
+    }
+
+    @Benchmark
+    public String lookupIPv4() {
+        return database.lookup(ipv4Addresses[cursor++ & 4095]);
+    }
+
+    @Benchmark
+    public String lookupIPv6() {
+        return database.lookup(ipv6Addresses[cursor++ & 4095]);
+    }
+
+    private static String toIPv4(long address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+}
@@ -0,0 +1,57 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlugin;
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import com.xiaoyu.papiwebapi.utils.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问日志的吞吐量：一次写入一批记录，并等待日志线程取出全部记录
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LogManagerBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private SimulatedPlugin plugin;
+    private LogManager logManager;
+    private int counter;
+
+    @Setup
+    public void setup() throws Exception {
+        plugin = SimulatedPlugin.create(SimulatedServer.install(), Collections.emptyMap());
+        logManager = new LogManager(plugin);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        logManager.shutdown();
+        plugin.disable();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void logAccess() {
+        for (int i = 0; i < BATCH; i++) {
+            logManager.logAccess("203.0.113." + (counter++ & 255), "Simulated Region", "/level/Player_" + i, "level", 200,
+                    true, "Player_" + i + ": 42");
+        }
+        while (Metrics.LOG_QUEUE_DEPTH.get() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
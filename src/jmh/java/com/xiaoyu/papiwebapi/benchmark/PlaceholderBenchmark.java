@@ -0,0 +1,104 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlaceholders;
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import com.xiaoyu.papiwebapi.simulation.ValueDistribution;
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+import com.xiaoyu.papiwebapi.utils.PlayerNameIndex;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PlaceholderUtils 在模拟服务器上的开销：全量排序、前N名选择和单个玩家的查询
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaceholderBenchmark {
+
+    private static final String PLACEHOLDER = "%player_level%";
+
+    @Param({"1000", "20000"})
+    public int players;
+
+    @Param({"100"})
+    public int online;
+
+    @Param({"UNIFORM", "FORMATTED", "MIXED"})
+    public ValueDistribution distribution;
+
+    // 每次计算占位符额外消耗的时间（纳秒）
+    @Param({"0"})
+    public long costNanos;
+
+    private String[] onlineQueries;
+    private String[] offlineQueries;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        SimulatedServer server = SimulatedServer.install();
+        server.setPlayers(players, online);
+        PlaceholderUtils.setEvaluator(new SimulatedPlaceholders(server, distribution, costNanos));
+
+        PlayerNameIndex index = new PlayerNameIndex();
+        for (OfflinePlayer player : server.getServer().getOfflinePlayers()) {
+            index.put(player.getUniqueId(), player.getName());
+        }
+        index.setReady(true);
+        PlaceholderUtils.setPlayerNameIndex(index);
+
+        Random random = new Random(42);
+        onlineQueries = new String[1024];
+        offlineQueries = new String[1024];
+        for (int i = 0; i < 1024; i++) {
+            onlineQueries[i] = SimulatedServer.playerName(random.nextInt(Math.max(1, online)));
+            offlineQueries[i] = SimulatedServer.playerName(online + random.nextInt(players - online));
+        }
+    }
+
+    @Benchmark
+    public List<PlayerValue> sortedTop10() {
+        return PlaceholderUtils.getPlayersSorted(PLACEHOLDER, "htl", 10);
+    }
+
+    @Benchmark
+    public List<PlayerValue> sortedAll() {
+        return PlaceholderUtils.getPlayersSorted(PLACEHOLDER, "htl", 0);
+    }
+
+    @Benchmark
+    public List<PlayerValue> sortedByName() {
+        return PlaceholderUtils.getPlayersSorted(PLACEHOLDER, "atz", 0);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String valueOnline() {
+        return PlaceholderUtils.getPlaceholderValue(PLACEHOLDER, onlineQueries[cursor++ & 1023]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String valueOffline() {
+        return PlaceholderUtils.getPlaceholderValue(PLACEHOLDER, offlineQueries[cursor++ & 1023]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String valueMissing() {
+        return PlaceholderUtils.getPlaceholderValue(PLACEHOLDER, "NoSuchPlayer");
+    }
+}
@@ -0,0 +1,100 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import com.xiaoyu.papiwebapi.utils.PlayerNameIndex;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按名称查找离线玩家：遍历 Bukkit.getOfflinePlayers()（旧实现）与名称索引的对比
+ * 两者都通过模拟服务器获取玩家，包含创建离线玩家数组和调用 OfflinePlayer 方法的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlayerLookupBenchmark {
+
+    @Param({"100000"})
+    public int players;
+
+    private PlayerNameIndex index;
+    private String[] queries;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        SimulatedServer server = SimulatedServer.install();
+        server.setPlayers(players, 0);
+
+        index = new PlayerNameIndex();
+        for (OfflinePlayer player : server.getServer().getOfflinePlayers()) {
+            index.put(player.getUniqueId(), player.getName());
+        }
+        index.setReady(true);
+
+        // 查询使用不同的大小写
+        Random random = new Random(42);
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = SimulatedServer.playerName(random.nextInt(players)).toUpperCase();
+        }
+    }
+
+    /**
+     * 旧实现：每次查询都获取离线玩家数组（每次返回新数组）并逐个比较名称
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public OfflinePlayer scanHit() {
+        return scan(queries[cursor++ & 1023]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public OfflinePlayer scanMiss() {
+        return scan("NoSuchPlayer");
+    }
+
+    /**
+     * 新实现：在索引中找到UUID后按UUID获取玩家
+     */
+    @Benchmark
+    public OfflinePlayer indexHit() {
+        UUID uuid = index.find(queries[cursor++ & 1023]);
+        return uuid != null ? Bukkit.getOfflinePlayer(uuid) : null;
+    }
+
+    @Benchmark
+    public boolean indexMiss() {
+        String name = "NoSuchPlayer";
+        if (index.isKnownMissing(name)) {
+            return false;
+        }
+        if (index.find(name) == null) {
+            index.markMissing(name);
+            return false;
+        }
+        return true;
+    }
+
+    private static OfflinePlayer scan(String name) {
+        for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+            if (player.getName() != null && player.getName().equalsIgnoreCase(name)) {
+                return player;
+            }
+        }
+        return null;
+    }
+}
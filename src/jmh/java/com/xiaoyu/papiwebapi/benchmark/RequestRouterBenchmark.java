@@ -0,0 +1,143 @@
+package com.xiaoyu.papiwebapi.benchmark;
+
+import com.xiaoyu.papiwebapi.api.ApiManager;
+import com.xiaoyu.papiwebapi.http.RequestRouter;
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlugin;
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 每个请求的路由开销：正则匹配令牌加 split 分段（旧实现）与预构建路由表的对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestRouterBenchmark {
+
+    private static final String HOST = "0.0.0.0";
+    private static final int PORT = 8088;
+    private static final String TOKEN = "0123456789abcdef";
+    private static final String URL_PREFIX = "http://" + HOST + ":" + PORT;
+
+    @Param({"50"})
+    public int endpoints;
+
+    private final Map<String, String> apis = new HashMap<>();
+    private SimulatedPlugin plugin;
+    private ApiManager apiManager;
+    private Pattern tokenPattern;
+    private RequestRouter router;
+    private String[] paths;
+    private int cursor;
+
+    @Setup
+    public void setup() throws Exception {
+        for (int i = 0; i < endpoints; i++) {
+            apis.put("endpoint" + i, "%placeholder_" + i + "%");
+        }
+        plugin = SimulatedPlugin.create(SimulatedServer.install(), Collections.emptyMap());
+        apiManager = new ApiManager(plugin);
+        apiManager.registerApis(apis);
+
+        tokenPattern = Pattern.compile("/token=([^/]+)/(.*)");
+        router = new RequestRouter(true, "token", TOKEN, apiManager::getRegistry);
+
+        // 所有在线玩家、特定玩家、排行榜三种路由混合
+        paths = new String[256];
+        for (int i = 0; i < paths.length; i++) {
+            String endpoint = "endpoint" + (i % endpoints);
+            switch (i % 3) {
+                case 0:
+                    paths[i] = "/token=" + TOKEN + "/" + endpoint;
+                    break;
+                case 1:
+                    paths[i] = "/token=" + TOKEN + "/" + endpoint + "/Player" + i;
+                    break;
+                default:
+                    paths[i] = "/token=" + TOKEN + "/" + endpoint + "/sort/htl/10";
+                    break;
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        apiManager.shutdown();
+        plugin.disable();
+    }
+
+    /**
+     * 旧实现：正则匹配令牌、拼接实际路径和完整URL、split 分段并查询注册表
+     */
+    @Benchmark
+    public void regexSplit(Blackhole blackhole) {
+        String path = paths[cursor++ & 255];
+        String fullUrl = "http://" + HOST + ":" + PORT + path;
+        Matcher matcher = tokenPattern.matcher(path);
+        if (!matcher.find() || !TOKEN.equals(matcher.group(1))) {
+            return;
+        }
+        String actualPath = "/" + matcher.group(2);
+        String[] parts = actualPath.substring(1).split("/");
+        if (!apis.containsKey(parts[0])) {
+            return;
+        }
+        blackhole.consume(fullUrl);
+        blackhole.consume(apis.get(parts[0]));
+        if (parts.length >= 3 && parts[1].equalsIgnoreCase("sort")) {
+            int limit = -1;
+            if (parts.length >= 4) {
+                try {
+                    limit = Integer.parseInt(parts[3]);
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            blackhole.consume(parts[2]);
+            blackhole.consume(limit);
+        } else if (parts.length >= 2) {
+            blackhole.consume(parts[1]);
+        }
+    }
+
+    /**
+     * 新实现：一次扫描路径，按下标匹配令牌和端点
+     */
+    @Benchmark
+    public void router(Blackhole blackhole) {
+        String path = paths[cursor++ & 255];
+        String fullUrl = URL_PREFIX + path;
+        RequestRouter.Match match = router.route(path);
+        if (match.getAuth() != RequestRouter.Auth.OK) {
+            return;
+        }
+        blackhole.consume(fullUrl);
+        blackhole.consume(match.getPlaceholder());
+        switch (match.getType()) {
+            case SORT:
+                blackhole.consume(match.getSortOrder());
+                blackhole.consume(match.getLimit());
+                break;
+            case PLAYER:
+                blackhole.consume(match.getPlayerName());
+                break;
+            default:
+                break;
+        }
+    }
+}
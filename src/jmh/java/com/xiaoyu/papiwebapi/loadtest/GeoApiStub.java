@@ -0,0 +1,76 @@
+package com.xiaoyu.papiwebapi.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地的地理位置接口，代替 ip-api.com 的 /line/ 接口
+ * 每次查询等待固定的延迟，地区由IP决定
+ */
+public class GeoApiStub implements AutoCloseable {
+
+    private static final String[] REGIONS = {"广东 深圳", "北京 北京", "上海 上海", "浙江 杭州", "四川 成都"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final int delayMillis;
+    private final LongAdder requests = new LongAdder();
+
+    public GeoApiStub(int delayMillis) throws IOException {
+        this.delayMillis = delayMillis;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/line/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * 查询地址，用作 geolocation.api_url
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/line/";
+    }
+
+    /**
+     * 收到的查询数
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String ip = path.substring(path.lastIndexOf('/') + 1);
+        String[] region = REGIONS[Math.floorMod(ip.hashCode(), REGIONS.length)].split(" ");
+        byte[] body = ("中国\n" + region[0] + "\n" + region[1] + "\n").getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,131 @@
+package com.xiaoyu.papiwebapi.loadtest;
+
+import com.google.gson.stream.JsonWriter;
+import com.xiaoyu.papiwebapi.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个阶段内的请求统计，可被多个线程同时记录
+ * 出错指连接失败、超时或5xx响应，开放模式下因并发数已满而未发送的请求单独计为 dropped
+ */
+public class LoadStats {
+
+    private final Map<RouteMix.Route, RouteStats> routes = new EnumMap<>(RouteMix.Route.class);
+    private final RouteStats total = new RouteStats();
+
+    public LoadStats() {
+        for (RouteMix.Route route : RouteMix.Route.values()) {
+            routes.put(route, new RouteStats());
+        }
+    }
+
+    /**
+     * 记录收到的响应
+     */
+    public void record(RouteMix.Route route, int status, long nanos) {
+        total.record(status, nanos);
+        routes.get(route).record(status, nanos);
+    }
+
+    /**
+     * 记录失败的请求
+     */
+    public void error(RouteMix.Route route, long nanos) {
+        total.error(nanos);
+        routes.get(route).error(nanos);
+    }
+
+    /**
+     * 记录未能发送的请求
+     */
+    public void drop(RouteMix.Route route) {
+        total.dropped.increment();
+        routes.get(route).dropped.increment();
+    }
+
+    public long getCompleted() {
+        return total.latency.getCount();
+    }
+
+    /**
+     * 写入各项统计
+     *
+     * @param seconds 阶段的实际时长（秒），用于计算吞吐量
+     */
+    public void write(JsonWriter json, double seconds) throws IOException {
+        total.write(json, seconds);
+        json.name("routes").beginObject();
+        for (Map.Entry<RouteMix.Route, RouteStats> entry : routes.entrySet()) {
+            if (entry.getValue().requests.sum() + entry.getValue().dropped.sum() == 0) {
+                continue;
+            }
+            json.name(entry.getKey().getName()).beginObject();
+            entry.getValue().write(json, seconds);
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    private static class RouteStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        void record(int status, long nanos) {
+            requests.increment();
+            latency.record(nanos);
+            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+            if (status >= 500) {
+                errors.increment();
+            }
+        }
+
+        void error(long nanos) {
+            requests.increment();
+            errors.increment();
+            latency.record(nanos);
+        }
+
+        void write(JsonWriter json, double seconds) throws IOException {
+            long count = requests.sum();
+            long failed = errors.sum();
+            long notSent = dropped.sum();
+
+            json.name("requests").value(count);
+            json.name("throughput_rps").value(round(seconds > 0 ? count / seconds : 0));
+            json.name("errors").value(failed);
+            json.name("dropped").value(notSent);
+            json.name("error_rate").value(round(count + notSent > 0 ? (double) (failed + notSent) / (count + notSent) : 0));
+
+            json.name("latency_ms").beginObject();
+            json.name("mean").value(round(count > 0 ? latency.getSumSeconds() * 1000 / count : 0));
+            json.name("p50").value(millis(latency.quantile(0.5)));
+            json.name("p90").value(millis(latency.quantile(0.9)));
+            json.name("p99").value(millis(latency.quantile(0.99)));
+            json.name("p999").value(millis(latency.quantile(0.999)));
+            json.endObject();
+
+            json.name("status").beginObject();
+            for (Map.Entry<Integer, LongAdder> entry : new TreeMap<>(statuses).entrySet()) {
+                json.name(Integer.toString(entry.getKey())).value(entry.getValue().sum());
+            }
+            json.endObject();
+        }
+
+        private static double millis(long nanos) {
+            return round(nanos / 1_000_000.0);
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.xiaoyu.papiwebapi.loadtest;
+
+import com.google.gson.stream.JsonWriter;
+import com.xiaoyu.papiwebapi.http.HttpServer;
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlaceholders;
+import com.xiaoyu.papiwebapi.simulation.SimulatedPlugin;
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 端到端负载测试
+ * 在模拟服务器上启用插件，地理位置查询使用本地的模拟接口，
+ * 按配置的路由比例以封闭或开放模式发送请求，结果以JSON输出
+ * 运行: gradle loadTest -Ploadtest.mode=open -Ploadtest.rps=2000
+ */
+public class LoadTest {
+
+    static final String ENDPOINT = "level";
+    static final String SECOND_ENDPOINT = "balance";
+    private static final String TOKEN = "loadtest-token";
+
+    private final LoadTestOptions options;
+    private final RouteMix mix;
+    private HttpClient client;
+    private String baseUrl;
+
+    private LoadTest(LoadTestOptions options) {
+        this.options = options;
+        this.mix = RouteMix.parse(options.mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest test = new LoadTest(new LoadTestOptions());
+        String result;
+        try {
+            result = test.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        }
+
+        System.out.println(result);
+        if (!test.options.output.isEmpty()) {
+            File output = new File(test.options.output);
+            if (output.getParentFile() != null) {
+                output.getParentFile().mkdirs();
+            }
+            Files.write(output.toPath(), result.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Result written to " + output.getAbsolutePath());
+        }
+        // HTTP客户端和模拟服务器的线程不会自行退出
+        System.exit(0);
+    }
+
+    private String run() throws Exception {
+        SimulatedServer server = SimulatedServer.install();
+        server.setPlayers(options.players, options.online);
+        PlaceholderUtils.setEvaluator(new SimulatedPlaceholders(server, options.distribution,
+                TimeUnit.MICROSECONDS.toNanos(options.evaluationCostMicros)));
+
+        try (GeoApiStub geo = new GeoApiStub(options.geoDelayMillis)) {
+            SimulatedPlugin plugin = SimulatedPlugin.create(server, pluginConfig(geo));
+            plugin.enable();
+            try {
+                server.callOnMainThread(() -> {
+                    plugin.getApiManager().registerApi(ENDPOINT, "player_level");
+                    plugin.getApiManager().registerApi(SECOND_ENDPOINT, "vault_eco_balance");
+                    return null;
+                });
+                awaitReady(plugin);
+
+                client = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+                baseUrl = "http://127.0.0.1:" + plugin.getConfig().getInt("server.port");
+
+                System.out.println("Warming up for " + options.warmupSeconds + "s");
+                runPhase(new LoadStats(), options.warmupSeconds);
+
+                System.out.println("Running " + options.mode.name().toLowerCase() + "-loop load for "
+                        + options.durationSeconds + "s");
+                ServerCounters before = new ServerCounters(plugin.getHttpServer(), geo);
+                LoadStats stats = new LoadStats();
+                double seconds = runPhase(stats, options.durationSeconds);
+                ServerCounters after = new ServerCounters(plugin.getHttpServer(), geo);
+
+                return report(stats, seconds, before, after);
+            } finally {
+                plugin.disable();
+            }
+        }
+    }
+
+    private Map<String, Object> pluginConfig(GeoApiStub geo) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        Map<String, Object> config = new HashMap<>();
+        config.put("server.host", "127.0.0.1");
+        config.put("server.port", port);
+        config.put("server.executor.mode", options.executor);
+        config.put("server.executor.threads", options.threads);
+        config.put("server.compression.enabled", options.compression);
+        config.put("security.authentication.enabled", true);
+        config.put("security.authentication.token", TOKEN);
+        config.put("security.rate_limit.enabled", options.rateLimit);
+        // 客户端IP通过代理头传入
+        config.put("proxy.enabled", true);
+        config.put("proxy.header", "X-Forwarded-For");
+        config.put("proxy.trusted_proxies", Arrays.asList("127.0.0.1", "0:0:0:0:0:0:0:1"));
+        config.put("geolocation.provider", "api");
+        config.put("geolocation.api_url", geo.getUrl());
+        config.put("leaderboard.backfill_per_tick", options.players);
+        return config;
+    }
+
+    /**
+     * 等待快照和排行榜索引就绪，避免把启动过程计入结果
+     */
+    private void awaitReady(SimulatedPlugin plugin) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2);
+        for (String endpoint : new String[]{ENDPOINT, SECOND_ENDPOINT}) {
+            String placeholder = plugin.getApiManager().getPlaceholder(endpoint);
+            while (plugin.getSnapshotService().getEndpointSnapshot(endpoint) == null
+                    || plugin.getLeaderboardService().getReadyIndex(endpoint, placeholder) == null) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Endpoint " + endpoint + " not ready after 2 minutes");
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    /**
+     * 运行一个阶段
+     *
+     * @return 实际时长（秒），包括等待最后的响应
+     */
+    private double runPhase(LoadStats stats, int seconds) throws InterruptedException {
+        if (seconds <= 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        if (options.mode == LoadTestOptions.Mode.OPEN) {
+            runOpen(stats, start, end);
+        } else {
+            runClosed(stats, end);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * 封闭模式：每个客户端收到响应后立即发送下一个请求
+     */
+    private void runClosed(LoadStats stats, long end) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(options.concurrency);
+        for (int i = 0; i < options.concurrency; i++) {
+            clients.execute(() -> {
+                Random random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    RouteMix.Route route = mix.pick(random);
+                    HttpRequest request = request(route, random);
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        stats.record(route, response.statusCode(), System.nanoTime() - sent);
+                    } catch (IOException e) {
+                        stats.error(route, System.nanoTime() - sent);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        if (!clients.awaitTermination(end - System.nanoTime() + TimeUnit.SECONDS.toNanos(30), TimeUnit.NANOSECONDS)) {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * 开放模式：按固定间隔发送请求，延迟从计划发送的时间开始计算，
+     * 服务端变慢时排队的时间也计入延迟
+     */
+    private void runOpen(LoadStats stats, long start, long end) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(options.concurrency);
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, options.rps);
+        Random random = new Random();
+
+        long next = start;
+        while (next < end) {
+            long now = System.nanoTime();
+            if (now < next) {
+                LockSupport.parkNanos(next - now);
+                continue;
+            }
+
+            RouteMix.Route route = mix.pick(random);
+            long intended = next;
+            next += interval;
+            if (!inFlight.tryAcquire()) {
+                stats.drop(route);
+                continue;
+            }
+            client.sendAsync(request(route, random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long latency = System.nanoTime() - intended;
+                        if (error != null) {
+                            stats.error(route, latency);
+                        } else {
+                            stats.record(route, response.statusCode(), latency);
+                        }
+                        inFlight.release();
+                    });
+        }
+
+        // 等待进行中的请求完成
+        if (inFlight.tryAcquire(options.concurrency, 30, TimeUnit.SECONDS)) {
+            inFlight.release(options.concurrency);
+        }
+    }
+
+    private HttpRequest request(RouteMix.Route route, Random random) {
+        int clientIndex = random.nextInt(Math.max(1, options.clientIps));
+        String ip = "203." + ((clientIndex >> 16) & 255) + "." + ((clientIndex >> 8) & 255) + "." + (clientIndex & 255);
+        return HttpRequest.newBuilder(URI.create(baseUrl + route.path(TOKEN, options.players, random)))
+                .timeout(Duration.ofSeconds(10))
+                .header("X-Forwarded-For", ip)
+                .header("Accept-Encoding", "gzip")
+                .build();
+    }
+
+    private String report(LoadStats stats, double seconds, ServerCounters before, ServerCounters after)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("label").value(options.label);
+        json.name("timestamp").value(System.currentTimeMillis());
+        json.name("java").value(System.getProperty("java.version"));
+
+        json.name("config").beginObject();
+        json.name("mode").value(options.mode.name().toLowerCase());
+        json.name("target_rps").value(options.mode == LoadTestOptions.Mode.OPEN ? options.rps : 0);
+        json.name("concurrency").value(options.concurrency);
+        json.name("duration_seconds").value(options.durationSeconds);
+        json.name("players").value(options.players);
+        json.name("online").value(options.online);
+        json.name("distribution").value(options.distribution.name().toLowerCase());
+        json.name("eval_cost_us").value(options.evaluationCostMicros);
+        json.name("mix").value(options.mix);
+        json.name("client_ips").value(options.clientIps);
+        json.name("geo_delay_ms").value(options.geoDelayMillis);
+        json.name("executor").value(options.executor);
+        json.name("threads").value(options.threads);
+        json.name("compression").value(options.compression);
+        json.name("rate_limit").value(options.rateLimit);
+        json.endObject();
+
+        json.name("elapsed_seconds").value(Math.round(seconds * 1000) / 1000.0);
+        stats.write(json, seconds);
+
+        // 测试期间服务端的计数变化
+        json.name("server").beginObject();
+        json.name("http_rejected").value(after.httpRejected - before.httpRejected);
+        json.name("rate_limited").value(after.rateLimited - before.rateLimited);
+        json.name("geo_cache_hits").value(after.geoCacheHits - before.geoCacheHits);
+        json.name("geo_pending_joins").value(after.geoPendingJoins - before.geoPendingJoins);
+        json.name("geo_misses").value(after.geoMisses - before.geoMisses);
+        json.name("geo_failures").value(after.geoFailures - before.geoFailures);
+        json.name("geo_api_requests").value(after.geoApiRequests - before.geoApiRequests);
+        json.name("log_queue_depth").value(after.logQueueDepth);
+        json.endObject();
+
+        json.endObject();
+        json.flush();
+        return out.toString();
+    }
+
+    /**
+     * 服务端计数的快照
+     */
+    private static class ServerCounters {
+        final long httpRejected;
+        final long rateLimited;
+        final long geoCacheHits;
+        final long geoPendingJoins;
+        final long geoMisses;
+        final long geoFailures;
+        final long geoApiRequests;
+        final int logQueueDepth;
+
+        ServerCounters(HttpServer server, GeoApiStub geo) {
+            httpRejected = server.getWorkerExecutor().getRejectedCount();
+            rateLimited = server.getRateLimitedCount();
+            geoCacheHits = Metrics.GEO_CACHE_HITS.sum();
+            geoPendingJoins = Metrics.GEO_PENDING_JOINS.sum();
+            geoMisses = Metrics.GEO_MISSES.sum();
+            geoFailures = Metrics.GEO_FAILURES.sum();
+            geoApiRequests = geo.getRequestCount();
+            logQueueDepth = Metrics.LOG_QUEUE_DEPTH.get();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.xiaoyu.papiwebapi.loadtest;
+
+import com.xiaoyu.papiwebapi.simulation.ValueDistribution;
+
+import java.util.Locale;
+
+/**
+ * 负载测试的参数，从系统属性 loadtest.<名称> 读取
+ * 通过Gradle运行时使用 -Ploadtest.<名称>=<值> 传入
+ */
+public class LoadTestOptions {
+
+    public enum Mode {
+        // 固定并发数，每个客户端收到响应后才发送下一个请求
+        CLOSED,
+        // 按固定速率发送请求，与响应快慢无关，延迟从计划发送的时间开始计算
+        OPEN
+    }
+
+    final Mode mode = Mode.valueOf(string("mode", "closed").toUpperCase(Locale.ROOT));
+    // 开放模式下每秒发送的请求数
+    final int rps = integer("rps", 500);
+    // 封闭模式下的客户端数，开放模式下同时进行的最大请求数
+    final int concurrency = integer("concurrency", mode == Mode.OPEN ? 512 : 16);
+    final int warmupSeconds = integer("warmup", 5);
+    final int durationSeconds = integer("duration", 30);
+
+    // 模拟的玩家
+    final int players = integer("players", 10000);
+    final int online = integer("online", 200);
+    final ValueDistribution distribution = ValueDistribution.valueOf(
+            string("distribution", "uniform").toUpperCase(Locale.ROOT));
+    // 每次计算占位符额外消耗的时间（微秒）
+    final long evaluationCostMicros = integer("eval_cost_us", 0);
+
+    // 路由及权重，如 online:40,player:40,sort:15,batch:5
+    final String mix = string("mix", "online:40,player:40,sort:15,batch:5");
+    // 模拟的客户端IP数，通过代理头传入，用于测试地理位置缓存
+    final int clientIps = integer("client_ips", 1000);
+    // 模拟的地理位置接口每次查询的延迟（毫秒）
+    final int geoDelayMillis = integer("geo_delay_ms", 20);
+
+    // 插件配置
+    final String executor = string("executor", "pool");
+    final int threads = integer("threads", 8);
+    final boolean compression = Boolean.parseBoolean(string("compression", "true"));
+    final boolean rateLimit = Boolean.parseBoolean(string("rate_limit", "false"));
+
+    // 结果文件，为空时只输出到控制台
+    final String output = string("output", "");
+    // 写入结果的标签，如提交的哈希值，便于对比
+    final String label = string("label", "");
+
+    private static String string(String name, String def) {
+        String value = System.getProperty("loadtest." + name);
+        return value == null || value.isEmpty() ? def : value.trim();
+    }
+
+    private static int integer(String name, int def) {
+        String value = string(name, null);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for loadtest." + name + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.xiaoyu.papiwebapi.loadtest;
+
+import com.xiaoyu.papiwebapi.simulation.SimulatedServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 按权重随机选择请求的路由
+ */
+public class RouteMix {
+
+    public enum Route {
+        // 所有在线玩家
+        ONLINE,
+        ONLINE_JSON,
+        // 单个玩家，从所有玩家中随机选择
+        PLAYER,
+        // 前10名
+        SORT,
+        // 全部玩家按值排序
+        SORT_ALL,
+        // 两个端点、10个玩家的批量查询
+        BATCH,
+        // 不存在的端点
+        NOT_FOUND,
+        METRICS,
+        // 错误的令牌
+        UNAUTHORIZED;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * 生成请求路径
+         */
+        String path(String token, int players, Random random) {
+            String prefix = "/token=" + token + "/";
+            switch (this) {
+                case ONLINE:
+                    return prefix + LoadTest.ENDPOINT;
+                case ONLINE_JSON:
+                    return prefix + LoadTest.ENDPOINT + "?format=json";
+                case PLAYER:
+                    return prefix + LoadTest.ENDPOINT + "/" + SimulatedServer.playerName(random.nextInt(players));
+                case SORT:
+                    return prefix + LoadTest.ENDPOINT + "/sort/htl/10";
+                case SORT_ALL:
+                    return prefix + LoadTest.SECOND_ENDPOINT + "/sort/lth";
+                case BATCH:
+                    StringBuilder path = new StringBuilder(prefix).append("batch?endpoints=")
+                            .append(LoadTest.ENDPOINT).append(',').append(LoadTest.SECOND_ENDPOINT).append("&players=");
+                    for (int i = 0; i < 10; i++) {
+                        if (i > 0) {
+                            path.append(',');
+                        }
+                        path.append(SimulatedServer.playerName(random.nextInt(players)));
+                    }
+                    return path.toString();
+                case NOT_FOUND:
+                    return prefix + "nosuchendpoint";
+                case METRICS:
+                    return prefix + "metrics";
+                default:
+                    return "/token=wrong-" + token + "/" + LoadTest.ENDPOINT;
+            }
+        }
+    }
+
+    private final Route[] routes;
+    // 累计权重
+    private final int[] cumulative;
+    private final int total;
+
+    private RouteMix(Route[] routes, int[] cumulative) {
+        this.routes = routes;
+        this.cumulative = cumulative;
+        this.total = cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * 解析路由权重，格式为 路由:权重,路由:权重
+     */
+    public static RouteMix parse(String mix) {
+        List<Route> routes = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair[0].isEmpty()) {
+                continue;
+            }
+            Route route;
+            try {
+                route = Route.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown route in mix: " + pair[0]);
+            }
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight > 0) {
+                routes.add(route);
+                weights.add(weight);
+            }
+        }
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("Route mix is empty: " + mix);
+        }
+
+        int[] cumulative = new int[weights.size()];
+        int sum = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            sum += weights.get(i);
+            cumulative[i] = sum;
+        }
+        return new RouteMix(routes.toArray(new Route[0]), cumulative);
+    }
+
+    public Route pick(Random random) {
+        int roll = random.nextInt(total);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) {
+                return routes[i];
+            }
+        }
+        return routes[routes.length - 1];
+    }
+
+    public Route[] getRoutes() {
+        return routes.clone();
+    }
+}
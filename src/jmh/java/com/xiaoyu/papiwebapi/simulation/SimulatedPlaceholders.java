@@ -0,0 +1,45 @@
+package com.xiaoyu.papiwebapi.simulation;
+
+import com.xiaoyu.papiwebapi.utils.PlaceholderEvaluator;
+import org.bukkit.OfflinePlayer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模拟的占位符计算
+ * 每个占位符在所有模拟玩家上的值按分布预先生成，同一个占位符每次计算的结果相同
+ */
+public class SimulatedPlaceholders implements PlaceholderEvaluator {
+
+    private final SimulatedServer server;
+    private final ValueDistribution distribution;
+    // 每次计算额外消耗的时间（纳秒），模拟开销较大的占位符扩展
+    private final long costNanos;
+    private final Map<String, String[]> values = new ConcurrentHashMap<>();
+
+    public SimulatedPlaceholders(SimulatedServer server, ValueDistribution distribution, long costNanos) {
+        this.server = server;
+        this.distribution = distribution;
+        this.costNanos = costNanos;
+    }
+
+    @Override
+    public String evaluate(OfflinePlayer player, String placeholder) {
+        if (costNanos > 0) {
+            long deadline = System.nanoTime() + costNanos;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+
+        int index = server.indexOf(player);
+        String[] table = values.computeIfAbsent(placeholder,
+                key -> distribution.generate(server.getPlayerCount(), key.hashCode()));
+        if (index < 0 || index >= table.length) {
+            // 与PlaceholderAPI相同，无法解析时原样返回
+            return placeholder;
+        }
+        return table[index];
+    }
+}
@@ -0,0 +1,87 @@
+package com.xiaoyu.papiwebapi.simulation;
+
+import com.xiaoyu.papiwebapi.PapiWebAPI;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 运行在模拟服务器上的插件实例
+ * 数据目录为临时目录，配置文件由默认配置和指定的覆盖项生成
+ */
+public class SimulatedPlugin extends PapiWebAPI {
+
+    private final SimulatedServer server;
+
+    @SuppressWarnings("deprecation")
+    private SimulatedPlugin(SimulatedServer server, File dataFolder) {
+        super(new JavaPluginLoader(server.getServer()),
+                new PluginDescriptionFile("PapiWebAPI", "simulated", PapiWebAPI.class.getName()),
+                dataFolder, new File(dataFolder, "PapiWebAPI.jar"));
+        this.server = server;
+    }
+
+    /**
+     * 创建插件实例，尚未启用
+     *
+     * @param server 模拟服务器
+     * @param config 覆盖默认配置的项，键为完整路径，如 server.port
+     * @return 插件实例
+     */
+    public static SimulatedPlugin create(SimulatedServer server, Map<String, Object> config) throws IOException {
+        File dataFolder = Files.createTempDirectory("papiwebapi-sim").toFile();
+
+        YamlConfiguration yaml;
+        try (InputStream in = PapiWebAPI.class.getResourceAsStream("/config.yml")) {
+            if (in == null) {
+                throw new IOException("Default config.yml not found on classpath");
+            }
+            yaml = YamlConfiguration.loadConfiguration(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        for (Map.Entry<String, Object> entry : config.entrySet()) {
+            yaml.set(entry.getKey(), entry.getValue());
+        }
+        yaml.save(new File(dataFolder, "config.yml"));
+
+        return new SimulatedPlugin(server, dataFolder);
+    }
+
+    /**
+     * 在模拟的主线程中启用插件
+     */
+    public void enable() throws Exception {
+        server.callOnMainThread(() -> {
+            onEnable();
+            return null;
+        });
+    }
+
+    /**
+     * 在模拟的主线程中停用插件，并删除数据目录
+     */
+    public void disable() throws Exception {
+        server.callOnMainThread(() -> {
+            onDisable();
+            return null;
+        });
+        server.cancelTasks();
+        deleteDataFolder();
+    }
+
+    private void deleteDataFolder() throws IOException {
+        try (Stream<Path> files = Files.walk(getDataFolder().toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
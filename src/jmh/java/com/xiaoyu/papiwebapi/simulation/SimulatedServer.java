@@ -0,0 +1,455 @@
+package com.xiaoyu.papiwebapi.simulation;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 模拟的Bukkit服务器，用于在没有真实服务器的环境中运行插件
+ * 使用动态代理实现 Server、Player 等接口，只模拟插件用到的方法，其余方法返回默认值
+ * 主线程是一个单线程的定时执行器，每tick为50毫秒
+ */
+public final class SimulatedServer {
+
+    // 每tick的毫秒数
+    private static final long TICK_MILLIS = 50;
+
+    private static SimulatedServer instance;
+
+    private final Logger logger = Logger.getLogger("SimulatedServer");
+    private final Server server;
+    private final BukkitScheduler scheduler;
+    private final PluginManager pluginManager;
+
+    // 模拟的主线程
+    private final ScheduledExecutorService mainThread;
+    private volatile Thread primaryThread;
+    // 异步任务
+    private final ScheduledExecutorService asyncExecutor;
+    private final Queue<SimulatedTask> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger taskIds = new AtomicInteger();
+
+    // 玩家数据，setPlayers 时整体替换
+    private volatile Players players = new Players(0, 0);
+
+    private SimulatedServer() {
+        mainThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Server thread");
+            thread.setDaemon(true);
+            primaryThread = thread;
+            return thread;
+        });
+        AtomicInteger asyncThreads = new AtomicInteger();
+        asyncExecutor = Executors.newScheduledThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "Craft Scheduler Thread - " + asyncThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = proxy(Server.class, this::handleServer);
+        scheduler = proxy(BukkitScheduler.class, this::handleScheduler);
+        pluginManager = proxy(PluginManager.class, this::handlePluginManager);
+    }
+
+    /**
+     * 创建模拟服务器并设置为 Bukkit 的服务器实例，每个JVM中只会创建一次
+     *
+     * @return 模拟服务器
+     */
+    public static synchronized SimulatedServer install() {
+        if (instance == null) {
+            SimulatedServer created = new SimulatedServer();
+            try {
+                // 直接设置字段，Bukkit.setServer 会读取服务器实现的版本信息
+                Field field = Bukkit.class.getDeclaredField("server");
+                field.setAccessible(true);
+                field.set(null, created.server);
+            } catch (ReflectiveOperationException e) {
+                Bukkit.setServer(created.server);
+            }
+            instance = created;
+        }
+        return instance;
+    }
+
+    public Server getServer() {
+        return server;
+    }
+
+    /**
+     * 设置模拟的玩家，前 online 个玩家在线
+     * 玩家名称为 Player_<序号>，UUID由序号决定
+     *
+     * @param total 玩家总数（包括在线玩家）
+     * @param online 在线玩家数
+     */
+    public void setPlayers(int total, int online) {
+        players = new Players(total, Math.min(online, total));
+    }
+
+    public int getPlayerCount() {
+        return players.offline.length;
+    }
+
+    public int getOnlineCount() {
+        return players.online.size();
+    }
+
+    /**
+     * 获取玩家的序号
+     *
+     * @return 序号，不是模拟的玩家时返回-1
+     */
+    public int indexOf(OfflinePlayer player) {
+        Integer index = players.indexes.get(player.getUniqueId());
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 第 index 个玩家的名称
+     */
+    public static String playerName(int index) {
+        return "Player_" + index;
+    }
+
+    /**
+     * 在模拟的主线程中执行任务并等待结果
+     */
+    public <T> T callOnMainThread(Callable<T> task) throws Exception {
+        if (Thread.currentThread() == primaryThread) {
+            return task.call();
+        }
+        try {
+            return mainThread.submit(task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * 取消所有定时任务
+     */
+    public void cancelTasks() {
+        SimulatedTask task;
+        while ((task = tasks.poll()) != null) {
+            task.cancel();
+        }
+    }
+
+    private Object handleServer(Method method, Object[] args) {
+        Players current = players;
+        switch (method.getName()) {
+            case "getOnlinePlayers":
+                return current.online;
+            case "getOfflinePlayers":
+                // 与真实服务器相同，每次返回新的数组
+                return current.offline.clone();
+            case "getOfflinePlayer":
+                if (args[0] instanceof UUID) {
+                    OfflinePlayer player = current.byUuid.get(args[0]);
+                    return player != null ? player : createPlayer(OfflinePlayer.class, (UUID) args[0], null, false);
+                }
+                OfflinePlayer byName = current.byName.get(((String) args[0]).toLowerCase(Locale.ROOT));
+                if (byName != null) {
+                    return byName;
+                }
+                UUID offlineUuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + args[0]).getBytes(StandardCharsets.UTF_8));
+                return createPlayer(OfflinePlayer.class, offlineUuid, (String) args[0], false);
+            case "getOfflinePlayerIfCached":
+                return current.byName.get(((String) args[0]).toLowerCase(Locale.ROOT));
+            case "getPlayer":
+                if (args[0] instanceof UUID) {
+                    return current.onlineByUuid.get(args[0]);
+                }
+                return current.onlineByName.get(((String) args[0]).toLowerCase(Locale.ROOT));
+            case "getPlayerExact":
+                return current.onlineByName.get(((String) args[0]).toLowerCase(Locale.ROOT));
+            case "getMaxPlayers":
+                return Math.max(current.online.size(), 100);
+            case "getScheduler":
+                return scheduler;
+            case "getPluginManager":
+                return pluginManager;
+            case "isPrimaryThread":
+                return Thread.currentThread() == primaryThread;
+            case "getLogger":
+                return logger;
+            case "getName":
+                return "SimulatedServer";
+            case "getVersion":
+                return "simulated";
+            case "getBukkitVersion":
+                return "1.20.4-R0.1-SNAPSHOT";
+            default:
+                return defaultValue(method);
+        }
+    }
+
+    private Object handleScheduler(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "runTask":
+                return schedule((Plugin) args[0], args[1], true, 0, -1);
+            case "runTaskLater":
+                return schedule((Plugin) args[0], args[1], true, (Long) args[2], -1);
+            case "runTaskTimer":
+                return schedule((Plugin) args[0], args[1], true, (Long) args[2], (Long) args[3]);
+            case "runTaskAsynchronously":
+                return schedule((Plugin) args[0], args[1], false, 0, -1);
+            case "runTaskLaterAsynchronously":
+                return schedule((Plugin) args[0], args[1], false, (Long) args[2], -1);
+            case "runTaskTimerAsynchronously":
+                return schedule((Plugin) args[0], args[1], false, (Long) args[2], (Long) args[3]);
+            case "callSyncMethod":
+                return mainThread.submit((Callable<?>) args[1]);
+            case "cancelTasks":
+                cancelTasks();
+                return null;
+            case "isCurrentlyRunning":
+            case "isQueued":
+                return false;
+            default:
+                return defaultValue(method);
+        }
+    }
+
+    private Object handlePluginManager(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "getPlugin":
+                // 依赖的插件总是存在
+                return proxy(Plugin.class, (pluginMethod, pluginArgs) ->
+                        pluginMethod.getName().equals("getName") ? args[0] : defaultValue(pluginMethod));
+            case "isPluginEnabled":
+                return true;
+            default:
+                return defaultValue(method);
+        }
+    }
+
+    /**
+     * 安排一个任务，period 小于0时只执行一次
+     */
+    private BukkitTask schedule(Plugin plugin, Object body, boolean sync, long delayTicks, long periodTicks) {
+        SimulatedTask task = new SimulatedTask(plugin, taskIds.incrementAndGet(), sync);
+        BukkitTask handle = proxy(BukkitTask.class, task::handle);
+        Runnable runnable = wrap(body, handle);
+
+        ScheduledExecutorService executor = sync ? mainThread : asyncExecutor;
+        long delay = Math.max(0, delayTicks) * TICK_MILLIS;
+        if (periodTicks < 0) {
+            task.future = executor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+        } else {
+            task.future = executor.scheduleAtFixedRate(runnable, delay, Math.max(1, periodTicks) * TICK_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            tasks.add(task);
+        }
+        return handle;
+    }
+
+    /**
+     * 包装任务，与真实的调度器相同，任务抛出异常时只记录日志，定时任务继续执行
+     */
+    @SuppressWarnings("unchecked")
+    private Runnable wrap(Object body, BukkitTask handle) {
+        return () -> {
+            try {
+                if (body instanceof Runnable) {
+                    ((Runnable) body).run();
+                } else {
+                    ((Consumer<BukkitTask>) body).accept(handle);
+                }
+            } catch (Throwable t) {
+                logger.log(Level.WARNING, "Task #" + handle.getTaskId() + " generated an exception", t);
+            }
+        };
+    }
+
+    private <T> T createPlayer(Class<T> type, UUID uuid, String name, boolean online) {
+        return proxy(type, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName":
+                    return name;
+                case "getUniqueId":
+                    return uuid;
+                case "isOnline":
+                    return online;
+                case "getPlayer":
+                    return online ? players.onlineByUuid.get(uuid) : null;
+                case "hasPlayedBefore":
+                    return name != null;
+                default:
+                    return defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, ProxyHandler handler) {
+        InvocationHandler invocation = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                }
+            }
+            return handler.handle(method, args != null ? args : new Object[0]);
+        };
+        return (T) Proxy.newProxyInstance(SimulatedServer.class.getClassLoader(), new Class<?>[]{type}, invocation);
+    }
+
+    /**
+     * 未模拟的方法返回的默认值
+     */
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (!type.isPrimitive() || type == void.class) {
+            if (type == List.class) {
+                return Collections.emptyList();
+            }
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        if (type == float.class) {
+            return 0.0f;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    @FunctionalInterface
+    private interface ProxyHandler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    /**
+     * 一组模拟的玩家
+     */
+    private final class Players {
+        final OfflinePlayer[] offline;
+        final List<Player> online;
+        final Map<UUID, Integer> indexes;
+        final Map<UUID, OfflinePlayer> byUuid;
+        final Map<String, OfflinePlayer> byName;
+        final Map<UUID, Player> onlineByUuid;
+        final Map<String, Player> onlineByName;
+
+        Players(int total, int onlineCount) {
+            offline = new OfflinePlayer[total];
+            List<Player> onlineList = new ArrayList<>(onlineCount);
+            indexes = new HashMap<>(total * 2);
+            byUuid = new HashMap<>(total * 2);
+            byName = new HashMap<>(total * 2);
+            onlineByUuid = new HashMap<>(onlineCount * 2);
+            onlineByName = new HashMap<>(onlineCount * 2);
+
+            for (int i = 0; i < total; i++) {
+                UUID uuid = new UUID(0x5EEDL, i);
+                String name = playerName(i);
+                Player player = null;
+                if (i < onlineCount) {
+                    player = createPlayer(Player.class, uuid, name, true);
+                    onlineList.add(player);
+                    onlineByUuid.put(uuid, player);
+                    onlineByName.put(name.toLowerCase(Locale.ROOT), player);
+                }
+                offline[i] = player != null ? player : createPlayer(OfflinePlayer.class, uuid, name, false);
+                indexes.put(uuid, i);
+                byUuid.put(uuid, offline[i]);
+                byName.put(name.toLowerCase(Locale.ROOT), offline[i]);
+            }
+            online = Collections.unmodifiableList(onlineList);
+        }
+    }
+
+    /**
+     * 已安排的任务
+     */
+    private static final class SimulatedTask {
+        final Plugin owner;
+        final int id;
+        final boolean sync;
+        volatile Future<?> future;
+
+        SimulatedTask(Plugin owner, int id, boolean sync) {
+            this.owner = owner;
+            this.id = id;
+            this.sync = sync;
+        }
+
+        void cancel() {
+            Future<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        Object handle(Method method, Object[] args) {
+            switch (method.getName()) {
+                case "cancel":
+                    cancel();
+                    return null;
+                case "isCancelled":
+                    return future != null && future.isCancelled();
+                case "getTaskId":
+                    return id;
+                case "getOwner":
+                    return owner;
+                case "isSync":
+                    return sync;
+                default:
+                    return defaultValue(method);
+            }
+        }
+    }
+}
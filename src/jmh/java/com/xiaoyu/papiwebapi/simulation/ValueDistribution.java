@@ -0,0 +1,96 @@
+package com.xiaoyu.papiwebapi.simulation;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 模拟占位符值的分布
+ */
+public enum ValueDistribution {
+
+    /**
+     * 0 ~ 1000000 之间均匀分布的整数
+     */
+    UNIFORM {
+        @Override
+        String next(Random random) {
+            return Integer.toString(random.nextInt(1_000_001));
+        }
+    },
+
+    /**
+     * 长尾分布的小数，大部分玩家的值很小，少数玩家很大（类似余额）
+     */
+    SKEWED {
+        @Override
+        String next(Random random) {
+            double value = 10.0 / Math.pow(1.0 - random.nextDouble(), 1.5);
+            return String.format(Locale.ROOT, "%.2f", value);
+        }
+    },
+
+    /**
+     * 只有少量不同的值，排序时有大量相等的键（类似等级、段位）
+     */
+    DUPLICATES {
+        @Override
+        String next(Random random) {
+            return Integer.toString(random.nextInt(10) * 10);
+        }
+    },
+
+    /**
+     * 带千位分隔符、单位后缀和颜色代码的格式化数字
+     */
+    FORMATTED {
+        @Override
+        String next(Random random) {
+            int value = random.nextInt(10_000_000);
+            switch (random.nextInt(4)) {
+                case 0:
+                    return String.format(Locale.ROOT, "%,d", value);
+                case 1:
+                    return String.format(Locale.ROOT, "%.1fk", value / 1000.0);
+                case 2:
+                    return String.format(Locale.ROOT, "%.2fM", value / 1_000_000.0);
+                default:
+                    return "§e" + value;
+            }
+        }
+    },
+
+    /**
+     * 以数字为主，混有无法解析为数字的文本
+     */
+    MIXED {
+        @Override
+        String next(Random random) {
+            int roll = random.nextInt(10);
+            if (roll == 0) {
+                return "N/A";
+            }
+            if (roll == 1) {
+                return "";
+            }
+            return Integer.toString(random.nextInt(100_000));
+        }
+    };
+
+    abstract String next(Random random);
+
+    /**
+     * 生成每个玩家的值
+     *
+     * @param count 玩家数
+     * @param seed 随机种子，相同的种子生成相同的值
+     * @return 按玩家序号排列的值
+     */
+    public String[] generate(int count, long seed) {
+        Random random = new Random(seed);
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = next(random);
+        }
+        return values;
+    }
+}
@@ -3,16 +3,51 @@ package com.xiaoyu.papiwebapi;
 import com.xiaoyu.papiwebapi.api.ApiManager;
 import com.xiaoyu.papiwebapi.commands.PapiWebAPICommand;
 import com.xiaoyu.papiwebapi.http.HttpServer;
+import com.xiaoyu.papiwebapi.leaderboard.LeaderboardService;
+import com.xiaoyu.papiwebapi.leaderboard.SortKey;
+import com.xiaoyu.papiwebapi.listeners.PlayerNameListener;
+import com.xiaoyu.papiwebapi.snapshot.SnapshotService;
+import com.xiaoyu.papiwebapi.stats.TrafficStatsService;
+import com.xiaoyu.papiwebapi.utils.IPLocationUtil;
 import com.xiaoyu.papiwebapi.utils.LogManager;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+import com.xiaoyu.papiwebapi.utils.PlayerNameIndex;
+import com.xiaoyu.papiwebapi.utils.geo.IPDatabaseConverter;
+import com.xiaoyu.papiwebapi.utils.geo.IPLocationProvider;
+import com.xiaoyu.papiwebapi.utils.geo.IpApiLocationProvider;
+import com.xiaoyu.papiwebapi.utils.geo.OfflineIPDatabase;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PapiWebAPI extends JavaPlugin {
 
     private HttpServer httpServer;
     private ApiManager apiManager;
     private LogManager logManager;
+    private SnapshotService snapshotService;
+    private LeaderboardService leaderboardService;
+    private TrafficStatsService trafficStatsService;
+    private PlayerNameIndex playerNameIndex;
+
+    public PapiWebAPI() {
+        super();
+    }
+
+    /**
+     * 不经过服务器的插件加载器创建实例，用于基准测试和负载测试
+     */
+    protected PapiWebAPI(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     @Override
     public void onEnable() {
@@ -26,6 +61,12 @@ public class PapiWebAPI extends JavaPlugin {
         // 加载配置
         loadConfig();
 
+        // 配置地理位置数据来源
+        loadGeolocation();
+
+        // 配置排序方式
+        SortKey.setNonNumericPolicy(SortKey.NonNumericPolicy.fromConfig(getConfig().getString("sorting.non_numeric", "last")));
+
         // 初始化日志管理器
         logManager = new LogManager(this);
 
@@ -36,33 +77,65 @@ public class PapiWebAPI extends JavaPlugin {
         apiManager = new ApiManager(this);
         apiManager.loadApis();
 
+        // 构建玩家名称索引
+        loadPlayerNameIndex();
+
+        // 启动占位符快照服务
+        snapshotService = new SnapshotService(this);
+        snapshotService.start();
+
+        // 启动排行榜索引，在线玩家的值随快照更新
+        leaderboardService = new LeaderboardService(this);
+        snapshotService.addListener(leaderboardService);
+        leaderboardService.start();
+
+        // 启动流量汇总
+        trafficStatsService = new TrafficStatsService(this);
+        trafficStatsService.start();
+
         // 初始化并启动HTTP服务器
         startHttpServer();
 
         // 注册命令
-        getCommand("papiwebapi").setExecutor(new PapiWebAPICommand(this));
+        PluginCommand command = getCommand("papiwebapi");
+        if (command != null) {
+            command.setExecutor(new PapiWebAPICommand(this));
+        }
 
         getLogger().info("PapiWebAPI has been enabled!");
     }
 
     @Override
     public void onDisable() {
+        // 先关闭HTTP服务器，等待正在处理的请求完成，这些请求的日志仍会被写入
+        if (httpServer != null) {
+            httpServer.stop();
+            getLogger().info("Web API server stopped");
+        }
+
+        // 停止占位符快照服务和排行榜索引
+        if (snapshotService != null) {
+            snapshotService.stop();
+        }
+        if (leaderboardService != null) {
+            leaderboardService.stop();
+        }
+
+        // 写入当前小时的流量汇总
+        if (trafficStatsService != null) {
+            trafficStatsService.stop();
+        }
+
         // 保存API配置
         if (apiManager != null) {
-            apiManager.saveApis();
+            apiManager.shutdown();
         }
 
-        // 关闭日志管理器
+        // 最后关闭日志管理器，写入队列中剩余的日志
         if (logManager != null) {
             logManager.shutdown();
         }
 
-        // 关闭HTTP服务器
-        if (httpServer != null) {
-            httpServer.stop();
-            getLogger().info("Web API server stopped");
-        }
-
         getLogger().info("PapiWebAPI has been disabled!");
     }
 
@@ -90,6 +163,60 @@ public class PapiWebAPI extends JavaPlugin {
         }
     }
 
+    /**
+     * 根据配置设置地理位置数据来源
+     */
+    private void loadGeolocation() {
+        String mode = getConfig().getString("geolocation.provider", "api").toLowerCase();
+        List<IPLocationProvider> providers = new ArrayList<>();
+
+        if (mode.startsWith("offline")) {
+            File database = new File(getDataFolder(), getConfig().getString("geolocation.database", "ip-region.db"));
+            File csv = new File(getDataFolder(), getConfig().getString("geolocation.csv", "ip-region.csv"));
+
+            try {
+                // CSV文件比数据库新，或数据库由旧版本生成时重新转换
+                if (csv.exists() && (!database.exists() || csv.lastModified() > database.lastModified()
+                        || !OfflineIPDatabase.isCurrentVersion(database))) {
+                    int count = IPDatabaseConverter.convert(csv, database);
+                    getLogger().info("Converted " + count + " IP ranges from " + csv.getName());
+                }
+
+                OfflineIPDatabase offlineDatabase = OfflineIPDatabase.open(database);
+                providers.add(offlineDatabase);
+                getLogger().info("Loaded offline IP database with " + offlineDatabase.size() + " ranges");
+            } catch (IOException e) {
+                getLogger().warning("Failed to load offline IP database " + database.getName() + ": " + e.getMessage());
+            }
+        }
+
+        if (!mode.equals("offline")) {
+            String apiUrl = getConfig().getString("geolocation.api_url", IpApiLocationProvider.DEFAULT_URL);
+            providers.add(new IpApiLocationProvider(apiUrl, IPLocationUtil.TIMEOUT_MILLIS));
+        }
+
+        IPLocationUtil.setProviders(providers);
+    }
+
+    /**
+     * 在异步线程中构建玩家名称索引，之后由玩家加入事件保持更新
+     */
+    private void loadPlayerNameIndex() {
+        playerNameIndex = new PlayerNameIndex();
+        PlaceholderUtils.setPlayerNameIndex(playerNameIndex);
+        getServer().getPluginManager().registerEvents(new PlayerNameListener(playerNameIndex), this);
+
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            long start = System.currentTimeMillis();
+            for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+                playerNameIndex.putIfAbsent(player.getUniqueId(), player.getName());
+            }
+            playerNameIndex.setReady(true);
+            getLogger().info("Indexed " + playerNameIndex.size() + " player names in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        });
+    }
+
     /**
      * 启动HTTP服务器
      */
@@ -124,9 +251,18 @@ public class PapiWebAPI extends JavaPlugin {
             // 重载配置文件
             reloadConfig();
 
+            // 重新配置地理位置数据来源和排序方式
+            loadGeolocation();
+            SortKey.setNonNumericPolicy(SortKey.NonNumericPolicy.fromConfig(getConfig().getString("sorting.non_numeric", "last")));
+
             // 重载API配置
             apiManager.loadApis();
 
+            // 重载快照和排行榜配置
+            snapshotService.reload();
+            leaderboardService.reload();
+            trafficStatsService.reload();
+
             // 重载HTTP服务器配置
             if (httpServer != null) {
                 httpServer.reloadConfig();
@@ -157,6 +293,30 @@ public class PapiWebAPI extends JavaPlugin {
         return apiManager;
     }
 
+    /**
+     * 获取占位符快照服务
+     * @return 快照服务实例
+     */
+    public SnapshotService getSnapshotService() {
+        return snapshotService;
+    }
+
+    /**
+     * 获取排行榜索引服务
+     * @return 排行榜服务实例
+     */
+    public LeaderboardService getLeaderboardService() {
+        return leaderboardService;
+    }
+
+    /**
+     * 获取流量汇总服务
+     * @return 流量汇总服务实例
+     */
+    public TrafficStatsService getTrafficStatsService() {
+        return trafficStatsService;
+    }
+
     public HttpServer getHttpServer() {
         return httpServer;
     }
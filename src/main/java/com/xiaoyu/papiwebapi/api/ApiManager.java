@@ -1,105 +1,246 @@
 package com.xiaoyu.papiwebapi.api;
 
 import com.xiaoyu.papiwebapi.PapiWebAPI;
+import com.xiaoyu.papiwebapi.http.HttpServer;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 public class ApiManager {
 
+    // 修改后等待的时间，期间的多次修改只写入一次
+    private static final long SAVE_DELAY_MILLIS = 1000;
+
     private final PapiWebAPI plugin;
-    private final Map<String, String> registeredApis = new HashMap<>();  // 别名 -> 占位符
+    // 当前的注册表快照，修改时整体替换
+    private final AtomicReference<ApiRegistry> registry = new AtomicReference<>(ApiRegistry.EMPTY);
     private final File apisFile;
 
+    // 在后台线程中写入 apis.yml
+    private final ScheduledExecutorService saver;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+    private final Object saveLock = new Object();
+    // 已写入文件的快照版本，只在持有 saveLock 时修改
+    private volatile long savedVersion;
+
     public ApiManager(PapiWebAPI plugin) {
         this.plugin = plugin;
         this.apisFile = new File(plugin.getDataFolder(), "apis.yml");
+        this.saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PapiWebAPI-ApiSaver");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public void registerApi(String endpoint, String placeholder) {
-        // 确保占位符格式正确
+        String normalized = normalizePlaceholder(placeholder);
+        update(apis -> apis.put(endpoint, normalized));
+        scheduleSave();
+    }
+
+    /**
+     * 一次注册多个API，只生成一个新的快照并写入一次文件
+     *
+     * @param apis 别名 -> 占位符，已存在的别名会被覆盖
+     */
+    public void registerApis(Map<String, String> apis) {
+        if (apis.isEmpty()) {
+            return;
+        }
+        Map<String, String> normalized = new HashMap<>();
+        for (Map.Entry<String, String> api : apis.entrySet()) {
+            normalized.put(api.getKey(), normalizePlaceholder(api.getValue()));
+        }
+        update(current -> current.putAll(normalized));
+        scheduleSave();
+    }
+
+    /**
+     * 确保占位符格式正确
+     */
+    private static String normalizePlaceholder(String placeholder) {
         if (placeholder.startsWith("%") && placeholder.endsWith("%")) {
             // 已经有百分号，保持原样
+            return placeholder;
         } else if (!placeholder.contains("%")) {
             // 没有百分号，添加百分号
-            placeholder = "%" + placeholder + "%";
+            return "%" + placeholder + "%";
         } else {
             // 有一些百分号，但不是正确格式，清理并添加
-            placeholder = placeholder.replace("%", "");
-            placeholder = "%" + placeholder + "%";
+            return "%" + placeholder.replace("%", "") + "%";
         }
-
-        registeredApis.put(endpoint, placeholder);
-        saveApis();
     }
 
-
     public void unregisterApi(String endpoint) {
-        registeredApis.remove(endpoint);
-        saveApis();
+        if (!isApiRegistered(endpoint)) {
+            return;
+        }
+        update(apis -> apis.remove(endpoint));
+        scheduleSave();
+    }
+
+    /**
+     * 基于最新的快照修改并替换，与其他线程的修改冲突时重试
+     */
+    private ApiRegistry update(Consumer<Map<String, String>> change) {
+        while (true) {
+            ApiRegistry current = registry.get();
+            Map<String, String> apis = current.copy();
+            change.accept(apis);
+            ApiRegistry next = current.next(apis);
+            if (registry.compareAndSet(current, next)) {
+                return next;
+            }
+        }
     }
 
     public boolean isApiRegistered(String endpoint) {
-        return registeredApis.containsKey(endpoint);
+        return registry.get().contains(endpoint);
     }
 
     public String getPlaceholder(String endpoint) {
-        return registeredApis.get(endpoint);
+        return registry.get().getPlaceholder(endpoint);
     }
 
+    /**
+     * 已注册的端点，不可修改
+     */
     public Set<String> getRegisteredEndpoints() {
-        return registeredApis.keySet();
+        return registry.get().getEndpoints();
     }
 
+    /**
+     * 注册表的版本，注册、删除或重新加载API时增加
+     */
+    public long getVersion() {
+        return registry.get().getVersion();
+    }
+
+    /**
+     * 别名 -> 占位符，不可修改
+     */
     public Map<String, String> getRegisteredApis() {
-        return new HashMap<>(registeredApis);
+        return registry.get().getApis();
+    }
+
+    /**
+     * 当前的注册表快照，同时读取多项内容时使用，保证内容与版本一致
+     */
+    public ApiRegistry getRegistry() {
+        return registry.get();
     }
 
+    /**
+     * 从 apis.yml 重新加载，读取完成后整体替换注册表，加载期间的请求仍使用原来的注册表
+     */
     public void loadApis() {
-        try {
-            // 清空当前注册的APIs
-            registeredApis.clear();
+        // 先写入尚未保存的修改，避免之后被覆盖
+        saveApis();
 
+        try {
+            Map<String, String> loaded = new HashMap<>();
             if (!apisFile.exists()) {
                 plugin.getLogger().info("APIs file not found, creating new one");
-                return;
+            } else {
+                FileConfiguration config = YamlConfiguration.loadConfiguration(apisFile);
+                for (String key : config.getKeys(false)) {
+                    // 与内置路由同名的端点无法访问，旧版本创建的这类端点需要改名
+                    if (HttpServer.RESERVED_ENDPOINTS.contains(key)) {
+                        plugin.getLogger().warning("Ignoring API endpoint '" + key + "' in " + apisFile.getName()
+                                + ": the name is reserved for a built-in route, please create it again under another name");
+                        continue;
+                    }
+                    loaded.put(key, config.getString(key));
+                }
             }
 
-            FileConfiguration config = YamlConfiguration.loadConfiguration(apisFile);
-            for (String key : config.getKeys(false)) {
-                registeredApis.put(key, config.getString(key));
+            synchronized (saveLock) {
+                ApiRegistry next = update(apis -> {
+                    apis.clear();
+                    apis.putAll(loaded);
+                });
+                // 内容与文件一致，不需要写入
+                savedVersion = next.getVersion();
             }
 
-            plugin.getLogger().info("Loaded " + registeredApis.size() + " API endpoints");
+            plugin.getLogger().info("Loaded " + loaded.size() + " API endpoints");
         } catch (Exception e) {
             plugin.getLogger().severe("Failed to load APIs: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * 在后台线程中延迟写入，期间的多次修改合并为一次
+     */
+    private void scheduleSave() {
+        if (!saveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            saver.schedule(() -> {
+                saveScheduled.set(false);
+                saveApis();
+            }, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已关闭时直接写入
+            saveScheduled.set(false);
+            saveApis();
+        }
+    }
 
+    /**
+     * 立即写入尚未保存的修改
+     * 先写入临时文件再替换，写入中断时原文件保持不变
+     */
     public void saveApis() {
-        try {
-            if (!apisFile.exists()) {
-                apisFile.getParentFile().mkdirs();
-                apisFile.createNewFile();
+        synchronized (saveLock) {
+            ApiRegistry current = registry.get();
+            if (current.getVersion() == savedVersion) {
+                return;
             }
 
             FileConfiguration config = new YamlConfiguration();
-            for (Map.Entry<String, String> entry : registeredApis.entrySet()) {
+            for (Map.Entry<String, String> entry : current.getApis().entrySet()) {
                 config.set(entry.getKey(), entry.getValue());
             }
 
-            config.save(apisFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save APIs configuration: " + e.getMessage());
-            e.printStackTrace();
+            File temp = new File(apisFile.getParentFile(), apisFile.getName() + ".tmp");
+            try {
+                apisFile.getParentFile().mkdirs();
+                Files.write(temp.toPath(), config.saveToString().getBytes(StandardCharsets.UTF_8));
+                Files.move(temp.toPath(), apisFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                savedVersion = current.getVersion();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save APIs configuration: " + e.getMessage(), e);
+                temp.delete();
+            }
         }
     }
-}
 
+    /**
+     * 写入尚未保存的修改并停止后台线程
+     */
+    public void shutdown() {
+        saver.shutdownNow();
+        saveScheduled.set(false);
+        saveApis();
+    }
+}
@@ -0,0 +1,72 @@
+package com.xiaoyu.papiwebapi.api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * API注册表的不可变快照
+ * 每次修改都会生成新的快照并整体替换，读取时不需要加锁，也不会看到修改到一半的注册表
+ */
+public final class ApiRegistry {
+
+    static final ApiRegistry EMPTY = new ApiRegistry(Collections.emptyMap(), 0);
+
+    private final Map<String, String> apis;  // 别名 -> 占位符
+    private final long version;
+
+    private ApiRegistry(Map<String, String> apis, long version) {
+        this.apis = apis;
+        this.version = version;
+    }
+
+    /**
+     * 基于当前快照生成新的快照，版本加一
+     *
+     * @param apis 新的注册表内容，会被复制
+     */
+    ApiRegistry next(Map<String, String> apis) {
+        return new ApiRegistry(Collections.unmodifiableMap(new HashMap<>(apis)), version + 1);
+    }
+
+    /**
+     * 复制当前的注册表内容，用于生成下一个快照
+     */
+    Map<String, String> copy() {
+        return new HashMap<>(apis);
+    }
+
+    public boolean contains(String endpoint) {
+        return apis.containsKey(endpoint);
+    }
+
+    public String getPlaceholder(String endpoint) {
+        return apis.get(endpoint);
+    }
+
+    /**
+     * 已注册的端点，不可修改
+     */
+    public Set<String> getEndpoints() {
+        return apis.keySet();
+    }
+
+    /**
+     * 别名 -> 占位符，不可修改
+     */
+    public Map<String, String> getApis() {
+        return apis;
+    }
+
+    public int size() {
+        return apis.size();
+    }
+
+    /**
+     * 快照的版本，注册、删除或重新加载API时增加
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -1,18 +1,32 @@
 package com.xiaoyu.papiwebapi.commands;
 
 import com.xiaoyu.papiwebapi.PapiWebAPI;
+import com.xiaoyu.papiwebapi.http.HttpServer;
+import com.xiaoyu.papiwebapi.http.WorkerExecutor;
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+import com.xiaoyu.papiwebapi.utils.AccessLogQuery;
+import com.xiaoyu.papiwebapi.utils.AccessLogRecord;
+import com.xiaoyu.papiwebapi.utils.AccessLogSearch;
+import com.xiaoyu.papiwebapi.utils.LogManager;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
@@ -65,6 +79,11 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
 
+                if (HttpServer.RESERVED_ENDPOINTS.contains(endpoint)) {
+                    sender.sendMessage(ChatColor.RED + "Endpoint name is reserved: " + endpoint);
+                    return true;
+                }
+
                 plugin.getApiManager().registerApi(endpoint, placeholder);
                 sender.sendMessage(ChatColor.GREEN + "Created API endpoint: /" + endpoint);
                 sender.sendMessage(ChatColor.GREEN + "For placeholder: " + placeholder);
@@ -107,6 +126,16 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
                             ChatColor.AQUA + ph);
                 }
                 break;
+            case "import":
+                if (args.length < 2) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /" + label + " import <file>");
+                    return true;
+                }
+
+                String fileName = args[1];
+                sender.sendMessage(ChatColor.YELLOW + "Importing API endpoints from " + fileName + "...");
+                sendAsync(sender, () -> importApis(fileName));
+                break;
             case "reload":
                 // 执行重载操作
                 sender.sendMessage(ChatColor.YELLOW + "Reloading PapiWebAPI...");
@@ -118,6 +147,9 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage(ChatColor.RED + "Failed to reload PapiWebAPI. Check console for errors.");
                 }
                 break;
+            case "status":
+                sendStatus(sender);
+                break;
             case "logs":
                 // 检查是否有足够的权限
                 if (!sender.hasPermission("papiwebapi.logs")) {
@@ -125,6 +157,28 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
 
+                // 按条件查询：/papiwebapi logs search key=value ...
+                if (args.length > 1 && args[1].equalsIgnoreCase("search")) {
+                    Map<String, String> params = new HashMap<>();
+                    for (int i = 2; i < args.length; i++) {
+                        int index = args[i].indexOf('=');
+                        if (index <= 0) {
+                            sender.sendMessage(ChatColor.RED + "Invalid search condition: " + args[i] + " (use key=value)");
+                            return true;
+                        }
+                        params.put(args[i].substring(0, index), args[i].substring(index + 1));
+                    }
+                    AccessLogQuery query;
+                    try {
+                        query = AccessLogQuery.parse(params, 10, plugin.getLogManager().getSearchMaxResults());
+                    } catch (IllegalArgumentException e) {
+                        sender.sendMessage(ChatColor.RED + e.getMessage());
+                        return true;
+                    }
+                    sendAsync(sender, () -> searchLogs(query));
+                    break;
+                }
+
                 // 默认参数
                 int page = 1;
                 int entriesPerPage = 5;
@@ -158,89 +212,220 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
                     }
                 }
 
-                // 获取日志条目
-                List<String> logEntries = new ArrayList<>();
+                // 在异步线程中读取日志，完成后回到主线程发送
+                showLogs(sender, date, page, entriesPerPage);
+                break;
 
-                if (date != null) {
-                    // 获取特定日期的日志
-                    File logFile = plugin.getLogManager().getLogFile(date);
-                    if (logFile == null || !logFile.exists()) {
-                        sender.sendMessage(ChatColor.RED + "No logs found for date: " + date);
-                        return true;
-                    }
 
-                    YamlConfiguration logs = YamlConfiguration.loadConfiguration(logFile);
-                    for (String key : logs.getKeys(false)) {
-                        String entry = logs.getString(key + ".full_entry");
-                        if (entry != null) {
-                            logEntries.add(entry);
-                        }
-                    }
 
-                    // 逆序排序，最新的日志在前
-                    logEntries.sort((e1, e2) -> e2.compareTo(e1));
+            default:
+                sendHelp(sender);
+                break;
+        }
 
-                    sender.sendMessage(ChatColor.YELLOW + "Showing logs for date: " + date);
-                } else {
-                    // 获取最近的日志（所有日期）
-                    logEntries = plugin.getLogManager().getRecentLogs(1000); // 限制为最近1000条
-                }
+        return true;
+    }
 
-                // 分页显示
-                int totalLogs = logEntries.size();
-                int totalPages = (int) Math.ceil((double) totalLogs / entriesPerPage);
-                if (totalPages == 0) totalPages = 1;
-                if (page > totalPages) page = totalPages;
+    /**
+     * 在异步线程中读取一页日志，完成后在主线程中发送给命令发送者
+     */
+    private void showLogs(CommandSender sender, String date, int page, int entriesPerPage) {
+        sendAsync(sender, () -> readLogsPage(date, page, entriesPerPage));
+    }
 
-                sender.sendMessage(ChatColor.YELLOW + "=== API Access Logs (Page " + page + "/" + totalPages + ") ===");
+    /**
+     * 在异步线程中生成消息，完成后在主线程中发送给命令发送者
+     */
+    private void sendAsync(CommandSender sender, Callable<List<String>> reader) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String> messages;
+            try {
+                messages = reader.call();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Error running command", e);
+                messages = Collections.singletonList(ChatColor.RED + "Command failed. Check console for errors.");
+            }
 
-                if (totalLogs == 0) {
-                    sender.sendMessage(ChatColor.GRAY + "No logs found.");
-                    return true;
+            // 插件在读取期间被停用时不再发送
+            if (!plugin.isEnabled()) {
+                return;
+            }
+            List<String> result = messages;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                for (String message : result) {
+                    sender.sendMessage(message);
                 }
+            });
+        });
+    }
 
-                int startIndex = (page - 1) * entriesPerPage;
-                int endIndex = Math.min(startIndex + entriesPerPage, totalLogs);
+    /**
+     * 从插件目录下的YAML文件批量导入API，文件格式与 apis.yml 相同（别名: 占位符）
+     * 所有有效的条目一次注册，只写入一次 apis.yml
+     */
+    private List<String> importApis(String fileName) throws IOException {
+        List<String> messages = new ArrayList<>();
+        File dataFolder = plugin.getDataFolder().getCanonicalFile();
+        File file = new File(dataFolder, fileName).getCanonicalFile();
+        // 只允许读取插件目录下的文件
+        if (!file.toPath().startsWith(dataFolder.toPath()) || !file.isFile()) {
+            messages.add(ChatColor.RED + "File not found in plugin folder: " + fileName);
+            return messages;
+        }
 
-                for (int i = startIndex; i < endIndex; i++) {
-                    sender.sendMessage(ChatColor.WHITE + logEntries.get(i));
-                }
+        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
+        Map<String, String> apis = new HashMap<>();
+        List<String> skipped = new ArrayList<>();
+        for (String endpoint : config.getKeys(false)) {
+            String placeholder = config.getString(endpoint);
+            if (placeholder == null || placeholder.isEmpty() || config.isConfigurationSection(endpoint)
+                    || endpoint.isEmpty() || endpoint.contains("/") || HttpServer.RESERVED_ENDPOINTS.contains(endpoint)) {
+                skipped.add(endpoint);
+                continue;
+            }
+            apis.put(endpoint, placeholder);
+        }
 
-                // 显示导航提示
-                if (page < totalPages) {
-                    sender.sendMessage(ChatColor.GOLD + "Use '/papiwebapi logs " + (date != null ? date + " " : "") + (page + 1) + "' for the next page.");
-                }
+        int replaced = 0;
+        for (String endpoint : apis.keySet()) {
+            if (plugin.getApiManager().isApiRegistered(endpoint)) {
+                replaced++;
+            }
+        }
+        plugin.getApiManager().registerApis(apis);
 
-                if (date == null && totalPages > 1) {
-                    sender.sendMessage(ChatColor.GOLD + "Use '/papiwebapi logs <date> [page]' to view logs for a specific date.");
-
-                    // 显示可用的日志日期
-                    List<File> logFiles = plugin.getLogManager().getLogFiles();
-                    if (!logFiles.isEmpty()) {
-                        StringBuilder availableDates = new StringBuilder(ChatColor.GOLD + "Available dates: ");
-                        int maxDatesToShow = 5;
-                        for (int i = 0; i < Math.min(logFiles.size(), maxDatesToShow); i++) {
-                            String fileName = logFiles.get(i).getName();
-                            String dateStr = fileName.substring(0, fileName.lastIndexOf("-log.yml"));
-                            availableDates.append(dateStr).append(i < Math.min(logFiles.size(), maxDatesToShow) - 1 ? ", " : "");
-                        }
-                        if (logFiles.size() > maxDatesToShow) {
-                            availableDates.append(", ...");
-                        }
-                        sender.sendMessage(availableDates.toString());
-                    }
-                }
+        messages.add(ChatColor.GREEN + "Imported " + apis.size() + " API endpoint(s) from " + fileName
+                + " (" + (apis.size() - replaced) + " new, " + replaced + " replaced)");
+        if (!skipped.isEmpty()) {
+            messages.add(ChatColor.GOLD + "Skipped " + skipped.size() + " invalid or reserved endpoint(s): "
+                    + String.join(", ", skipped));
+        }
+        return messages;
+    }
 
-                break;
+    /**
+     * 按条件查询日志，生成要发送的消息
+     */
+    private List<String> searchLogs(AccessLogQuery query) {
+        List<String> messages = new ArrayList<>();
+        AccessLogSearch.Result result = plugin.getLogManager().search(query);
+        messages.add(ChatColor.YELLOW + "=== Log Search: " + result.getTotal() + " matches in " + result.getDays()
+                + " day(s), " + result.getTookMillis() + " ms ===");
+        if (result.getPendingDays() > 0) {
+            messages.add(ChatColor.GRAY + "" + result.getPendingDays() + " day(s) are still being indexed and were skipped, try again later.");
+        }
+        if (result.getRecords().isEmpty()) {
+            messages.add(ChatColor.GRAY + "No logs found.");
+            return messages;
+        }
+        for (AccessLogRecord record : result.getRecords()) {
+            messages.add(ChatColor.WHITE + record.toFullEntry());
+        }
+        if (result.getTotal() > result.getRecords().size()) {
+            messages.add(ChatColor.GOLD + "Showing the latest " + result.getRecords().size() + ". Narrow the search or use limit=<n>.");
+        }
+        return messages;
+    }
 
+    /**
+     * 读取一页日志，生成要发送的消息
+     */
+    private List<String> readLogsPage(String date, int page, int entriesPerPage) {
+        List<String> messages = new ArrayList<>();
+
+        // 获取日志条目数，只读取需要显示的一页
+        long totalLogs;
+
+        if (date != null) {
+            // 获取特定日期的日志
+            File logFile = plugin.getLogManager().getLogFile(date);
+            if (logFile == null || !logFile.exists()) {
+                messages.add(ChatColor.RED + "No logs found for date: " + date);
+                return messages;
+            }
 
+            totalLogs = plugin.getLogManager().getLogEntryCount(date);
 
-            default:
-                sendHelp(sender);
-                break;
+            messages.add(ChatColor.YELLOW + "Showing logs for date: " + date);
+        } else {
+            // 获取最近的日志（所有日期）
+            totalLogs = plugin.getLogManager().getRecentLogCount(1000); // 限制为最近1000条
         }
 
-        return true;
+        // 分页显示
+        int totalPages = (int) Math.ceil((double) totalLogs / entriesPerPage);
+        if (totalPages == 0) totalPages = 1;
+        if (page > totalPages) page = totalPages;
+
+        messages.add(ChatColor.YELLOW + "=== API Access Logs (Page " + page + "/" + totalPages + ") ===");
+
+        if (totalLogs == 0) {
+            messages.add(ChatColor.GRAY + "No logs found.");
+            return messages;
+        }
+
+        // 读取该页的日志，最新的日志在前
+        long startIndex = (long) (page - 1) * entriesPerPage;
+        List<String> logEntries = date != null
+                ? plugin.getLogManager().getLogEntries(date, startIndex, entriesPerPage)
+                : plugin.getLogManager().getRecentLogs(startIndex, entriesPerPage);
+
+        for (String entry : logEntries) {
+            messages.add(ChatColor.WHITE + entry);
+        }
+
+        // 显示导航提示
+        if (page < totalPages) {
+            messages.add(ChatColor.GOLD + "Use '/papiwebapi logs " + (date != null ? date + " " : "") + (page + 1) + "' for the next page.");
+        }
+
+        if (date == null && totalPages > 1) {
+            messages.add(ChatColor.GOLD + "Use '/papiwebapi logs <date> [page]' to view logs for a specific date.");
+
+            // 显示可用的日志日期
+            List<File> logFiles = plugin.getLogManager().getLogFiles();
+            if (!logFiles.isEmpty()) {
+                StringBuilder availableDates = new StringBuilder(ChatColor.GOLD + "Available dates: ");
+                int maxDatesToShow = 5;
+                for (int i = 0; i < Math.min(logFiles.size(), maxDatesToShow); i++) {
+                    String dateStr = LogManager.getLogDate(logFiles.get(i).getName());
+                    availableDates.append(dateStr).append(i < Math.min(logFiles.size(), maxDatesToShow) - 1 ? ", " : "");
+                }
+                if (logFiles.size() > maxDatesToShow) {
+                    availableDates.append(", ...");
+                }
+                messages.add(availableDates.toString());
+            }
+        }
+
+        return messages;
+    }
+
+    /**
+     * 显示HTTP服务器运行状态
+     */
+    private void sendStatus(CommandSender sender) {
+        HttpServer httpServer = plugin.getHttpServer();
+        WorkerExecutor executor = httpServer != null ? httpServer.getWorkerExecutor() : null;
+        if (executor == null) {
+            sender.sendMessage(ChatColor.RED + "Web API server is not running.");
+            return;
+        }
+
+        sender.sendMessage(ChatColor.YELLOW + "=== PapiWebAPI Status ===");
+        sender.sendMessage(ChatColor.GOLD + "Listening on: " + ChatColor.WHITE + httpServer.getHost() + ":" + httpServer.getPort());
+        sender.sendMessage(ChatColor.GOLD + "Executor mode: " + ChatColor.WHITE + executor.getMode().name().toLowerCase());
+        sender.sendMessage(ChatColor.GOLD + "Active workers: " + ChatColor.WHITE + executor.getActiveCount()
+                + (executor.getMode() == WorkerExecutor.Mode.POOL ? " / " + executor.getMaxPoolSize() : ""));
+        if (executor.getMode() == WorkerExecutor.Mode.POOL) {
+            sender.sendMessage(ChatColor.GOLD + "Queued requests: " + ChatColor.WHITE + executor.getQueueSize()
+                    + " / " + executor.getQueueCapacity());
+            sender.sendMessage(ChatColor.GOLD + "Queue overflows: " + ChatColor.WHITE + executor.getRejectedCount());
+        }
+        sender.sendMessage(ChatColor.GOLD + "Completed requests: " + ChatColor.WHITE + executor.getCompletedCount());
+        sender.sendMessage(ChatColor.GOLD + "Rate limited requests: " + ChatColor.WHITE + httpServer.getRateLimitedCount());
+        sender.sendMessage(ChatColor.GOLD + "Dropped log entries: " + ChatColor.WHITE + Metrics.LOG_DROPPED.sum()
+                + " (sampled out: " + Metrics.LOG_SAMPLED.sum() + ")");
     }
 
     private String extractEndpoint(String placeholder) {
@@ -257,12 +442,15 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.GOLD + "/papiwebapi create <placeholder> [alias]" + ChatColor.WHITE + " - Create a new API endpoint with optional alias");
         sender.sendMessage(ChatColor.GOLD + "/papiwebapi delete <endpoint_or_placeholder>" + ChatColor.WHITE + " - Delete an API endpoint");
         sender.sendMessage(ChatColor.GOLD + "/papiwebapi list" + ChatColor.WHITE + " - List all registered API endpoints");
+        sender.sendMessage(ChatColor.GOLD + "/papiwebapi import <file>" + ChatColor.WHITE + " - Import API endpoints from a YAML file in the plugin folder");
         sender.sendMessage(ChatColor.GOLD + "/papiwebapi reload" + ChatColor.WHITE + " - Reload configuration and APIs");
+        sender.sendMessage(ChatColor.GOLD + "/papiwebapi status" + ChatColor.WHITE + " - Show web server status");
 
         // 如果有查看日志的权限，显示日志命令
         if (sender.hasPermission("papiwebapi.logs")) {
             sender.sendMessage(ChatColor.GOLD + "/papiwebapi logs [page]" + ChatColor.WHITE + " - View recent API access logs");
             sender.sendMessage(ChatColor.GOLD + "/papiwebapi logs <date> [page]" + ChatColor.WHITE + " - View logs for a specific date (format: yyyy-MM-dd)");
+            sender.sendMessage(ChatColor.GOLD + "/papiwebapi logs search <key=value...>" + ChatColor.WHITE + " - Search logs by ip, endpoint, region, status, auth, since, from, to, limit");
         }
 
         // 显示认证信息，如果启用
@@ -286,7 +474,7 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length == 1) {
-            return Arrays.asList("create", "delete", "list", "reload", "logs").stream()
+            return Arrays.asList("create", "delete", "list", "import", "reload", "status", "logs").stream()
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
@@ -296,16 +484,27 @@ public class PapiWebAPICommand implements CommandExecutor, TabCompleter {
                 return plugin.getApiManager().getRegisteredEndpoints().stream()
                         .filter(s -> s.startsWith(args[1].toLowerCase()))
                         .collect(Collectors.toList());
+            } else if (args[0].equalsIgnoreCase("import")) {
+                // 提供插件目录下的YAML文件作为补全
+                File[] files = plugin.getDataFolder().listFiles((dir, name) -> name.endsWith(".yml")
+                        && !name.equals("config.yml") && !name.equals("apis.yml"));
+                if (files == null) {
+                    return new ArrayList<>();
+                }
+                return Arrays.stream(files)
+                        .map(File::getName)
+                        .filter(s -> s.startsWith(args[1]))
+                        .collect(Collectors.toList());
             } else if (args[0].equalsIgnoreCase("logs")) {
                 // 提供可用日志日期作为补全
                 List<String> dates = new ArrayList<>();
+                if ("search".startsWith(args[1].toLowerCase())) {
+                    dates.add("search");
+                }
                 for (File file : plugin.getLogManager().getLogFiles()) {
-                    String fileName = file.getName();
-                    if (fileName.endsWith("-log.yml")) {
-                        String dateStr = fileName.substring(0, fileName.lastIndexOf("-log.yml"));
-                        if (dateStr.startsWith(args[1].toLowerCase())) {
-                            dates.add(dateStr);
-                        }
+                    String dateStr = LogManager.getLogDate(file.getName());
+                    if (dateStr != null && dateStr.startsWith(args[1].toLowerCase()) && !dates.contains(dateStr)) {
+                        dates.add(dateStr);
                     }
                 }
                 return dates;
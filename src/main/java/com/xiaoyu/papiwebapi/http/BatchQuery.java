@@ -0,0 +1,182 @@
+package com.xiaoyu.papiwebapi.http;
+
+import com.google.gson.stream.JsonWriter;
+import com.xiaoyu.papiwebapi.PapiWebAPI;
+import com.xiaoyu.papiwebapi.snapshot.EndpointSnapshot;
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+import com.xiaoyu.papiwebapi.snapshot.SnapshotService;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量查询：一次请求获取多个端点在多个玩家上的值
+ * 优先读取快照，快照中没有的值在一次主线程调用中统一计算
+ */
+public class BatchQuery {
+
+    private final PapiWebAPI plugin;
+    private final List<String> endpoints;
+    private final List<String> players;
+
+    // 结果：端点 -> (玩家名称 -> 值)，保持请求中的顺序
+    private final Map<String, Map<String, String>> results = new LinkedHashMap<>();
+    private final List<String> unknownEndpoints = new ArrayList<>();
+    private final Set<String> unknownPlayers = new LinkedHashSet<>();
+    private int evaluated;
+
+    /**
+     * @param plugin 插件实例
+     * @param endpoints 端点列表
+     * @param players 玩家名称列表，为空时返回所有在线玩家的值
+     */
+    public BatchQuery(PapiWebAPI plugin, List<String> endpoints, List<String> players) {
+        this.plugin = plugin;
+        this.endpoints = endpoints;
+        this.players = players;
+    }
+
+    /**
+     * 将逗号分隔的参数拆分为去重后的列表
+     */
+    public static List<String> splitList(String value) {
+        Set<String> items = new LinkedHashSet<>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                item = item.trim();
+                if (!item.isEmpty()) {
+                    items.add(item);
+                }
+            }
+        }
+        return new ArrayList<>(items);
+    }
+
+    /**
+     * 解析所有端点和玩家的值
+     *
+     * @throws Exception 主线程计算失败或超时
+     */
+    public void resolve() throws Exception {
+        SnapshotService snapshots = plugin.getSnapshotService();
+
+        // 需要在主线程中计算的端点和玩家
+        Map<String, String> pendingOnline = new LinkedHashMap<>();
+        Map<String, Map<String, String>> pendingPlayers = new LinkedHashMap<>();
+
+        for (String endpoint : endpoints) {
+            String placeholder = plugin.getApiManager().getPlaceholder(endpoint);
+            if (placeholder == null) {
+                unknownEndpoints.add(endpoint);
+                continue;
+            }
+
+            Map<String, String> values = new LinkedHashMap<>();
+            results.put(endpoint, values);
+
+            EndpointSnapshot snapshot = snapshots.getEndpointSnapshot(endpoint);
+            if (snapshot != null && !snapshot.getPlaceholder().equals(placeholder)) {
+                snapshot = null;
+            }
+
+            if (players.isEmpty()) {
+                if (snapshot != null) {
+                    for (PlayerValue value : snapshot.getValues()) {
+                        values.put(value.getName(), value.getValue());
+                    }
+                } else {
+                    pendingOnline.put(endpoint, placeholder);
+                }
+                continue;
+            }
+
+            for (String player : players) {
+                PlayerValue value = snapshot != null ? snapshot.getValue(player) : null;
+                if (value != null) {
+                    values.put(player, value.getValue());
+                } else {
+                    values.put(player, null);
+                    pendingPlayers.computeIfAbsent(endpoint, key -> new LinkedHashMap<>()).put(player, placeholder);
+                }
+            }
+        }
+
+        if (pendingOnline.isEmpty() && pendingPlayers.isEmpty()) {
+            return;
+        }
+
+        // 一次主线程调用计算所有缺失的值
+        snapshots.callSync(() -> {
+            for (Map.Entry<String, String> entry : pendingOnline.entrySet()) {
+                Map<String, String> values = results.get(entry.getKey());
+                for (PlayerValue value : snapshots.evaluateOnlinePlayers(entry.getValue())) {
+                    values.put(value.getName(), value.getValue());
+                    evaluated++;
+                }
+            }
+            for (Map.Entry<String, Map<String, String>> entry : pendingPlayers.entrySet()) {
+                Map<String, String> values = results.get(entry.getKey());
+                for (Map.Entry<String, String> player : entry.getValue().entrySet()) {
+                    String value = PlaceholderUtils.getPlaceholderValue(player.getValue(), player.getKey());
+                    evaluated++;
+                    if (PlaceholderUtils.PLAYER_NOT_FOUND.equals(value)) {
+                        unknownPlayers.add(player.getKey());
+                        values.remove(player.getKey());
+                    } else {
+                        values.put(player.getKey(), value);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 以JSON格式写出结果
+     */
+    public void writeJson(JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("endpoints").beginObject();
+        for (Map.Entry<String, Map<String, String>> endpoint : results.entrySet()) {
+            json.name(endpoint.getKey()).beginObject();
+            for (Map.Entry<String, String> value : endpoint.getValue().entrySet()) {
+                json.name(value.getKey()).value(value.getValue());
+            }
+            json.endObject();
+        }
+        json.endObject();
+
+        json.name("unknown_endpoints").beginArray();
+        for (String endpoint : unknownEndpoints) {
+            json.value(endpoint);
+        }
+        json.endArray();
+
+        json.name("unknown_players").beginArray();
+        for (String player : unknownPlayers) {
+            json.value(player);
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    /**
+     * 用于访问日志的摘要
+     */
+    public String getSummary() {
+        int values = 0;
+        for (Map<String, String> endpoint : results.values()) {
+            values += endpoint.size();
+        }
+        return "Batch: " + endpoints.size() + " endpoints x "
+                + (players.isEmpty() ? "online" : String.valueOf(players.size())) + " players, "
+                + values + " values (" + evaluated + " evaluated), "
+                + unknownEndpoints.size() + " unknown endpoints, " + unknownPlayers.size() + " unknown players";
+    }
+}
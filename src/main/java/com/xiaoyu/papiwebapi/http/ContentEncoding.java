@@ -0,0 +1,91 @@
+package com.xiaoyu.papiwebapi.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 响应体的压缩方式
+ */
+public enum ContentEncoding {
+
+    IDENTITY(null),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String headerValue;
+
+    ContentEncoding(String headerValue) {
+        this.headerValue = headerValue;
+    }
+
+    /**
+     * Content-Encoding 响应头的值，不压缩时为null
+     */
+    public String getHeaderValue() {
+        return headerValue;
+    }
+
+    /**
+     * 包装输出流，关闭返回的流时会写出压缩数据的结尾
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, 8192);
+            case DEFLATE:
+                return new DeflaterOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * 根据 Accept-Encoding 请求头选择压缩方式，权重相同时优先使用gzip
+     *
+     * @param headers Accept-Encoding 请求头，可以为null
+     * @return 压缩方式
+     */
+    public static ContentEncoding negotiate(List<String> headers) {
+        if (headers == null) {
+            return IDENTITY;
+        }
+
+        ContentEncoding best = IDENTITY;
+        double bestWeight = 0;
+        for (String header : headers) {
+            for (String item : header.split(",")) {
+                String[] params = item.split(";");
+                String name = params[0].trim();
+                ContentEncoding encoding;
+                if (name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip")) {
+                    encoding = GZIP;
+                } else if (name.equalsIgnoreCase("deflate")) {
+                    encoding = DEFLATE;
+                } else {
+                    continue;
+                }
+
+                double weight = 1;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            weight = Double.parseDouble(param.substring(2));
+                        } catch (NumberFormatException e) {
+                            weight = 0;
+                        }
+                    }
+                }
+
+                if (weight > bestWeight || (weight == bestWeight && weight > 0 && encoding == GZIP)) {
+                    best = encoding;
+                    bestWeight = weight;
+                }
+            }
+        }
+        return best;
+    }
+}
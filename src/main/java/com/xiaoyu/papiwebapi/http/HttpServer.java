@@ -1,28 +1,61 @@
 package com.xiaoyu.papiwebapi.http;
 
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.xiaoyu.papiwebapi.PapiWebAPI;
+import com.xiaoyu.papiwebapi.leaderboard.LeaderboardIndex;
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+import com.xiaoyu.papiwebapi.metrics.PrometheusExporter;
+import com.xiaoyu.papiwebapi.snapshot.EndpointSnapshot;
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+import com.xiaoyu.papiwebapi.stats.TrafficRollup;
+import com.xiaoyu.papiwebapi.stats.TrafficStats;
+import com.xiaoyu.papiwebapi.stats.TrafficStatsService;
+import com.xiaoyu.papiwebapi.utils.AccessLogQuery;
+import com.xiaoyu.papiwebapi.utils.AccessLogRecord;
+import com.xiaoyu.papiwebapi.utils.AccessLogSearch;
 import com.xiaoyu.papiwebapi.utils.IPLocationUtil;
+import com.xiaoyu.papiwebapi.utils.LogManager;
 import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
-import org.bukkit.Bukkit;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class HttpServer {
 
+    // 内置路由，不能用作API端点名称
+    public static final Set<String> RESERVED_ENDPOINTS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("batch", "metrics", "logs", "stats")));
+
     private final PapiWebAPI plugin;
     private final String host;
     private final int port;
     private com.sun.net.httpserver.HttpServer server;
+    private WorkerExecutor workerExecutor;
 
-    // 用于匹配令牌参数的正则表达式
-    private Pattern tokenPattern;
+    // 请求路由，认证配置变化时重新创建
+    private volatile RequestRouter router;
+    // 用于记录日志的完整URL前缀
+    private final String urlPrefix;
     private boolean authEnabled;
     private String configuredToken;
     private String tokenParameter;
@@ -35,10 +68,37 @@ public class HttpServer {
     // 请求过滤配置
     private List<String> ignoredPaths;
 
+    // 批量查询限制
+    private int batchMaxEndpoints;
+    private int batchMaxPlayers;
+
+    // 限流：普通路由、开销较大的路由（排序、批量查询）按IP限流，可选按令牌限流，为null时不限制
+    private volatile RateLimiter defaultLimiter;
+    private volatile RateLimiter expensiveLimiter;
+    private volatile RateLimiter tokenLimiter;
+
+    // 是否开放 /metrics 路由
+    private boolean metricsEnabled;
+    private boolean logSearchEnabled;
+
+    // 响应压缩配置
+    private boolean compressionEnabled;
+    private int compressionMinSize;
+    private volatile ResponseCache responseCache = new ResponseCache(0);
+    // 单个缓存响应体的最大长度
+    private static final int MAX_CACHED_BODY = 1024 * 1024;
+    // POST表单请求体的最大长度
+    private static final int MAX_FORM_BODY = 64 * 1024;
+    // 端点响应的 Vary 响应头，格式由 Accept 决定，压缩方式由 Accept-Encoding 决定
+    private static final String VARY_NEGOTIATED = "Accept, Accept-Encoding";
+    // 排行榜索引回填期间建议客户端等待的秒数
+    private static final int LEADERBOARD_RETRY_AFTER_SECONDS = 5;
+
     public HttpServer(PapiWebAPI plugin, String host, int port) {
         this.plugin = plugin;
         this.host = host;
         this.port = port;
+        this.urlPrefix = "http://" + host + ":" + port;
 
         // 从配置加载认证设置
         loadAuthConfig();
@@ -48,7 +108,64 @@ public class HttpServer {
 
         // 从配置加载请求过滤设置
         loadFilterConfig();
+
+        // 从配置加载内置路由设置
+        loadRouteConfig();
+
+        // 从配置加载压缩设置
+        loadCompressionConfig();
+
+        // 从配置加载限流设置
+        loadRateLimitConfig();
+    }
+
+    /**
+     * 加载限流配置
+     */
+    private void loadRateLimitConfig() {
+        if (!plugin.getConfig().getBoolean("security.rate_limit.enabled", true)) {
+            defaultLimiter = null;
+            expensiveLimiter = null;
+            tokenLimiter = null;
+            plugin.getLogger().info("Rate limiting disabled");
+            return;
+        }
+
+        long expireSeconds = plugin.getConfig().getLong("security.rate_limit.expire_seconds", 300);
+        defaultLimiter = createLimiter("security.rate_limit.default", 20, 40, expireSeconds);
+        expensiveLimiter = createLimiter("security.rate_limit.expensive", 2, 10, expireSeconds);
+        tokenLimiter = createLimiter("security.rate_limit.token", 0, 0, expireSeconds);
+        plugin.getLogger().info("Rate limiting enabled");
     }
+
+    private RateLimiter createLimiter(String path, double defaultRate, int defaultBurst, long expireSeconds) {
+        double rate = plugin.getConfig().getDouble(path + ".requests_per_second", defaultRate);
+        int burst = plugin.getConfig().getInt(path + ".burst", defaultBurst);
+        if (rate <= 0) {
+            return null;
+        }
+        return new RateLimiter(rate, Math.max(1, burst), expireSeconds);
+    }
+
+    /**
+     * 加载响应压缩配置
+     */
+    private void loadCompressionConfig() {
+        compressionEnabled = plugin.getConfig().getBoolean("server.compression.enabled", true);
+        compressionMinSize = Math.max(0, plugin.getConfig().getInt("server.compression.min_size", 1024));
+        responseCache = new ResponseCache(Math.max(0, plugin.getConfig().getInt("server.compression.cache_entries", 64)));
+    }
+
+    /**
+     * 加载内置路由（批量查询、统计数据）的配置
+     */
+    private void loadRouteConfig() {
+        batchMaxEndpoints = Math.max(1, plugin.getConfig().getInt("batch.max_endpoints", 50));
+        batchMaxPlayers = Math.max(1, plugin.getConfig().getInt("batch.max_players", 500));
+        metricsEnabled = plugin.getConfig().getBoolean("metrics.enabled", true);
+        logSearchEnabled = plugin.getConfig().getBoolean("logging.search.http_enabled", true);
+    }
+
     private void loadFilterConfig() {
         ignoredPaths = plugin.getConfig().getStringList("request_filtering.ignored_paths");
         if (ignoredPaths == null) {
@@ -71,8 +188,8 @@ public class HttpServer {
         configuredToken = plugin.getConfig().getString("security.authentication.token", "");
         tokenParameter = plugin.getConfig().getString("security.authentication.parameter", "token");
 
-        // 编译用于匹配令牌的正则表达式
-        tokenPattern = Pattern.compile("/" + tokenParameter + "=([^/]+)/(.*)");
+        // 创建请求路由，端点表在API注册表变化时自动重建
+        router = new RequestRouter(authEnabled, tokenParameter, configuredToken, plugin.getApiManager()::getRegistry);
 
         plugin.getLogger().info("API authentication " + (authEnabled ? "enabled" : "disabled"));
     }
@@ -104,12 +221,18 @@ public class HttpServer {
         loadAuthConfig();
         loadProxyConfig();
         loadFilterConfig();
+        loadRouteConfig();
+        loadCompressionConfig();
+        loadRateLimitConfig();
     }
 
     public void start() throws IOException {
         server = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress(host, port), 0);
         server.createContext("/", new RootHandler());
-        server.setExecutor(null); // 使用默认执行器
+
+        // 按配置创建请求处理线程，直接处理模式下使用默认执行器
+        workerExecutor = WorkerExecutor.fromConfig(plugin);
+        server.setExecutor(workerExecutor.getExecutor());
         server.start();
     }
 
@@ -117,6 +240,39 @@ public class HttpServer {
         if (server != null) {
             server.stop(0);
         }
+
+        // 停止接收请求后关闭处理线程
+        if (workerExecutor != null) {
+            workerExecutor.shutdown(5000);
+        }
+    }
+
+    /**
+     * 获取请求处理线程
+     * @return 处理线程，服务器未启动时返回null
+     */
+    public WorkerExecutor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    /**
+     * 因限流被拒绝的请求数
+     */
+    public long getRateLimitedCount() {
+        long count = 0;
+        for (RateLimiter limiter : new RateLimiter[]{defaultLimiter, expensiveLimiter, tokenLimiter}) {
+            if (limiter != null) {
+                count += limiter.getRejectedCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 缓存的压缩响应数
+     */
+    public int getResponseCacheSize() {
+        return responseCache.size();
     }
 
     public String getHost() {
@@ -130,6 +286,13 @@ public class HttpServer {
     private class RootHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
+            // 处理线程已满或已关闭，在调度线程中直接返回503，不处理请求
+            if (WorkerExecutor.isRejected()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendResponse(exchange, 503, "Service Unavailable");
+                return;
+            }
+
             String path = exchange.getRequestURI().getPath();
 
             // 检查是否为需要忽略的请求路径
@@ -158,65 +321,155 @@ public class HttpServer {
 
             // 获取客户端IP地址
             String clientAddress = getClientIpAddress(exchange);
-            String clientRegion = IPLocationUtil.getIPLocation(clientAddress);
+            // 地理位置在后台解析，不阻塞请求处理
+            CompletableFuture<String> clientRegion = IPLocationUtil.getIPLocationAsync(clientAddress);
 
-            String fullUrl = "http://" + host + ":" + port + path;
+            String fullUrl = urlPrefix + path;
 
-            // 检查是否需要认证
-            if (authEnabled) {
-                // 检查路径中是否包含令牌
-                Matcher matcher = tokenPattern.matcher(path);
-                if (matcher.find()) {
-                    String providedToken = matcher.group(1);
-                    String actualPath = "/" + matcher.group(2);
-
-                    // 验证令牌
-                    if (!configuredToken.equals(providedToken)) {
+            // 解析令牌和路由
+            long start = System.nanoTime();
+            RequestRouter.Match match = router.route(path);
+            String logEndpoint = logEndpoint(match);
+
+            try {
+                // 限流在计算任何占位符之前进行
+                long waitNanos = checkRateLimit(match, clientAddress);
+                if (waitNanos > 0) {
+                    String errorMessage = "Rate limited";
+                    plugin.getLogManager().logAccess(
+                            clientAddress, clientRegion, fullUrl, logEndpoint, 429, match.getAuth() == RequestRouter.Auth.OK, errorMessage
+                    );
+
+                    long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfter));
+                    sendResponse(exchange, 429, "Too Many Requests");
+                    return;
+                }
+
+                switch (match.getAuth()) {
+                    case INVALID_TOKEN: {
                         String errorMessage = "Invalid token";
                         // 记录失败日志
                         plugin.getLogManager().logAccess(
-                                clientAddress, clientRegion, fullUrl, false, errorMessage
+                                clientAddress, clientRegion, fullUrl, logEndpoint, 403, false, errorMessage
                         );
 
                         sendResponse(exchange, 403, "Forbidden: " + errorMessage);
                         return;
                     }
+                    case MISSING_TOKEN:
+                        // 未提供令牌
+                        if (match.getType() == RequestRouter.RouteType.HOME) {
+                            // 主页可以访问，显示简化信息
+                            String message = "PapiWebAPI is running. Authentication is required.";
+                            // 记录日志（未鉴权但允许访问主页）
+                            plugin.getLogManager().logAccess(
+                                    clientAddress, clientRegion, fullUrl, logEndpoint, 200, false, message
+                            );
 
-                    // 令牌有效，继续处理实际路径
-                    handleRequest(exchange, actualPath, clientAddress, clientRegion, fullUrl, true);
-                } else {
-                    // 未提供令牌
-                    if (path.equals("/") || path.isEmpty()) {
-                        // 主页可以访问，显示简化信息
-                        String message = "PapiWebAPI is running. Authentication is required.";
-                        // 记录日志（未鉴权但允许访问主页）
-                        plugin.getLogManager().logAccess(
-                                clientAddress, clientRegion, fullUrl, false, message
-                        );
+                            sendResponse(exchange, 200, message +
+                                    "\nFormat: http://server:port/" + tokenParameter + "=YOUR_TOKEN/endpoint");
+                        } else {
+                            String errorMessage = "Token required";
+                            // 记录失败日志
+                            plugin.getLogManager().logAccess(
+                                    clientAddress, clientRegion, fullUrl, logEndpoint, 401, false, errorMessage
+                            );
 
-                        sendResponse(exchange, 200, message +
-                                "\nFormat: http://server:port/" + tokenParameter + "=YOUR_TOKEN/endpoint");
-                    } else {
-                        String errorMessage = "Token required";
-                        // 记录失败日志
-                        plugin.getLogManager().logAccess(
-                                clientAddress, clientRegion, fullUrl, false, errorMessage
-                        );
-
-                        sendResponse(exchange, 401, "Unauthorized: " + errorMessage);
-                    }
+                            sendResponse(exchange, 401, "Unauthorized: " + errorMessage);
+                        }
+                        return;
+                    default:
+                        // 令牌有效或不需要认证，继续处理实际路径
+                        handleRequest(exchange, match, clientAddress, clientRegion, fullUrl, true);
                 }
+            } finally {
+                recordRequest(match, exchange.getResponseCode(), System.nanoTime() - start, clientAddress, clientRegion);
+            }
+        }
+
+        /**
+         * 记录请求统计和流量汇总，未注册的端点统一记为 unknown，避免标签数量无限增长
+         */
+        private void recordRequest(RequestRouter.Match match, int status, long nanos, String clientAddress,
+                                   CompletableFuture<String> clientRegion) {
+            String route;
+            String endpoint;
+            if (match.getAuth() != RequestRouter.Auth.OK) {
+                route = "unauthorized";
+                endpoint = "unknown";
             } else {
-                // 不需要认证，直接处理请求
-                handleRequest(exchange, path, clientAddress, clientRegion, fullUrl, true);
+                route = match.getType().name().toLowerCase();
+                switch (match.getType()) {
+                    case HOME: endpoint = "/"; break;
+                    case BATCH: endpoint = "batch"; break;
+                    case METRICS: endpoint = "metrics"; break;
+                    case LOGS: endpoint = "logs"; break;
+                    case STATS: endpoint = "stats"; break;
+                    case ONLINE:
+                    case PLAYER:
+                    case SORT: endpoint = match.getEndpoint(); break;
+                    default: endpoint = "unknown"; break;
+                }
             }
+            Metrics.REQUESTS.record(route, endpoint, status, nanos);
 
+            TrafficStatsService traffic = plugin.getTrafficStatsService();
+            if (traffic != null) {
+                traffic.record(endpoint, status, clientAddress, clientRegion);
+            }
+        }
+
+        /**
+         * 访问日志中记录的端点：注册的端点名称、内置路由名称或请求中未注册的端点名称，未鉴权时为空
+         */
+        private String logEndpoint(RequestRouter.Match match) {
+            if (match.getAuth() != RequestRouter.Auth.OK) {
+                return "";
+            }
+            switch (match.getType()) {
+                case HOME: return "/";
+                case BATCH: return "batch";
+                case METRICS: return "metrics";
+                case LOGS: return "logs";
+                case STATS: return "stats";
+                case UNKNOWN_ENDPOINT: return match.getEndpointSegment();
+                case ONLINE:
+                case PLAYER:
+                case SORT: return match.getEndpoint();
+                default: return "";
+            }
+        }
+
+        /**
+         * 检查请求是否超过限流
+         * @return 0表示允许，否则为需要等待的时间（纳秒）
+         */
+        private long checkRateLimit(RequestRouter.Match match, String clientAddress) {
+            RequestRouter.RouteType type = match.getType();
+            boolean expensive = type == RequestRouter.RouteType.SORT || type == RequestRouter.RouteType.BATCH
+                    || type == RequestRouter.RouteType.LOGS;
+            RateLimiter limiter = expensive ? expensiveLimiter : defaultLimiter;
+            if (limiter != null) {
+                long wait = limiter.tryAcquire(clientAddress);
+                if (wait > 0) {
+                    return wait;
+                }
+            }
+
+            // 所有使用同一令牌的客户端共享一个桶
+            RateLimiter byToken = tokenLimiter;
+            if (byToken != null && authEnabled && match.getAuth() == RequestRouter.Auth.OK) {
+                return byToken.tryAcquire(configuredToken);
+            }
+            return 0;
         }
+
         /**
          * 发送空响应
          */
         private void sendEmptyResponse(HttpExchange exchange, int statusCode) throws IOException {
-            exchange.sendResponseHeaders(statusCode, 0);
+            exchange.sendResponseHeaders(statusCode, -1);
             exchange.getResponseBody().close();
         }
         /**
@@ -254,104 +507,572 @@ public class HttpServer {
         /**
          * 处理API请求
          */
-        private void handleRequest(HttpExchange exchange, String path, String clientAddress,
-                                   String clientRegion, String fullUrl, boolean authSuccess) throws IOException {
-            if (path.equals("/") || path.isEmpty()) {
+        private void handleRequest(HttpExchange exchange, RequestRouter.Match match, String clientAddress,
+                                   CompletableFuture<String> clientRegion, String fullUrl, boolean authSuccess) throws IOException {
+            RequestRouter.RouteType type = match.getType();
+            String logEndpoint = logEndpoint(match);
+            if (type == RequestRouter.RouteType.HOME) {
                 String response = getApiListHtml();
                 // 记录首页访问日志
                 plugin.getLogManager().logAccess(
-                        clientAddress, clientRegion, fullUrl, authSuccess, "API首页"
+                        clientAddress, clientRegion, fullUrl, logEndpoint, 200, authSuccess, "API首页"
                 );
 
                 sendResponse(exchange, 200, response);
                 return;
             }
 
-            // 移除开头的斜杠
-            String endpoint = path.substring(1);
-            String[] parts = endpoint.split("/");
-
-            if (parts.length == 0) {
+            if (type == RequestRouter.RouteType.NOT_FOUND) {
                 String errorMessage = "Not Found";
                 // 记录404日志
                 plugin.getLogManager().logAccess(
-                        clientAddress, clientRegion, fullUrl, authSuccess, errorMessage
+                        clientAddress, clientRegion, fullUrl, logEndpoint, 404, authSuccess, errorMessage
                 );
 
                 sendResponse(exchange, 404, errorMessage);
                 return;
             }
 
-            String placeholderEndpoint = parts[0];
+            // 内置的批量查询路由
+            if (type == RequestRouter.RouteType.BATCH) {
+                handleBatch(exchange, clientAddress, clientRegion, fullUrl, authSuccess);
+                return;
+            }
 
-            if (!plugin.getApiManager().isApiRegistered(placeholderEndpoint)) {
-                String errorMessage = "API endpoint not found: " + placeholderEndpoint;
+            // 统计数据
+            if (type == RequestRouter.RouteType.METRICS) {
+                handleMetrics(exchange, clientAddress, clientRegion, fullUrl, authSuccess);
+                return;
+            }
+
+            // 流量汇总
+            if (type == RequestRouter.RouteType.STATS) {
+                handleStats(exchange, clientAddress, clientRegion, fullUrl, authSuccess);
+                return;
+            }
+
+            // 访问日志查询
+            if (type == RequestRouter.RouteType.LOGS) {
+                handleLogSearch(exchange, clientAddress, clientRegion, fullUrl, authSuccess);
+                return;
+            }
+
+            ResponseFormat format = ResponseFormat.negotiate(exchange);
+            // 响应格式和压缩方式都由请求头决定，包括304和错误响应
+            exchange.getResponseHeaders().set("Vary", VARY_NEGOTIATED);
+
+            if (type == RequestRouter.RouteType.UNKNOWN_ENDPOINT) {
+                String errorMessage = "API endpoint not found: " + match.getEndpointSegment();
                 // 记录404日志
                 plugin.getLogManager().logAccess(
-                        clientAddress, clientRegion, fullUrl, authSuccess, errorMessage
+                        clientAddress, clientRegion, fullUrl, logEndpoint, 404, authSuccess, errorMessage
                 );
 
-                sendResponse(exchange, 404, errorMessage);
+                sendError(exchange, format, 404, errorMessage);
                 return;
             }
 
-            String placeholder = plugin.getApiManager().getPlaceholder(placeholderEndpoint);
+            String placeholderEndpoint = match.getEndpoint();
+            String placeholder = match.getPlaceholder();
+            long registryVersion = match.getRegistryVersion();
+            ContentEncoding encoding = negotiateEncoding(exchange);
 
-            try {
-                final String response;
+            // 确定数据来源，快照和排行榜索引有版本号，实时计算的数据没有
+            boolean sortRoute = type == RequestRouter.RouteType.SORT;
+            String sortOrder = match.getSortOrder(); // htl, lth, atz, zta
+            int limit = match.getLimit();
+            String playerName = type == RequestRouter.RouteType.PLAYER ? match.getPlayerName() : null;
+            LeaderboardIndex index = null;
+            EndpointSnapshot snapshot = null;
+            long dataVersion = -1;
+            long lastModified = 0;
+            String route = null;
 
+            if (sortRoute) {
+                index = plugin.getLeaderboardService().getReadyIndex(placeholderEndpoint, placeholder);
+                if (index != null) {
+                    dataVersion = index.getVersion();
+                    lastModified = index.getLastModified();
+                    route = "sort/" + sortOrder.toLowerCase() + "/" + limit;
+                } else if (plugin.getLeaderboardService().isIndexed(placeholderEndpoint)) {
+                    // 索引回填完成前不计算所有玩家，客户端稍后重试
+                    String errorMessage = "Leaderboard index is not ready yet";
+                    plugin.getLogManager().logAccess(
+                            clientAddress, clientRegion, fullUrl, logEndpoint, 503, authSuccess, errorMessage
+                    );
+                    exchange.getResponseHeaders().set("Retry-After", String.valueOf(LEADERBOARD_RETRY_AFTER_SECONDS));
+                    sendError(exchange, format, 503, errorMessage);
+                    return;
+                } else {
+                    // 不建立索引的端点只对在线玩家排序
+                    snapshot = getUsableSnapshot(placeholderEndpoint, placeholder);
+                }
+            } else if (playerName == null) {
+                snapshot = getUsableSnapshot(placeholderEndpoint, placeholder);
+                if (snapshot != null) {
+                    dataVersion = snapshot.getVersion();
+                    lastModified = snapshot.getUpdatedAt();
+                    route = "online";
+                }
+            } else {
+                // 玩家在线时值来自快照，同样有版本号
+                EndpointSnapshot playerSnapshot = getUsableSnapshot(placeholderEndpoint, placeholder);
+                if (playerSnapshot != null && playerSnapshot.getValue(playerName) != null) {
+                    dataVersion = playerSnapshot.getVersion();
+                    lastModified = playerSnapshot.getUpdatedAt();
+                }
+            }
+
+            // 有版本号的数据附带ETag，客户端的缓存仍然有效时直接返回304，不计算任何占位符
+            if (dataVersion >= 0) {
+                String etag = "W/\"" + registryVersion + "-" + dataVersion + "-" + format.name().toLowerCase() + "\"";
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Last-Modified", formatHttpDate(lastModified));
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                if (isNotModified(exchange, etag, lastModified)) {
+                    plugin.getLogManager().logAccess(
+                            clientAddress, clientRegion, fullUrl, logEndpoint, 304, authSuccess, "Not Modified"
+                    );
+                    sendEmptyResponse(exchange, 304);
+                    return;
+                }
+            }
+
+            // 数据未变化时直接发送之前压缩好的响应体
+            String cacheKey = null;
+            if (route != null && encoding != ContentEncoding.IDENTITY) {
+                cacheKey = placeholderEndpoint + '\n' + placeholder + '\n' + route + '\n' + format + '\n' + encoding;
+                ResponseCache.Entry cached = responseCache.get(cacheKey, dataVersion);
+                if (cached != null) {
+                    plugin.getLogManager().logAccess(
+                            clientAddress, clientRegion, fullUrl, logEndpoint, 200, authSuccess, cached.getSummary()
+                    );
+                    sendCached(exchange, format, cached);
+                    return;
+                }
+            }
+
+            // 先计算出全部的值，再开始写出响应，计算失败时仍可以返回错误状态码
+            List<PlayerValue> values;
+            PlayerValue playerValue = null;
+            try {
                 // 处理排序请求
-                if (parts.length >= 3 && parts[1].equalsIgnoreCase("sort")) {
-                    String sortOrder = parts[2]; // htl, lth, atz, zta
-                    int limit = -1;
-
-                    if (parts.length >= 4) {
-                        try {
-                            limit = Integer.parseInt(parts[3]);
-                        } catch (NumberFormatException ignored) {
-                            // 使用默认限制
-                        }
+                if (sortRoute) {
+                    if (index != null) {
+                        values = index.top(sortOrder, limit);
+                    } else {
+                        // 实时端点、快照或排行榜关闭时只对在线玩家排序，不在主线程中计算所有玩家
+                        List<PlayerValue> online = snapshot != null ? snapshot.getValues()
+                                : plugin.getSnapshotService().evaluateOnlinePlayers(placeholder);
+                        values = PlaceholderUtils.sortValues(online, sortOrder, limit);
                     }
-
-                    List<String> sorted = PlaceholderUtils.getPlayersSorted(placeholder, sortOrder, limit);
-                    response = String.join("\n", sorted);
                 }
                 // 处理特定玩家请求
-                else if (parts.length >= 2) {
-                    String playerName = parts[1];
-                    response = PlaceholderUtils.getPlaceholderValue(placeholder, playerName);
+                else if (playerName != null) {
+                    playerValue = new PlayerValue(null, playerName, getPlayerValue(placeholderEndpoint, placeholder, playerName));
+                    values = Collections.singletonList(playerValue);
                 }
                 // 处理默认请求 - 返回所有在线玩家的值
                 else {
-                    List<String> values = new ArrayList<>();
-                    Bukkit.getOnlinePlayers().forEach(player -> {
-                        String value = PlaceholderUtils.getPlaceholderValue(placeholder, player.getName());
-                        values.add(player.getName() + ": " + value);
-                    });
-                    response = String.join("\n", values);
+                    values = snapshot != null ? snapshot.getValues()
+                            : plugin.getSnapshotService().evaluateOnlinePlayers(placeholder);
                 }
-
-                // 记录成功日志 - 截断响应内容以避免日志过长
-                String logResponse = response.length() > 100 ?
-                        response.substring(0, 97) + "..." : response;
-                plugin.getLogManager().logAccess(
-                        clientAddress, clientRegion, fullUrl, authSuccess, logResponse
-                );
-
-                sendResponse(exchange, 200, response);
             } catch (Exception e) {
                 String errorMessage = "Error: " + e.getMessage();
                 // 记录错误日志
                 plugin.getLogManager().logAccess(
-                        clientAddress, clientRegion, fullUrl, authSuccess, errorMessage
+                        clientAddress, clientRegion, fullUrl, logEndpoint, 500, authSuccess, errorMessage
                 );
 
                 plugin.getLogger().severe("Error processing API request: " + e.getMessage());
                 e.printStackTrace();
+                sendError(exchange, format, 500, "Internal Server Error: " + e.getMessage());
+                return;
+            }
+
+            // 记录成功日志 - 截断响应内容以避免日志过长
+            String summary = summarize(playerValue != null ? String.valueOf(playerValue.getValue()) : null, values);
+            plugin.getLogManager().logAccess(
+                    clientAddress, clientRegion, fullUrl, logEndpoint, 200, authSuccess, summary
+            );
+
+            // 以分块传输编码直接写出响应
+            ResponseOutputStream body = beginBody(exchange, 200, format.getContentType(), encoding, cacheKey != null);
+            try (Writer out = new ResponseBodyWriter(body)) {
+                if (playerValue != null) {
+                    format.writeValue(out, placeholderEndpoint, playerValue);
+                } else {
+                    format.writeValues(out, placeholderEndpoint, values);
+                }
+            }
+
+            if (cacheKey != null) {
+                byte[] compressed = body.getCompressedBody();
+                if (compressed != null) {
+                    responseCache.put(cacheKey, new ResponseCache.Entry(dataVersion, body.getAppliedEncoding(), compressed, summary));
+                }
+            }
+        }
+
+        /**
+         * 检查客户端缓存是否仍然有效
+         * 有 If-None-Match 时只比较ETag，否则比较 If-Modified-Since
+         */
+        private boolean isNotModified(HttpExchange exchange, String etag, long lastModified) {
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                String opaque = stripWeak(etag);
+                for (String candidate : ifNoneMatch.split(",")) {
+                    candidate = candidate.trim();
+                    if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            if (ifModifiedSince != null) {
+                try {
+                    long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                    // HTTP日期只精确到秒
+                    return lastModified / 1000 <= since / 1000;
+                } catch (DateTimeParseException ignored) {
+                }
+            }
+            return false;
+        }
+
+        private String stripWeak(String etag) {
+            return etag.startsWith("W/") ? etag.substring(2) : etag;
+        }
+
+        private String formatHttpDate(long millis) {
+            return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+        }
+
+        /**
+         * 生成用于访问日志的响应摘要，与纯文本格式的前100个字符一致
+         */
+        private String summarize(String singleValue, List<PlayerValue> values) {
+            StringBuilder summary = new StringBuilder();
+            if (singleValue != null) {
+                summary.append(singleValue);
+            } else {
+                for (PlayerValue value : values) {
+                    if (summary.length() > 100) {
+                        break;
+                    }
+                    if (summary.length() > 0) {
+                        summary.append('\n');
+                    }
+                    summary.append(value.getName()).append(": ").append(value.getValue());
+                }
+            }
+            if (summary.length() > 100) {
+                summary.setLength(97);
+                summary.append("...");
+            }
+            return summary.toString();
+        }
+
+        /**
+         * 处理批量查询请求
+         * 参数 endpoints 和 players 为逗号分隔的列表，可以放在查询字符串或POST表单中，
+         * 未指定 players 时返回所有在线玩家的值
+         */
+        private void handleBatch(HttpExchange exchange, String clientAddress, CompletableFuture<String> clientRegion,
+                                 String fullUrl, boolean authSuccess) throws IOException {
+            Map<String, String> params;
+            try {
+                params = parseQuery(exchange.getRequestURI().getRawQuery());
+                if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                    String body = readBody(exchange, MAX_FORM_BODY);
+                    if (body == null) {
+                        String errorMessage = "Request body too large (max " + MAX_FORM_BODY + " bytes)";
+                        plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "batch", 413, authSuccess, errorMessage);
+                        sendResponse(exchange, 413, "Payload Too Large: " + errorMessage);
+                        return;
+                    }
+                    params.putAll(parseQuery(body));
+                }
+            } catch (IllegalArgumentException e) {
+                String errorMessage = "Malformed parameters: " + e.getMessage();
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "batch", 400, authSuccess, errorMessage);
+                sendResponse(exchange, 400, "Bad Request: " + errorMessage);
+                return;
+            }
+
+            List<String> endpoints = BatchQuery.splitList(params.get("endpoints"));
+            List<String> players = BatchQuery.splitList(params.get("players"));
+
+            String error = null;
+            if (endpoints.isEmpty()) {
+                error = "Missing parameter: endpoints";
+            } else if (endpoints.size() > batchMaxEndpoints) {
+                error = "Too many endpoints (max " + batchMaxEndpoints + ")";
+            } else if (players.size() > batchMaxPlayers) {
+                error = "Too many players (max " + batchMaxPlayers + ")";
+            }
+            if (error != null) {
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "batch", 400, authSuccess, error);
+                sendResponse(exchange, 400, "Bad Request: " + error);
+                return;
+            }
+
+            BatchQuery query = new BatchQuery(plugin, endpoints, players);
+            try {
+                query.resolve();
+            } catch (Exception e) {
+                String errorMessage = "Error: " + e.getMessage();
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "batch", 500, authSuccess, errorMessage);
+                plugin.getLogger().severe("Error processing batch request: " + e.getMessage());
                 sendResponse(exchange, 500, "Internal Server Error: " + e.getMessage());
+                return;
+            }
+
+            // 整个批量查询只记录一条日志
+            plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "batch", 200, authSuccess, query.getSummary());
+
+            try (Writer out = new ResponseBodyWriter(beginBody(exchange, 200, ResponseFormat.JSON.getContentType(),
+                    negotiateEncoding(exchange), false))) {
+                JsonWriter json = new JsonWriter(out);
+                query.writeJson(json);
+                json.flush();
             }
         }
 
+        /**
+         * 以Prometheus文本格式输出统计数据
+         */
+        private void handleMetrics(HttpExchange exchange, String clientAddress, CompletableFuture<String> clientRegion,
+                                   String fullUrl, boolean authSuccess) throws IOException {
+            if (!metricsEnabled) {
+                String errorMessage = "Not Found";
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "metrics", 404, authSuccess, errorMessage);
+                sendResponse(exchange, 404, errorMessage);
+                return;
+            }
+
+            plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "metrics", 200, authSuccess, "Metrics");
+            try (Writer out = new ResponseBodyWriter(beginBody(exchange, 200, PrometheusExporter.CONTENT_TYPE,
+                    negotiateEncoding(exchange), false))) {
+                new PrometheusExporter(out).writeAll(HttpServer.this);
+            }
+        }
+
+        /**
+         * 按分钟、小时或天返回流量汇总（JSON）
+         * 参数 granularity 为 minute、hour 或 day，since 为时间范围（如 1h、7d）；
+         * 客户端IP只在启用鉴权时返回
+         */
+        private void handleStats(HttpExchange exchange, String clientAddress, CompletableFuture<String> clientRegion,
+                                 String fullUrl, boolean authSuccess) throws IOException {
+            TrafficStatsService traffic = plugin.getTrafficStatsService();
+            TrafficStats stats = traffic != null ? traffic.getStats() : null;
+            if (stats == null) {
+                String errorMessage = "Not Found";
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "stats", 404, authSuccess, errorMessage);
+                sendResponse(exchange, 404, errorMessage);
+                return;
+            }
+
+            TrafficRollup.Granularity granularity = null;
+            String error = null;
+            long since = 0;
+            try {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                granularity = TrafficRollup.Granularity.fromName(params.getOrDefault("granularity", "hour"));
+                if (granularity == null) {
+                    error = "Invalid granularity (use minute, hour or day)";
+                } else {
+                    String defaultSince = granularity == TrafficRollup.Granularity.MINUTE ? "60m"
+                            : granularity == TrafficRollup.Granularity.HOUR ? "24h" : "30d";
+                    since = AccessLogQuery.parseDuration(params.getOrDefault("since", defaultSince));
+                }
+            } catch (IllegalArgumentException e) {
+                // 参数中的百分号编码不完整或时间范围格式错误
+                error = e.getMessage();
+            }
+            if (error != null) {
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "stats", 400, authSuccess, error);
+                sendResponse(exchange, 400, "Bad Request: " + error);
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            List<TrafficRollup> rollups = stats.query(granularity, now - since, now + 1);
+            plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "stats", 200, authSuccess, "Stats");
+
+            try (Writer out = new ResponseBodyWriter(beginBody(exchange, 200, ResponseFormat.JSON.getContentType(),
+                    negotiateEncoding(exchange), false))) {
+                JsonWriter json = new JsonWriter(out);
+                json.beginObject();
+                json.name("granularity").value(granularity.name().toLowerCase());
+                json.name("from").value(now - since);
+                json.name("to").value(now);
+                json.name("buckets").beginArray();
+                for (TrafficRollup rollup : rollups) {
+                    json.beginObject();
+                    json.name("start").value(rollup.getStart());
+                    json.name("timestamp").value(Instant.ofEpochMilli(rollup.getStart()).toString());
+                    json.name("total").value(rollup.getTotal());
+                    writeCounts(json, "endpoints", rollup.getEndpoints());
+                    writeCounts(json, "statuses", rollup.getStatuses());
+                    writeCounts(json, "regions", rollup.getRegions());
+                    if (authEnabled) {
+                        json.name("top_ips").beginArray();
+                        for (Map.Entry<String, Long> ip : rollup.getTopIps().entrySet()) {
+                            json.beginObject();
+                            json.name("ip").value(ip.getKey());
+                            json.name("count").value(ip.getValue());
+                            json.endObject();
+                        }
+                        json.endArray();
+                    }
+                    json.endObject();
+                }
+                json.endArray();
+                json.endObject();
+                json.flush();
+            }
+        }
+
+        private void writeCounts(JsonWriter json, String name, Map<String, Long> counts) throws IOException {
+            json.name(name).beginObject();
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                json.name(entry.getKey()).value(entry.getValue());
+            }
+            json.endObject();
+        }
+
+        /**
+         * 按条件查询访问日志，返回JSON
+         * 日志中包含客户端IP，只在启用鉴权时提供
+         */
+        private void handleLogSearch(HttpExchange exchange, String clientAddress, CompletableFuture<String> clientRegion,
+                                     String fullUrl, boolean authSuccess) throws IOException {
+            if (!logSearchEnabled || !authEnabled) {
+                String errorMessage = "Not Found";
+                plugin.getLogManager().logAccess(clientAddress, clientRegion, fullUrl, "logs", 404, authSuccess, errorMessage);
+                sendResponse(exchange, 404, errorMessage);
+                return;
+            }
+
+            LogManager logManager = plugin.getLogManager();
+            AccessLogQuery query;
+            try {
+                query = AccessLogQuery.parse(parseQuery(exchange.getRequestURI().getRawQuery()),
+                        logManager.getSearchMaxResults(), logManager.getSearchMaxResults());
+            } catch (IllegalArgumentException e) {
+                logManager.logAccess(clientAddress, clientRegion, fullUrl, "logs", 400, authSuccess, e.getMessage());
+                sendResponse(exchange, 400, "Bad Request: " + e.getMessage());
+                return;
+            }
+
+            AccessLogSearch.Result result = logManager.search(query);
+            logManager.logAccess(clientAddress, clientRegion, fullUrl, "logs", 200, authSuccess,
+                    "Log search: " + result.getRecords().size() + "/" + result.getTotal());
+
+            try (Writer out = new ResponseBodyWriter(beginBody(exchange, 200, ResponseFormat.JSON.getContentType(),
+                    negotiateEncoding(exchange), false))) {
+                JsonWriter json = new JsonWriter(out);
+                json.beginObject();
+                json.name("total").value(result.getTotal());
+                json.name("returned").value(result.getRecords().size());
+                json.name("days").value(result.getDays());
+                json.name("pending_days").value(result.getPendingDays());
+                json.name("took_ms").value(result.getTookMillis());
+                json.name("records").beginArray();
+                for (AccessLogRecord record : result.getRecords()) {
+                    json.beginObject();
+                    json.name("time").value(record.getTime());
+                    json.name("timestamp").value(record.getTimestamp());
+                    json.name("ip").value(record.getIp());
+                    json.name("region").value(record.getRegion());
+                    json.name("path").value(record.getPath());
+                    json.name("endpoint").value(record.getEndpoint());
+                    json.name("status").value(record.getStatus());
+                    json.name("auth").value(record.isAuthSuccess());
+                    json.name("response").value(record.getResponse());
+                    json.endObject();
+                }
+                json.endArray();
+                json.endObject();
+                json.flush();
+            }
+        }
+
+        /**
+         * 解析 application/x-www-form-urlencoded 格式的参数
+         *
+         * @throws IllegalArgumentException 参数中有不完整的百分号编码
+         */
+        private Map<String, String> parseQuery(String query) {
+            Map<String, String> params = new HashMap<>();
+            if (query == null || query.isEmpty()) {
+                return params;
+            }
+            for (String pair : query.split("&")) {
+                int index = pair.indexOf('=');
+                String key = index >= 0 ? pair.substring(0, index) : pair;
+                String value = index >= 0 ? pair.substring(index + 1) : "";
+                params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+            return params;
+        }
+
+        /**
+         * 读取请求体
+         *
+         * @return 请求体，超过最大长度时返回null
+         */
+        private String readBody(HttpExchange exchange, int maxBytes) throws IOException {
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null) {
+                try {
+                    if (Long.parseLong(contentLength.trim()) > maxBytes) {
+                        return null;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // 按实际读取的长度判断
+                }
+            }
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] body = in.readNBytes(maxBytes + 1);
+                if (body.length > maxBytes) {
+                    return null;
+                }
+                return new String(body, StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * 获取端点当前可用的快照
+         * @return 快照，端点为实时计算或快照中的占位符已过时时返回null
+         */
+        private EndpointSnapshot getUsableSnapshot(String endpoint, String placeholder) {
+            EndpointSnapshot snapshot = plugin.getSnapshotService().getEndpointSnapshot(endpoint);
+            if (snapshot != null && snapshot.getPlaceholder().equals(placeholder)) {
+                return snapshot;
+            }
+            return null;
+        }
+
+        /**
+         * 获取特定玩家的值，玩家在快照中时直接返回，否则在主线程中计算
+         */
+        private String getPlayerValue(String endpoint, String placeholder, String playerName) throws Exception {
+            EndpointSnapshot snapshot = getUsableSnapshot(endpoint, placeholder);
+            if (snapshot != null) {
+                PlayerValue value = snapshot.getValue(playerName);
+                if (value != null) {
+                    return value.getValue();
+                }
+            }
+            return plugin.getSnapshotService().callSync(() -> PlaceholderUtils.getPlaceholderValue(placeholder, playerName));
+        }
+
         private String getApiListHtml() {
             StringBuilder html = new StringBuilder();
             html.append("<html><head><title>PAPI Web API</title>");
@@ -398,11 +1119,55 @@ public class HttpServer {
 
         private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
             exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
-            byte[] responseBytes = response.getBytes();
+            byte[] responseBytes = response.getBytes(StandardCharsets.UTF_8);
             exchange.sendResponseHeaders(statusCode, responseBytes.length);
             OutputStream os = exchange.getResponseBody();
             os.write(responseBytes);
             os.close();
         }
+
+        /**
+         * 按响应格式发送错误信息
+         */
+        private void sendError(HttpExchange exchange, ResponseFormat format, int statusCode, String message) throws IOException {
+            try (Writer out = new ResponseBodyWriter(beginBody(exchange, statusCode, format.getContentType(),
+                    negotiateEncoding(exchange), false))) {
+                format.writeError(out, statusCode, message);
+            }
+        }
+
+        private ContentEncoding negotiateEncoding(HttpExchange exchange) {
+            return compressionEnabled ?
+                    ContentEncoding.negotiate(exchange.getRequestHeaders().get("Accept-Encoding")) : ContentEncoding.IDENTITY;
+        }
+
+        /**
+         * 创建响应体输出流，响应体超过最小压缩长度时按客户端接受的方式压缩
+         *
+         * @param capture 是否保留压缩后的数据用于缓存
+         */
+        private ResponseOutputStream beginBody(HttpExchange exchange, int statusCode, String contentType,
+                                               ContentEncoding encoding, boolean capture) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (compressionEnabled && !exchange.getResponseHeaders().containsKey("Vary")) {
+                exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            }
+            return new ResponseOutputStream(exchange, statusCode, encoding, compressionMinSize,
+                    capture ? MAX_CACHED_BODY : 0);
+        }
+
+        /**
+         * 发送缓存的压缩响应体
+         */
+        private void sendCached(HttpExchange exchange, ResponseFormat format, ResponseCache.Entry cached) throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", format.getContentType());
+            exchange.getResponseHeaders().set("Vary", VARY_NEGOTIATED);
+            exchange.getResponseHeaders().set("Content-Encoding", cached.getEncoding().getHeaderValue());
+            byte[] body = cached.getBody();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
     }
 }
\ No newline at end of file
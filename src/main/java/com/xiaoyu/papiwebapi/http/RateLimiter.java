@@ -0,0 +1,91 @@
+package com.xiaoyu.papiwebapi.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌桶限流
+ * 每个键一个桶，桶的状态只有一个"理论到达时间"（GCRA算法，与令牌桶等价），用CAS更新，不需要加锁。
+ * 空闲到已经装满的桶会被定期清理，清理不会改变限流结果
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final long expireNanos;
+    private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst 桶容量，即允许的突发请求数
+     * @param expireSeconds 桶空闲多久后清理（秒）
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long expireSeconds) {
+        this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * Math.max(1, burst);
+        this.expireNanos = TimeUnit.SECONDS.toNanos(Math.max(1, expireSeconds));
+        this.nextSweep = new AtomicLong(System.nanoTime() + expireNanos);
+    }
+
+    /**
+     * 尝试获取一个令牌
+     *
+     * @param key 限流的键，例如客户端IP
+     * @return 0表示允许，否则为需要等待的时间（纳秒）
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        sweepIfDue(now);
+
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+
+        while (true) {
+            long tat = bucket.get();
+            long newTat = Math.max(tat, now) + intervalNanos;
+            long wait = newTat - now - toleranceNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 被拒绝的请求数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * 当前的桶数量
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + expireNanos)) {
+            return;
+        }
+        // 理论到达时间早于 now - expire 的桶已装满且空闲，移除后重新创建的效果相同
+        buckets.values().removeIf(bucket -> bucket.get() - (now - expireNanos) < 0);
+    }
+
+    private static final class Bucket extends AtomicLong {
+        Bucket(long tat) {
+            super(tat);
+        }
+    }
+}
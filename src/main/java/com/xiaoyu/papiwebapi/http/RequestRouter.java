@@ -0,0 +1,346 @@
+package com.xiaoyu.papiwebapi.http;
+
+import com.xiaoyu.papiwebapi.api.ApiRegistry;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 请求路由
+ * 对路径只扫描一次，按下标记录各段的位置，依次匹配令牌前缀、端点和子路由，
+ * 端点表在API注册表变化时才重新构建
+ */
+public class RequestRouter {
+
+    public enum Auth {
+        OK, INVALID_TOKEN, MISSING_TOKEN
+    }
+
+    public enum RouteType {
+        HOME, NOT_FOUND, BATCH, METRICS, LOGS, STATS, UNKNOWN_ENDPOINT, ONLINE, PLAYER, SORT
+    }
+
+    // 只需要记录前几段的位置：端点、子路由、排序方式、数量
+    private static final int MAX_SEGMENTS = 4;
+
+    private final boolean authEnabled;
+    private final String tokenPrefix;
+    private final String token;
+    private final Supplier<ApiRegistry> registrySource;
+
+    private volatile EndpointTable table;
+    private final ThreadLocal<Match> matches = ThreadLocal.withInitial(Match::new);
+
+    /**
+     * @param authEnabled 是否需要令牌
+     * @param tokenParameter 令牌参数名
+     * @param token 配置的令牌
+     * @param registrySource 当前的API注册表快照，版本与内容来自同一个快照
+     */
+    public RequestRouter(boolean authEnabled, String tokenParameter, String token,
+                         Supplier<ApiRegistry> registrySource) {
+        this.authEnabled = authEnabled;
+        this.tokenPrefix = "/" + tokenParameter + "=";
+        this.token = token;
+        this.registrySource = registrySource;
+    }
+
+    /**
+     * 解析请求路径
+     * 返回的对象属于当前线程，下一次调用时会被复用
+     *
+     * @param path 请求路径
+     * @return 路由结果
+     */
+    public Match route(String path) {
+        Match match = matches.get();
+        match.reset(path);
+
+        int start = 0;
+        if (authEnabled) {
+            int tokenStart = tokenPrefix.length();
+            int tokenEnd = -1;
+            if (path.startsWith(tokenPrefix)) {
+                // 令牌段之后可以没有斜杠，此时为首页
+                tokenEnd = path.indexOf('/', tokenStart);
+                if (tokenEnd < 0) {
+                    tokenEnd = path.length();
+                }
+            }
+            if (tokenEnd <= tokenStart) {
+                match.auth = Auth.MISSING_TOKEN;
+                match.type = path.equals("/") || path.isEmpty() ? RouteType.HOME : RouteType.NOT_FOUND;
+                return match;
+            }
+
+            int tokenLength = tokenEnd - tokenStart;
+            if (tokenLength != token.length() || !path.regionMatches(tokenStart, token, 0, tokenLength)) {
+                match.auth = Auth.INVALID_TOKEN;
+                return match;
+            }
+            // 令牌段之后的部分为实际路径
+            start = tokenEnd;
+        }
+
+        int length = path.length();
+        if (start >= length - 1) {
+            match.type = RouteType.HOME;
+            return match;
+        }
+
+        // 按斜杠分段，末尾的空段不计入段数
+        int count = 0;
+        int parts = 0;
+        int segmentStart = start + 1;
+        for (int i = segmentStart; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (count < MAX_SEGMENTS) {
+                    match.starts[count] = segmentStart;
+                    match.ends[count] = i;
+                }
+                count++;
+                if (i > segmentStart) {
+                    parts = count;
+                }
+                segmentStart = i + 1;
+            }
+        }
+
+        if (parts == 0) {
+            match.type = RouteType.NOT_FOUND;
+            return match;
+        }
+
+        if (match.segmentEquals(0, "batch", false)) {
+            match.type = RouteType.BATCH;
+            return match;
+        }
+        if (match.segmentEquals(0, "metrics", false)) {
+            match.type = RouteType.METRICS;
+            return match;
+        }
+        if (match.segmentEquals(0, "logs", false)) {
+            match.type = RouteType.LOGS;
+            return match;
+        }
+        if (match.segmentEquals(0, "stats", false)) {
+            match.type = RouteType.STATS;
+            return match;
+        }
+
+        EndpointTable current = getTable();
+        match.registryVersion = current.version;
+        int slot = current.find(path, match.starts[0], match.ends[0]);
+        if (slot < 0) {
+            match.type = RouteType.UNKNOWN_ENDPOINT;
+            return match;
+        }
+        match.endpoint = current.endpoints[slot];
+        match.placeholder = current.placeholders[slot];
+
+        if (parts >= 3 && match.segmentEquals(1, "sort", true)) {
+            match.type = RouteType.SORT;
+            match.sortOrder = match.segment(2);
+            if (parts >= 4) {
+                match.limit = parseInt(path, match.starts[3], match.ends[3]);
+            }
+        } else if (parts >= 2) {
+            match.type = RouteType.PLAYER;
+        } else {
+            match.type = RouteType.ONLINE;
+        }
+        return match;
+    }
+
+    /**
+     * 获取当前的端点表，注册表版本变化时重新构建
+     */
+    private EndpointTable getTable() {
+        EndpointTable current = table;
+        ApiRegistry registry = registrySource.get();
+        if (current == null || current.version != registry.getVersion()) {
+            synchronized (this) {
+                current = table;
+                if (current == null || current.version != registry.getVersion()) {
+                    current = new EndpointTable(registry.getVersion(), registry.getApis());
+                    table = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 按 Integer.parseInt 的规则解析数字，格式错误或溢出时返回-1
+     */
+    static int parseInt(String s, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        boolean negative = false;
+        char first = s.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++from == to) {
+                return -1;
+            }
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                return -1;
+            }
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+    /**
+     * 路由结果，按下标引用请求路径中的各段，需要时才创建字符串
+     */
+    public static final class Match {
+        private final int[] starts = new int[MAX_SEGMENTS];
+        private final int[] ends = new int[MAX_SEGMENTS];
+
+        private String path;
+        private Auth auth;
+        private RouteType type;
+        private long registryVersion;
+        private String endpoint;
+        private String placeholder;
+        private String sortOrder;
+        private int limit;
+
+        private void reset(String path) {
+            this.path = path;
+            this.auth = Auth.OK;
+            this.type = RouteType.NOT_FOUND;
+            this.registryVersion = -1;
+            this.endpoint = null;
+            this.placeholder = null;
+            this.sortOrder = null;
+            this.limit = -1;
+        }
+
+        private boolean segmentEquals(int index, String value, boolean ignoreCase) {
+            int length = ends[index] - starts[index];
+            return length == value.length() && path.regionMatches(ignoreCase, starts[index], value, 0, length);
+        }
+
+        private String segment(int index) {
+            return path.substring(starts[index], ends[index]);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Auth getAuth() {
+            return auth;
+        }
+
+        public RouteType getType() {
+            return type;
+        }
+
+        /**
+         * 匹配时API注册表的版本
+         */
+        public long getRegistryVersion() {
+            return registryVersion;
+        }
+
+        /**
+         * 匹配到的端点名称，未匹配时为null
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public String getPlaceholder() {
+            return placeholder;
+        }
+
+        /**
+         * 请求中的端点名称，用于未注册端点的错误信息
+         */
+        public String getEndpointSegment() {
+            return segment(0);
+        }
+
+        /**
+         * 请求的玩家名称，仅用于 PLAYER 路由
+         */
+        public String getPlayerName() {
+            return segment(1);
+        }
+
+        /**
+         * 排序方式，仅用于 SORT 路由
+         */
+        public String getSortOrder() {
+            return sortOrder;
+        }
+
+        /**
+         * 返回的数量，未指定时为-1
+         */
+        public int getLimit() {
+            return limit;
+        }
+    }
+
+    /**
+     * 开放寻址的端点表，直接用请求路径中的字符区间查找，不需要创建子字符串
+     */
+    private static final class EndpointTable {
+        private final long version;
+        private final String[] endpoints;
+        private final String[] placeholders;
+        private final int mask;
+
+        EndpointTable(long version, Map<String, String> apis) {
+            this.version = version;
+            int capacity = Integer.highestOneBit(Math.max(4, apis.size() * 2) - 1) << 1;
+            this.endpoints = new String[capacity];
+            this.placeholders = new String[capacity];
+            this.mask = capacity - 1;
+
+            for (Map.Entry<String, String> api : apis.entrySet()) {
+                String endpoint = api.getKey();
+                int slot = hash(endpoint, 0, endpoint.length()) & mask;
+                while (endpoints[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                endpoints[slot] = endpoint;
+                placeholders[slot] = api.getValue();
+            }
+        }
+
+        int find(String s, int from, int to) {
+            int length = to - from;
+            int slot = hash(s, from, to) & mask;
+            String candidate;
+            while ((candidate = endpoints[slot]) != null) {
+                if (candidate.length() == length && candidate.regionMatches(0, s, from, length)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int hash(String s, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
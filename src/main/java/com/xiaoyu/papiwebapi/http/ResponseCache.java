@@ -0,0 +1,87 @@
+package com.xiaoyu.papiwebapi.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 压缩后响应体的缓存
+ * 以路由、响应格式和压缩方式为键，数据版本不变时直接复用压缩结果，超过容量时淘汰最久未使用的条目
+ */
+public class ResponseCache {
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    public ResponseCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的响应体
+     *
+     * @param key 缓存键
+     * @param version 当前的数据版本
+     * @return 缓存条目，不存在或版本不一致时返回null
+     */
+    public synchronized Entry get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version != version) {
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized void put(String key, Entry entry) {
+        if (maxEntries > 0) {
+            entries.put(key, entry);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存的响应体
+     */
+    public static class Entry {
+        private final long version;
+        private final ContentEncoding encoding;
+        private final byte[] body;
+        // 用于访问日志的响应摘要
+        private final String summary;
+
+        public Entry(long version, ContentEncoding encoding, byte[] body, String summary) {
+            this.version = version;
+            this.encoding = encoding;
+            this.body = body;
+            this.summary = summary;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public ContentEncoding getEncoding() {
+            return encoding;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.xiaoyu.papiwebapi.http;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * 响应格式
+ * 通过 ?format= 参数或 Accept 请求头选择，默认为兼容旧版本的纯文本格式
+ */
+public enum ResponseFormat {
+
+    /**
+     * 纯文本，每行一个 "玩家名: 值"，单个玩家只返回值
+     */
+    TEXT("text/plain; charset=UTF-8") {
+        @Override
+        public void writeValues(Writer out, String endpoint, List<PlayerValue> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    out.write('\n');
+                }
+                PlayerValue value = values.get(i);
+                out.write(String.valueOf(value.getName()));
+                out.write(": ");
+                out.write(String.valueOf(value.getValue()));
+            }
+        }
+
+        @Override
+        public void writeValue(Writer out, String endpoint, PlayerValue value) throws IOException {
+            out.write(String.valueOf(value.getValue()));
+        }
+
+        @Override
+        public void writeError(Writer out, int status, String message) throws IOException {
+            out.write(message);
+        }
+    },
+
+    /**
+     * JSON对象
+     */
+    JSON("application/json; charset=UTF-8") {
+        @Override
+        public void writeValues(Writer out, String endpoint, List<PlayerValue> values) throws IOException {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.name("endpoint").value(endpoint);
+            json.name("count").value(values.size());
+            json.name("values").beginArray();
+            for (PlayerValue value : values) {
+                writePlayer(json, value);
+            }
+            json.endArray();
+            json.endObject();
+            json.flush();
+        }
+
+        @Override
+        public void writeValue(Writer out, String endpoint, PlayerValue value) throws IOException {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.name("endpoint").value(endpoint);
+            json.name("player").value(value.getName());
+            json.name("value").value(value.getValue());
+            json.endObject();
+            json.flush();
+        }
+
+        @Override
+        public void writeError(Writer out, int status, String message) throws IOException {
+            JsonWriter json = new JsonWriter(out);
+            json.beginObject();
+            json.name("status").value(status);
+            json.name("error").value(message);
+            json.endObject();
+            json.flush();
+        }
+
+        private void writePlayer(JsonWriter json, PlayerValue value) throws IOException {
+            json.beginObject();
+            json.name("name").value(value.getName());
+            if (value.getUuid() != null) {
+                json.name("uuid").value(value.getUuid().toString());
+            }
+            json.name("value").value(value.getValue());
+            json.endObject();
+        }
+    };
+
+    private final String contentType;
+
+    ResponseFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * 写出多个玩家的值
+     */
+    public abstract void writeValues(Writer out, String endpoint, List<PlayerValue> values) throws IOException;
+
+    /**
+     * 写出单个玩家的值
+     */
+    public abstract void writeValue(Writer out, String endpoint, PlayerValue value) throws IOException;
+
+    /**
+     * 写出错误信息
+     */
+    public abstract void writeError(Writer out, int status, String message) throws IOException;
+
+    /**
+     * 根据请求选择响应格式，?format= 参数优先于 Accept 请求头
+     *
+     * @param exchange HTTP交换对象
+     * @return 响应格式
+     */
+    public static ResponseFormat negotiate(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                if (pair.regionMatches(true, 0, "format=", 0, 7)) {
+                    String name = pair.substring(7);
+                    if (name.equalsIgnoreCase("json")) {
+                        return JSON;
+                    }
+                    if (name.equalsIgnoreCase("text") || name.equalsIgnoreCase("txt")) {
+                        return TEXT;
+                    }
+                }
+            }
+        }
+
+        List<String> accept = exchange.getRequestHeaders().get("Accept");
+        if (accept != null) {
+            for (String value : accept) {
+                int json = value.indexOf("application/json");
+                int text = value.indexOf("text/plain");
+                if (json >= 0 && (text < 0 || json < text)) {
+                    return JSON;
+                }
+            }
+        }
+        return TEXT;
+    }
+}
@@ -0,0 +1,159 @@
+package com.xiaoyu.papiwebapi.http;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按需压缩的响应输出流
+ * 响应体不超过最小压缩长度时原样发送，超过后才发送响应头并开始压缩（分块传输编码）
+ * 可以同时保留压缩后的数据，用于缓存
+ */
+public class ResponseOutputStream extends OutputStream {
+
+    private final HttpExchange exchange;
+    private final int statusCode;
+    private final ContentEncoding encoding;
+    private final byte[] pending;
+    private int pendingCount;
+
+    // 保留压缩数据的最大长度，为0时不保留
+    private final int captureLimit;
+    private ByteArrayOutputStream captured;
+
+    private OutputStream target;
+    private boolean compressed;
+    private boolean closed;
+
+    /**
+     * @param exchange HTTP交换对象，调用前应已设置好其他响应头
+     * @param statusCode 状态码
+     * @param encoding 客户端接受的压缩方式
+     * @param minSize 最小压缩长度（字节）
+     * @param captureLimit 保留压缩数据的最大长度，为0时不保留
+     */
+    public ResponseOutputStream(HttpExchange exchange, int statusCode, ContentEncoding encoding, int minSize, int captureLimit) {
+        this.exchange = exchange;
+        this.statusCode = statusCode;
+        this.encoding = encoding;
+        this.pending = new byte[encoding == ContentEncoding.IDENTITY ? 0 : minSize];
+        this.captureLimit = captureLimit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (target == null) {
+            if (pendingCount + length <= pending.length) {
+                System.arraycopy(bytes, offset, pending, pendingCount, length);
+                pendingCount += length;
+                return;
+            }
+            begin();
+        }
+        target.write(bytes, offset, length);
+    }
+
+    /**
+     * 响应体超过最小压缩长度，发送响应头并写出已缓冲的数据
+     */
+    private void begin() throws IOException {
+        OutputStream body = exchange.getResponseBody();
+        if (encoding != ContentEncoding.IDENTITY) {
+            exchange.getResponseHeaders().set("Content-Encoding", encoding.getHeaderValue());
+            compressed = true;
+            if (captureLimit > 0) {
+                captured = new ByteArrayOutputStream();
+                body = new CapturingOutputStream(body);
+            }
+        }
+        exchange.sendResponseHeaders(statusCode, 0);
+        target = encoding.wrap(body);
+        target.write(pending, 0, pendingCount);
+        pendingCount = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (target != null) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (target != null) {
+            target.close();
+            return;
+        }
+
+        // 响应体较小，不压缩直接发送
+        exchange.sendResponseHeaders(statusCode, pendingCount == 0 ? -1 : pendingCount);
+        try (OutputStream body = exchange.getResponseBody()) {
+            if (pendingCount > 0) {
+                body.write(pending, 0, pendingCount);
+            }
+        }
+    }
+
+    /**
+     * 实际使用的压缩方式
+     */
+    public ContentEncoding getAppliedEncoding() {
+        return compressed ? encoding : ContentEncoding.IDENTITY;
+    }
+
+    /**
+     * 获取完整的压缩后数据
+     * @return 压缩后的数据，未压缩或超过保留长度时返回null
+     */
+    public byte[] getCompressedBody() {
+        return closed && captured != null ? captured.toByteArray() : null;
+    }
+
+    private class CapturingOutputStream extends OutputStream {
+        private final OutputStream out;
+
+        CapturingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            if (captured != null) {
+                if (captured.size() + length > captureLimit) {
+                    captured = null;
+                } else {
+                    captured.write(bytes, offset, length);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
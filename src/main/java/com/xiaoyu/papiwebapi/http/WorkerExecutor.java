@@ -0,0 +1,243 @@
+package com.xiaoyu.papiwebapi.http;
+
+import com.xiaoyu.papiwebapi.PapiWebAPI;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP请求处理线程
+ * 支持三种模式：有界线程池、每个请求一个虚拟线程（Java 21）、在HTTP调度线程中直接处理
+ */
+public class WorkerExecutor {
+
+    public enum Mode {
+        POOL, VIRTUAL, INLINE
+    }
+
+    private final PapiWebAPI plugin;
+    private final Mode mode;
+    private final int queueCapacity;
+
+    // 线程池模式下的执行器
+    private ThreadPoolExecutor pool;
+    // 虚拟线程模式下的执行器
+    private ExecutorService virtualExecutor;
+
+    // 虚拟线程模式下的统计
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final LongAdder completedTasks = new LongAdder();
+    // 队列已满或已关闭而被拒绝的请求数
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    // 调度线程正在处理被拒绝的请求，处理器只返回503
+    private static final ThreadLocal<Boolean> REJECTED = new ThreadLocal<>();
+
+    private WorkerExecutor(PapiWebAPI plugin, Mode mode, int threads, int queueCapacity) {
+        this.plugin = plugin;
+        this.queueCapacity = queueCapacity;
+
+        if (mode == Mode.VIRTUAL) {
+            virtualExecutor = createVirtualExecutor();
+            if (virtualExecutor == null) {
+                plugin.getLogger().warning("Virtual threads require Java 21, falling back to thread pool");
+                mode = Mode.POOL;
+            }
+        }
+        if (mode == Mode.POOL) {
+            pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), new WorkerThreadFactory(), new RejectHandler());
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * 根据配置创建执行器
+     *
+     * @param plugin 插件实例
+     * @return 执行器
+     */
+    public static WorkerExecutor fromConfig(PapiWebAPI plugin) {
+        String modeName = plugin.getConfig().getString("server.executor.mode", "pool");
+        int threads = Math.max(1, plugin.getConfig().getInt("server.executor.threads", 8));
+        int queueSize = Math.max(1, plugin.getConfig().getInt("server.executor.queue_size", 256));
+
+        Mode mode;
+        try {
+            mode = Mode.valueOf(modeName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Unknown executor mode '" + modeName + "', using pool");
+            mode = Mode.POOL;
+        }
+
+        WorkerExecutor executor = new WorkerExecutor(plugin, mode, threads, queueSize);
+        plugin.getLogger().info("HTTP executor mode: " + executor.mode.name().toLowerCase()
+                + (executor.mode == Mode.POOL ? " (threads=" + threads + ", queue=" + queueSize + ")" : ""));
+        return executor;
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，运行在Java 21以下时返回null
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 获取传给HTTP服务器的执行器
+     * @return 执行器，直接处理模式下返回null
+     */
+    public Executor getExecutor() {
+        switch (mode) {
+            case POOL:
+                return pool;
+            case VIRTUAL:
+                return task -> {
+                    try {
+                        virtualExecutor.execute(() -> {
+                            activeTasks.incrementAndGet();
+                            try {
+                                task.run();
+                            } finally {
+                                activeTasks.decrementAndGet();
+                                completedTasks.increment();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        reject(task);
+                    }
+                };
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 关闭执行器，等待正在处理的请求完成
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     */
+    public void shutdown(long timeoutMillis) {
+        ExecutorService service = pool != null ? pool : virtualExecutor;
+        if (service == null) {
+            return;
+        }
+
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                plugin.getLogger().warning("HTTP workers did not finish in time, interrupting");
+                service.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            service.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 正在处理请求的线程数
+     */
+    public int getActiveCount() {
+        return pool != null ? pool.getActiveCount() : activeTasks.get();
+    }
+
+    /**
+     * 线程池中的线程数
+     */
+    public int getPoolSize() {
+        return pool != null ? pool.getPoolSize() : 0;
+    }
+
+    /**
+     * 线程池的最大线程数
+     */
+    public int getMaxPoolSize() {
+        return pool != null ? pool.getMaximumPoolSize() : 0;
+    }
+
+    /**
+     * 等待处理的请求数
+     */
+    public int getQueueSize() {
+        return pool != null ? pool.getQueue().size() : 0;
+    }
+
+    public int getQueueCapacity() {
+        return pool != null ? queueCapacity : 0;
+    }
+
+    /**
+     * 已处理完成的请求数
+     */
+    public long getCompletedCount() {
+        return pool != null ? pool.getCompletedTaskCount() : completedTasks.sum();
+    }
+
+    /**
+     * 因队列已满或已关闭而返回503的请求数
+     */
+    public long getRejectedCount() {
+        return rejectedTasks.get();
+    }
+
+    /**
+     * 当前线程是否正在处理被拒绝的请求
+     * 为true时处理器应立即返回503并关闭连接，不能执行任何耗时的操作
+     */
+    public static boolean isRejected() {
+        return REJECTED.get() != null;
+    }
+
+    /**
+     * 在调度线程中运行被拒绝的请求，只用于解析请求并返回503，保证连接总会被关闭
+     */
+    private void reject(Runnable task) {
+        rejectedTasks.incrementAndGet();
+        REJECTED.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            REJECTED.remove();
+        }
+    }
+
+    /**
+     * 队列已满或已关闭时拒绝请求
+     */
+    private class RejectHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            reject(task);
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PapiWebAPI-HTTP-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.xiaoyu.papiwebapi.leaderboard;
+
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 某个端点的排行榜索引
+ * 按数值和按名称分别维护有序树，玩家的值变化时增量更新，排序键在更新时只解析一次，
+ * 取前N名只需 O(log n + N)，不必重新计算和排序所有玩家
+ */
+public class LeaderboardIndex {
+
+    private final String endpoint;
+    private final String placeholder;
+    private final SortKey.NonNumericPolicy policy;
+
+    private final Map<UUID, SortEntry> entries = new HashMap<>();
+    private final TreeSet<SortEntry> numeric = new TreeSet<>(SortEntry.BY_NUMBER);
+    private final TreeSet<SortEntry> text = new TreeSet<>(SortEntry.BY_TEXT);
+    private final TreeSet<SortEntry> byName = new TreeSet<>(SortEntry.BY_NAME);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 所有索引共用的版本计数，重建索引后版本号不会与旧索引重复
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    // 内容每次变化时更新
+    private volatile long version = VERSIONS.incrementAndGet();
+    // 内容最后一次变化的时间（毫秒）
+    private volatile long lastModified = System.currentTimeMillis();
+    // 是否已经包含所有离线玩家
+    private volatile boolean ready;
+
+    public LeaderboardIndex(String endpoint, String placeholder, SortKey.NonNumericPolicy policy) {
+        this.endpoint = endpoint;
+        this.placeholder = placeholder;
+        this.policy = policy;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * 创建索引时使用的非数值处理方式
+     */
+    public SortKey.NonNumericPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 批量更新玩家的值，值未变化的玩家会被跳过
+     *
+     * @param values 玩家的值
+     */
+    public void updateAll(List<PlayerValue> values) {
+        lock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (PlayerValue value : values) {
+                changed |= updateLocked(value.getUuid(), value.getName(), value.getValue());
+            }
+            if (changed) {
+                version = VERSIONS.incrementAndGet();
+                lastModified = System.currentTimeMillis();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 更新单个玩家的值
+     */
+    public void update(UUID uuid, String name, String value) {
+        lock.writeLock().lock();
+        try {
+            if (updateLocked(uuid, name, value)) {
+                version = VERSIONS.incrementAndGet();
+                lastModified = System.currentTimeMillis();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean updateLocked(UUID uuid, String name, String value) {
+        if (uuid == null || name == null || value == null) {
+            return false;
+        }
+
+        SortEntry old = entries.get(uuid);
+        if (old != null) {
+            if (old.name.equals(name) && old.value.equals(value)) {
+                return false;
+            }
+            (old.numeric ? numeric : text).remove(old);
+            byName.remove(old);
+        }
+
+        SortEntry entry = SortEntry.of(uuid, name, value, policy);
+        entries.put(uuid, entry);
+        (entry.numeric ? numeric : text).add(entry);
+        byName.add(entry);
+        return true;
+    }
+
+    /**
+     * 获取排序后的前N名
+     *
+     * @param sortOrder 排序方式：htl, lth, atz, zta
+     * @param limit 数量限制，小于等于0表示全部
+     * @return 排序后的玩家值
+     */
+    public List<PlayerValue> top(String sortOrder, int limit) {
+        lock.readLock().lock();
+        try {
+            int max = limit > 0 ? Math.min(limit, entries.size()) : entries.size();
+            List<PlayerValue> result = new ArrayList<>(max);
+
+            boolean descending = "htl".equalsIgnoreCase(sortOrder);
+            if (descending || "lth".equalsIgnoreCase(sortOrder)) {
+                // 按数值排序，非数值按策略排在数值之前、之后或不显示
+                Iterator<SortEntry> numbers = descending ? numeric.descendingIterator() : numeric.iterator();
+                Iterator<SortEntry> texts = descending ? text.descendingIterator() : text.iterator();
+                if (policy == SortKey.NonNumericPolicy.FIRST) {
+                    collect(texts, result, max);
+                }
+                collect(numbers, result, max);
+                if (policy == SortKey.NonNumericPolicy.LAST) {
+                    collect(texts, result, max);
+                }
+            } else if ("zta".equalsIgnoreCase(sortOrder)) {
+                collect(byName.descendingIterator(), result, max);
+            } else {
+                collect(byName.iterator(), result, max);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void collect(Iterator<SortEntry> iterator, List<PlayerValue> result, int max) {
+        while (result.size() < max && iterator.hasNext()) {
+            result.add(iterator.next().toPlayerValue());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.xiaoyu.papiwebapi.leaderboard;
+
+import com.xiaoyu.papiwebapi.PapiWebAPI;
+import com.xiaoyu.papiwebapi.snapshot.EndpointSnapshot;
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+import com.xiaoyu.papiwebapi.snapshot.SnapshotListener;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 排行榜索引服务
+ * 在线玩家的值来自快照更新，离线玩家的值在主线程中分批回填，
+ * 回填完成前排序请求仍使用完整计算
+ */
+public class LeaderboardService implements SnapshotListener {
+
+    private final PapiWebAPI plugin;
+    private final Map<String, LeaderboardIndex> indexes = new ConcurrentHashMap<>();
+
+    // 以下字段只在主线程中访问
+    private BukkitTask task;
+    private BackfillJob job;
+    private long lastFullRefresh;
+
+    private volatile boolean enabled;
+    private volatile int backfillPerTick;
+    private volatile long fullRefreshMillis;
+
+    public LeaderboardService(PapiWebAPI plugin) {
+        this.plugin = plugin;
+        loadConfig();
+    }
+
+    private void loadConfig() {
+        enabled = plugin.getConfig().getBoolean("leaderboard.enabled", true);
+        backfillPerTick = Math.max(1, plugin.getConfig().getInt("leaderboard.backfill_per_tick", 500));
+        fullRefreshMillis = TimeUnit.MINUTES.toMillis(Math.max(0, plugin.getConfig().getInt("leaderboard.full_refresh_minutes", 60)));
+
+        // 快照关闭时所有端点都实时计算，不会建立索引
+        if (enabled && !plugin.getConfig().getBoolean("snapshot.enabled", true)) {
+            plugin.getLogger().info("Leaderboard indexes are not used because snapshots are disabled");
+        }
+    }
+
+    /**
+     * 开始维护排行榜索引
+     */
+    public void start() {
+        if (task == null) {
+            lastFullRefresh = System.currentTimeMillis();
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * 停止维护排行榜索引
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        job = null;
+    }
+
+    /**
+     * 重新加载配置
+     */
+    public void reload() {
+        loadConfig();
+        if (!enabled) {
+            indexes.clear();
+        }
+    }
+
+    /**
+     * 获取可用于查询的排行榜索引
+     *
+     * @param endpoint 端点名称
+     * @param placeholder 端点当前的占位符
+     * @return 索引，未启用、未回填完成或占位符、排序策略已改变时返回null
+     */
+    public LeaderboardIndex getReadyIndex(String endpoint, String placeholder) {
+        LeaderboardIndex index = indexes.get(endpoint);
+        if (index == null || !index.isReady() || !index.getPlaceholder().equals(placeholder)
+                || index.getPolicy() != SortKey.getNonNumericPolicy()) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * 端点是否会建立排行榜索引，启用且不是实时端点时建立
+     */
+    public boolean isIndexed(String endpoint) {
+        return enabled && !plugin.getSnapshotService().isLive(endpoint);
+    }
+
+    @Override
+    public void onEndpointUpdated(EndpointSnapshot snapshot) {
+        LeaderboardIndex index = indexes.get(snapshot.getEndpoint());
+        if (index != null && index.getPlaceholder().equals(snapshot.getPlaceholder())) {
+            index.updateAll(snapshot.getValues());
+        }
+    }
+
+    /**
+     * 每tick执行一次：同步端点列表，并回填一批离线玩家
+     */
+    private void tick() {
+        if (!enabled) {
+            return;
+        }
+
+        syncEndpoints();
+
+        if (job == null) {
+            List<LeaderboardIndex> targets = new ArrayList<>();
+            boolean fullRefresh = fullRefreshMillis > 0
+                    && System.currentTimeMillis() - lastFullRefresh >= fullRefreshMillis;
+            for (LeaderboardIndex index : indexes.values()) {
+                if (!index.isReady() || fullRefresh) {
+                    targets.add(index);
+                }
+            }
+            if (targets.isEmpty()) {
+                return;
+            }
+            if (fullRefresh) {
+                lastFullRefresh = System.currentTimeMillis();
+            }
+            job = new BackfillJob(Bukkit.getOfflinePlayers(), targets);
+        }
+
+        if (job.run(backfillPerTick)) {
+            for (LeaderboardIndex index : job.targets) {
+                if (!index.isReady() && indexes.get(index.getEndpoint()) == index) {
+                    index.setReady(true);
+                    plugin.getLogger().info("Leaderboard index for /" + index.getEndpoint()
+                            + " is ready (" + index.size() + " players)");
+                }
+            }
+            job = null;
+        }
+    }
+
+    /**
+     * 为新端点创建索引，移除已删除、改为实时计算或占位符已改变的端点的索引
+     */
+    private void syncEndpoints() {
+        Map<String, String> apis = plugin.getApiManager().getRegisteredApis();
+
+        SortKey.NonNumericPolicy policy = SortKey.getNonNumericPolicy();
+
+        indexes.entrySet().removeIf(entry -> {
+            String placeholder = apis.get(entry.getKey());
+            return placeholder == null
+                    || !placeholder.equals(entry.getValue().getPlaceholder())
+                    || entry.getValue().getPolicy() != policy
+                    || plugin.getSnapshotService().isLive(entry.getKey());
+        });
+
+        for (Map.Entry<String, String> api : apis.entrySet()) {
+            if (!indexes.containsKey(api.getKey()) && !plugin.getSnapshotService().isLive(api.getKey())) {
+                indexes.put(api.getKey(), new LeaderboardIndex(api.getKey(), api.getValue(), policy));
+            }
+        }
+    }
+
+    /**
+     * 分批计算离线玩家的值
+     */
+    private static class BackfillJob {
+        final OfflinePlayer[] players;
+        final List<LeaderboardIndex> targets;
+        int position;
+
+        BackfillJob(OfflinePlayer[] players, List<LeaderboardIndex> targets) {
+            this.players = players;
+            this.targets = targets;
+        }
+
+        /**
+         * 处理下一批玩家
+         * @return 是否已处理完所有玩家
+         */
+        boolean run(int batchSize) {
+            int end = Math.min(players.length, position + batchSize);
+            for (LeaderboardIndex index : targets) {
+                List<PlayerValue> values = new ArrayList<>(end - position);
+                for (int i = position; i < end; i++) {
+                    OfflinePlayer player = players[i];
+                    if (player.getName() == null) {
+                        continue;
+                    }
+                    values.add(new PlayerValue(player.getUniqueId(), player.getName(),
+                            PlaceholderUtils.setPlaceholders(player, index.getPlaceholder())));
+                }
+                index.updateAll(values);
+            }
+            position = end;
+            return position >= players.length;
+        }
+    }
+}
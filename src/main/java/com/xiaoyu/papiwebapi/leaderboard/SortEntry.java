@@ -0,0 +1,102 @@
+package com.xiaoyu.papiwebapi.leaderboard;
+
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * 参与排序的玩家值，排序键在创建时解析一次
+ */
+public final class SortEntry {
+
+    // 数值从小到大，相同时按名称、UUID排序，保证全序
+    static final Comparator<SortEntry> BY_NUMBER = Comparator
+            .comparingDouble((SortEntry entry) -> entry.number)
+            .thenComparing(entry -> entry.name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(entry -> entry.uuid);
+
+    // 非数值按字符串排序
+    static final Comparator<SortEntry> BY_TEXT = Comparator
+            .comparing((SortEntry entry) -> entry.value)
+            .thenComparing(entry -> entry.name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(entry -> entry.uuid);
+
+    static final Comparator<SortEntry> BY_NAME = Comparator
+            .comparing((SortEntry entry) -> entry.name, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(entry -> entry.uuid);
+
+    final UUID uuid;
+    final String name;
+    final String value;
+    final boolean numeric;
+    final double number;
+    private final PlayerValue playerValue;
+
+    private SortEntry(UUID uuid, String name, String value, boolean numeric, double number) {
+        this.uuid = uuid;
+        this.name = name;
+        this.value = value;
+        this.numeric = numeric;
+        this.number = number;
+        this.playerValue = new PlayerValue(uuid, name, value);
+    }
+
+    /**
+     * 创建排序条目
+     *
+     * @param policy 非数值的处理方式，ZERO时非数值按0参与数值排序
+     */
+    public static SortEntry of(UUID uuid, String name, String value, SortKey.NonNumericPolicy policy) {
+        double number = SortKey.parseNumber(value);
+        if (!Double.isNaN(number)) {
+            return new SortEntry(uuid, name, value, true, number);
+        }
+        if (policy == SortKey.NonNumericPolicy.ZERO) {
+            return new SortEntry(uuid, name, value, true, 0);
+        }
+        return new SortEntry(uuid, name, value, false, 0);
+    }
+
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PlayerValue toPlayerValue() {
+        return playerValue;
+    }
+
+    /**
+     * 获取某种排序方式下的全序比较器
+     * 与 {@link LeaderboardIndex#top} 的顺序一致：数值与非数值按策略分组，组内按值排序，
+     * 值相同时按名称、UUID排序
+     *
+     * @param sortOrder 排序方式：htl, lth, atz, zta
+     * @param policy 非数值的处理方式
+     * @return 比较器
+     */
+    public static Comparator<SortEntry> comparator(String sortOrder, SortKey.NonNumericPolicy policy) {
+        if ("atz".equalsIgnoreCase(sortOrder)) {
+            return BY_NAME;
+        }
+        if ("zta".equalsIgnoreCase(sortOrder)) {
+            return BY_NAME.reversed();
+        }
+
+        boolean descending = "htl".equalsIgnoreCase(sortOrder);
+        boolean textFirst = policy == SortKey.NonNumericPolicy.FIRST;
+        Comparator<SortEntry> numberOrder = descending ? BY_NUMBER.reversed() : BY_NUMBER;
+        Comparator<SortEntry> textOrder = descending ? BY_TEXT.reversed() : BY_TEXT;
+
+        return (a, b) -> {
+            if (a.numeric != b.numeric) {
+                return a.numeric == textFirst ? 1 : -1;
+            }
+            return a.numeric ? numberOrder.compare(a, b) : textOrder.compare(a, b);
+        };
+    }
+}
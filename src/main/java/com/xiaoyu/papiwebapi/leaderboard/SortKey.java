@@ -0,0 +1,136 @@
+package com.xiaoyu.papiwebapi.leaderboard;
+
+import java.util.Locale;
+
+/**
+ * 占位符值的数值解析
+ * 支持普通数字、千位分隔符（1,234）、单位后缀（1.2k、3M、5B、2T）、百分号和颜色代码
+ */
+public final class SortKey {
+
+    /**
+     * 无法解析为数字的值在 htl/lth 排序中的处理方式
+     */
+    public enum NonNumericPolicy {
+        // 排在所有数字之后
+        LAST,
+        // 排在所有数字之前
+        FIRST,
+        // 视为0
+        ZERO,
+        // 不出现在排序结果中
+        EXCLUDE;
+
+        public static NonNumericPolicy fromConfig(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return LAST;
+            }
+        }
+    }
+
+    private static volatile NonNumericPolicy nonNumericPolicy = NonNumericPolicy.LAST;
+
+    private SortKey() {
+    }
+
+    public static NonNumericPolicy getNonNumericPolicy() {
+        return nonNumericPolicy;
+    }
+
+    public static void setNonNumericPolicy(NonNumericPolicy policy) {
+        nonNumericPolicy = policy;
+    }
+
+    /**
+     * 将占位符值解析为数字
+     *
+     * @param raw 占位符值
+     * @return 解析出的数字，无法解析时返回NaN
+     */
+    public static double parseNumber(String raw) {
+        if (raw == null) {
+            return Double.NaN;
+        }
+
+        int length = raw.length();
+        char[] digits = new char[length];
+        int count = 0;
+        boolean seenDigit = false;
+        double multiplier = 1;
+
+        for (int i = 0; i < length; i++) {
+            char c = raw.charAt(i);
+
+            // 跳过颜色代码
+            if (c == '§') {
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c) || c == ',' || c == '_') {
+                continue;
+            }
+            if (c >= '0' && c <= '9') {
+                digits[count++] = c;
+                seenDigit = true;
+                continue;
+            }
+            if (c == '.' || ((c == '-' || c == '+') && (count == 0 || isExponent(digits[count - 1])))) {
+                digits[count++] = c;
+                continue;
+            }
+            if ((c == 'e' || c == 'E') && seenDigit && i + 1 < length && isExponentStart(raw.charAt(i + 1))) {
+                digits[count++] = 'e';
+                continue;
+            }
+            // 数字前的货币符号
+            if (!seenDigit && count == 0 && (c == '$' || c == '¥' || c == '€' || c == '£')) {
+                continue;
+            }
+            // 末尾的单位后缀
+            if (seenDigit && isTrailing(raw, i + 1)) {
+                switch (Character.toLowerCase(c)) {
+                    case 'k': multiplier = 1e3; continue;
+                    case 'm': multiplier = 1e6; continue;
+                    case 'b': multiplier = 1e9; continue;
+                    case 't': multiplier = 1e12; continue;
+                    case '%': continue;
+                    default: break;
+                }
+            }
+            return Double.NaN;
+        }
+
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        try {
+            double value = Double.parseDouble(new String(digits, 0, count)) * multiplier;
+            return Double.isInfinite(value) ? Double.NaN : value;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isExponent(char c) {
+        return c == 'e';
+    }
+
+    private static boolean isExponentStart(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+';
+    }
+
+    // 之后只剩空白或颜色代码
+    private static boolean isTrailing(String raw, int from) {
+        for (int i = from; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c == '§') {
+                i++;
+            } else if (!Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package com.xiaoyu.papiwebapi.listeners;
+
+import com.xiaoyu.papiwebapi.utils.PlayerNameIndex;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+/**
+ * 玩家加入时更新名称索引，处理新玩家和改名的玩家
+ */
+public class PlayerNameListener implements Listener {
+
+    private final PlayerNameIndex index;
+
+    public PlayerNameListener(PlayerNameIndex index) {
+        this.index = index;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        index.put(player.getUniqueId(), player.getName());
+    }
+}
@@ -0,0 +1,134 @@
+package com.xiaoyu.papiwebapi.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的延迟直方图
+ * 以微秒为单位，使用对数线性分桶（每个2的幂区间分8个子桶，相对误差约12.5%），记录只需要一次原子加法
+ */
+public class LatencyHistogram {
+
+    // 小于16微秒时每微秒一个桶
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 最大可记录约19小时，更大的值计入最后一个桶
+    private static final int MAX_EXPONENT = 35;
+    static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sumMicros = new LongAdder();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        sumMicros.add(micros);
+    }
+
+    /**
+     * 记录从开始时间到现在的耗时
+     *
+     * @param startNanos System.nanoTime() 的开始时间
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶的上界（微秒，不含）
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * 获取各个上界（秒）对应的累计次数，落在上界之间的桶计入下一个上界
+     *
+     * @param boundsSeconds 递增的上界（秒）
+     * @return 累计次数，最后一个元素为总次数
+     */
+    public long[] cumulativeCounts(double[] boundsSeconds) {
+        long[] result = new long[boundsSeconds.length + 1];
+        int bound = 0;
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            double upperSeconds = upperBoundOf(i) / 1_000_000.0;
+            while (bound < boundsSeconds.length && upperSeconds > boundsSeconds[bound]) {
+                result[bound++] = total;
+            }
+            total += count;
+        }
+        while (bound < boundsSeconds.length) {
+            result[bound++] = total;
+        }
+        result[boundsSeconds.length] = total;
+        return result;
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param quantile 0到1之间的分位
+     * @return 估算值（纳秒），没有记录时为0
+     */
+    public long quantile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(upperBoundOf(i));
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBoundOf(BUCKET_COUNT - 1));
+    }
+
+    /**
+     * 所有记录的耗时之和（秒）
+     */
+    public double getSumSeconds() {
+        return sumMicros.sum() / 1_000_000.0;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+}
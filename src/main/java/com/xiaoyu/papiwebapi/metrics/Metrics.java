@@ -0,0 +1,38 @@
+package com.xiaoyu.papiwebapi.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 插件运行时的统计数据
+ * 所有统计都是无锁的计数器或直方图，始终开启
+ */
+public final class Metrics {
+
+    // HTTP请求
+    public static final RequestMetrics REQUESTS = new RequestMetrics();
+
+    // 单个玩家的占位符计算耗时
+    public static final LatencyHistogram PLACEHOLDER_EVALUATION = new LatencyHistogram();
+
+    // IP地理位置：命中缓存、本地数据来源命中、合并到进行中的查询、发起新的查询、查询队列已满
+    public static final LongAdder GEO_CACHE_HITS = new LongAdder();
+    public static final LongAdder GEO_INLINE_HITS = new LongAdder();
+    public static final LongAdder GEO_PENDING_JOINS = new LongAdder();
+    public static final LongAdder GEO_MISSES = new LongAdder();
+    public static final LongAdder GEO_REJECTED = new LongAdder();
+    public static final LongAdder GEO_FAILURES = new LongAdder();
+    // 网络查询耗时
+    public static final LatencyHistogram GEO_LOOKUP = new LatencyHistogram();
+
+    // 访问日志：等待写入的记录数、已写入的记录数和每批提交的耗时
+    public static final AtomicInteger LOG_QUEUE_DEPTH = new AtomicInteger();
+    public static final LongAdder LOG_WRITTEN = new LongAdder();
+    public static final LatencyHistogram LOG_WRITE = new LatencyHistogram();
+    // 访问日志：队列已满或已关闭时丢弃的记录数、采样时未保留的记录数
+    public static final LongAdder LOG_DROPPED = new LongAdder();
+    public static final LongAdder LOG_SAMPLED = new LongAdder();
+
+    private Metrics() {
+    }
+}
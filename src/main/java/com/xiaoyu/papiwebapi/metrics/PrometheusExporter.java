@@ -0,0 +1,162 @@
+package com.xiaoyu.papiwebapi.metrics;
+
+import com.xiaoyu.papiwebapi.http.HttpServer;
+import com.xiaoyu.papiwebapi.http.WorkerExecutor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * 以Prometheus文本格式输出统计数据
+ */
+public class PrometheusExporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+    private static final String PREFIX = "papiwebapi_";
+
+    // 直方图输出的上界（秒）
+    private static final double[] BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final String[] BOUND_LABELS = {
+            "0.0001", "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+
+    private final Writer out;
+
+    public PrometheusExporter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * 输出所有统计数据
+     *
+     * @param server HTTP服务器，用于读取处理线程和限流的状态
+     */
+    public void writeAll(HttpServer server) throws IOException {
+        writeRequests();
+
+        header("placeholder_evaluation_seconds", "histogram", "Time to evaluate a placeholder for one player");
+        histogram("placeholder_evaluation_seconds", null, null, Metrics.PLACEHOLDER_EVALUATION);
+
+        header("geo_lookups_total", "counter", "IP geolocation lookups by result");
+        sample("geo_lookups_total", "result", "cache_hit", Metrics.GEO_CACHE_HITS.sum());
+        sample("geo_lookups_total", "result", "inline_hit", Metrics.GEO_INLINE_HITS.sum());
+        sample("geo_lookups_total", "result", "pending_join", Metrics.GEO_PENDING_JOINS.sum());
+        sample("geo_lookups_total", "result", "miss", Metrics.GEO_MISSES.sum());
+        sample("geo_lookups_total", "result", "rejected", Metrics.GEO_REJECTED.sum());
+        header("geo_lookup_failures_total", "counter", "Remote IP geolocation lookups that failed");
+        sample("geo_lookup_failures_total", null, null, Metrics.GEO_FAILURES.sum());
+        header("geo_lookup_duration_seconds", "histogram", "Remote IP geolocation lookup latency");
+        histogram("geo_lookup_duration_seconds", null, null, Metrics.GEO_LOOKUP);
+
+        header("log_queue_depth", "gauge", "Access log records waiting to be written");
+        sample("log_queue_depth", null, null, Metrics.LOG_QUEUE_DEPTH.get());
+        header("log_records_written_total", "counter", "Access log records written to the log file");
+        sample("log_records_written_total", null, null, Metrics.LOG_WRITTEN.sum());
+        header("log_write_duration_seconds", "histogram", "Time to commit one batch of access log records");
+        histogram("log_write_duration_seconds", null, null, Metrics.LOG_WRITE);
+        header("log_dropped_total", "counter", "Access log records not written because the queue was full or sampling");
+        sample("log_dropped_total", "reason", "full", Metrics.LOG_DROPPED.sum());
+        sample("log_dropped_total", "reason", "sampled", Metrics.LOG_SAMPLED.sum());
+
+        WorkerExecutor executor = server.getWorkerExecutor();
+        if (executor != null) {
+            header("executor_active_threads", "gauge", "HTTP workers currently handling a request");
+            sample("executor_active_threads", null, null, executor.getActiveCount());
+            header("executor_pool_threads", "gauge", "HTTP worker threads in the pool");
+            sample("executor_pool_threads", null, null, executor.getPoolSize());
+            header("executor_max_threads", "gauge", "Maximum HTTP worker threads");
+            sample("executor_max_threads", null, null, executor.getMaxPoolSize());
+            header("executor_queue_size", "gauge", "Requests waiting for a worker");
+            sample("executor_queue_size", null, null, executor.getQueueSize());
+            header("executor_queue_capacity", "gauge", "Capacity of the request queue");
+            sample("executor_queue_capacity", null, null, executor.getQueueCapacity());
+            header("executor_completed_total", "counter", "Requests completed by the workers");
+            sample("executor_completed_total", null, null, executor.getCompletedCount());
+            header("executor_rejected_total", "counter", "Requests answered with 503 because the queue was full");
+            sample("executor_rejected_total", null, null, executor.getRejectedCount());
+        }
+
+        header("rate_limited_total", "counter", "Requests rejected by the rate limiter");
+        sample("rate_limited_total", null, null, server.getRateLimitedCount());
+        header("response_cache_entries", "gauge", "Compressed response bodies in the cache");
+        sample("response_cache_entries", null, null, server.getResponseCacheSize());
+        out.flush();
+    }
+
+    private void writeRequests() throws IOException {
+        header("http_requests_total", "counter", "HTTP requests by endpoint and status");
+        for (Map.Entry<String, Map<String, Long>> endpoint : Metrics.REQUESTS.getCounts().entrySet()) {
+            for (Map.Entry<String, Long> status : endpoint.getValue().entrySet()) {
+                out.write(PREFIX);
+                out.write("http_requests_total{endpoint=\"");
+                escape(endpoint.getKey());
+                out.write("\",status=\"");
+                out.write(status.getKey());
+                out.write("\"} ");
+                out.write(String.valueOf(status.getValue()));
+                out.write('\n');
+            }
+        }
+
+        header("http_request_duration_seconds", "histogram", "HTTP request latency by route");
+        for (Map.Entry<String, LatencyHistogram> route : Metrics.REQUESTS.getLatencies().entrySet()) {
+            histogram("http_request_duration_seconds", "route", route.getKey(), route.getValue());
+        }
+    }
+
+    private void header(String name, String type, String help) throws IOException {
+        out.write("# HELP " + PREFIX + name + " " + help + "\n");
+        out.write("# TYPE " + PREFIX + name + " " + type + "\n");
+    }
+
+    private void sample(String name, String label, String value, long sample) throws IOException {
+        out.write(PREFIX);
+        out.write(name);
+        if (label != null) {
+            out.write('{');
+            out.write(label);
+            out.write("=\"");
+            escape(value);
+            out.write("\"}");
+        }
+        out.write(' ');
+        out.write(String.valueOf(sample));
+        out.write('\n');
+    }
+
+    private void histogram(String name, String label, String value, LatencyHistogram histogram) throws IOException {
+        long[] cumulative = histogram.cumulativeCounts(BOUNDS);
+        String labelPrefix = label != null ? label + "=\"" + value + "\"," : "";
+        for (int i = 0; i <= BOUNDS.length; i++) {
+            out.write(PREFIX);
+            out.write(name);
+            out.write("_bucket{");
+            out.write(labelPrefix);
+            out.write("le=\"");
+            out.write(i < BOUNDS.length ? BOUND_LABELS[i] : "+Inf");
+            out.write("\"} ");
+            out.write(String.valueOf(cumulative[i]));
+            out.write('\n');
+        }
+
+        String labels = label != null ? "{" + label + "=\"" + value + "\"}" : "";
+        out.write(PREFIX + name + "_sum" + labels + " " + histogram.getSumSeconds() + "\n");
+        out.write(PREFIX + name + "_count" + labels + " " + cumulative[BOUNDS.length] + "\n");
+    }
+
+    private void escape(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.write("\\\\"); break;
+                case '"': out.write("\\\""); break;
+                case '\n': out.write("\\n"); break;
+                default: out.write(c); break;
+            }
+        }
+    }
+}
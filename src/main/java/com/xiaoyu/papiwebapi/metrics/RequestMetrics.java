@@ -0,0 +1,87 @@
+package com.xiaoyu.papiwebapi.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP请求统计：按端点和状态码计数，按路由类型记录延迟
+ */
+public class RequestMetrics {
+
+    // 单独计数的状态码，其他状态码计入最后一项
+    private static final int[] STATUS_CODES = {200, 304, 400, 401, 403, 404, 429, 500};
+    private static final String OTHER_STATUS = "other";
+
+    private final ConcurrentHashMap<String, LongAdder[]> countsByEndpoint = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> latencyByRoute = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次请求
+     *
+     * @param route 路由类型
+     * @param endpoint 端点名称，应只包含已注册的端点或固定的名称，避免标签数量无限增长
+     * @param status 响应状态码
+     * @param nanos 处理耗时（纳秒）
+     */
+    public void record(String route, String endpoint, int status, long nanos) {
+        LongAdder[] counts = countsByEndpoint.get(endpoint);
+        if (counts == null) {
+            counts = countsByEndpoint.computeIfAbsent(endpoint, key -> newCounters());
+        }
+        counts[statusSlot(status)].increment();
+
+        LatencyHistogram histogram = latencyByRoute.get(route);
+        if (histogram == null) {
+            histogram = latencyByRoute.computeIfAbsent(route, key -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[STATUS_CODES.length + 1];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static int statusSlot(int status) {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            if (STATUS_CODES[i] == status) {
+                return i;
+            }
+        }
+        return STATUS_CODES.length;
+    }
+
+    /**
+     * 获取请求计数
+     * @return 端点 -> (状态码 -> 次数)，按名称排序，不包含次数为0的状态码
+     */
+    public Map<String, Map<String, Long>> getCounts() {
+        Map<String, Map<String, Long>> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder[]> entry : countsByEndpoint.entrySet()) {
+            Map<String, Long> byStatus = new TreeMap<>();
+            LongAdder[] counts = entry.getValue();
+            for (int i = 0; i < counts.length; i++) {
+                long count = counts[i].sum();
+                if (count > 0) {
+                    byStatus.put(i < STATUS_CODES.length ? String.valueOf(STATUS_CODES[i]) : OTHER_STATUS, count);
+                }
+            }
+            result.put(entry.getKey(), byStatus);
+        }
+        return result;
+    }
+
+    /**
+     * 获取各路由的延迟直方图
+     * @return 路由类型 -> 直方图，按名称排序
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return Collections.unmodifiableMap(new TreeMap<>(latencyByRoute));
+    }
+}
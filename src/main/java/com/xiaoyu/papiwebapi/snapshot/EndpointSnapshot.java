@@ -0,0 +1,71 @@
+package com.xiaoyu.papiwebapi.snapshot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 某个API端点在所有在线玩家上的占位符值，创建后不可修改
+ */
+public final class EndpointSnapshot {
+
+    private final String endpoint;
+    private final String placeholder;
+    private final long version;
+    private final long updatedAt;
+    private final List<PlayerValue> values;
+    private final Map<String, PlayerValue> valuesByName;
+
+    EndpointSnapshot(String endpoint, String placeholder, long version, long updatedAt, List<PlayerValue> values) {
+        this.endpoint = endpoint;
+        this.placeholder = placeholder;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.values = Collections.unmodifiableList(values);
+
+        Map<String, PlayerValue> byName = new HashMap<>(values.size() * 2);
+        for (PlayerValue value : values) {
+            byName.put(value.getName().toLowerCase(Locale.ROOT), value);
+        }
+        this.valuesByName = byName;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * 数据版本，只有在值发生变化时才会增加
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 值最后一次发生变化的时间（毫秒）
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * 所有在线玩家的值，按玩家在线列表的顺序
+     */
+    public List<PlayerValue> getValues() {
+        return values;
+    }
+
+    /**
+     * 按名称查找在线玩家的值（不区分大小写）
+     * @return 玩家的值，玩家不在快照中时返回null
+     */
+    public PlayerValue getValue(String playerName) {
+        return valuesByName.get(playerName.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,39 @@
+package com.xiaoyu.papiwebapi.snapshot;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 某一时刻所有API端点的占位符快照，创建后不可修改
+ */
+public final class PlaceholderSnapshot {
+
+    static final PlaceholderSnapshot EMPTY = new PlaceholderSnapshot(0, Collections.emptyMap());
+
+    private final long version;
+    private final Map<String, EndpointSnapshot> endpoints;
+
+    PlaceholderSnapshot(long version, Map<String, EndpointSnapshot> endpoints) {
+        this.version = version;
+        this.endpoints = Collections.unmodifiableMap(endpoints);
+    }
+
+    /**
+     * 快照版本，每次发布新快照时增加
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 获取某个端点的快照
+     * @return 端点快照，端点为实时端点或尚未采集时返回null
+     */
+    public EndpointSnapshot getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    public Map<String, EndpointSnapshot> getEndpoints() {
+        return endpoints;
+    }
+}
@@ -0,0 +1,50 @@
+package com.xiaoyu.papiwebapi.snapshot;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 某个玩家的占位符值
+ */
+public final class PlayerValue {
+
+    private final UUID uuid;
+    private final String name;
+    private final String value;
+
+    public PlayerValue(UUID uuid, String name, String value) {
+        this.uuid = uuid;
+        this.name = name;
+        this.value = value;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PlayerValue)) return false;
+        PlayerValue other = (PlayerValue) o;
+        return Objects.equals(uuid, other.uuid) && Objects.equals(name, other.name) && Objects.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uuid, name, value);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + value;
+    }
+}
@@ -0,0 +1,14 @@
+package com.xiaoyu.papiwebapi.snapshot;
+
+/**
+ * 快照更新监听器，在主线程中调用
+ */
+public interface SnapshotListener {
+
+    /**
+     * 某个端点的值发生变化并发布了新的快照
+     *
+     * @param snapshot 新的端点快照
+     */
+    void onEndpointUpdated(EndpointSnapshot snapshot);
+}
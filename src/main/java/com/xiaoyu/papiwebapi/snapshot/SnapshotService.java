@@ -0,0 +1,270 @@
+package com.xiaoyu.papiwebapi.snapshot;
+
+import com.xiaoyu.papiwebapi.PapiWebAPI;
+import com.xiaoyu.papiwebapi.utils.PlaceholderUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+/**
+ * 占位符快照服务
+ * 在主线程中按配置的间隔计算每个已注册端点在所有在线玩家上的值，
+ * 并以不可变快照的形式发布，HTTP线程只读取快照而不直接调用Bukkit
+ */
+public class SnapshotService {
+
+    private final PapiWebAPI plugin;
+
+    // 当前发布的快照
+    private volatile PlaceholderSnapshot snapshot = PlaceholderSnapshot.EMPTY;
+
+    // 以下字段只在主线程中访问
+    private final Map<String, Long> lastRefreshTick = new HashMap<>();
+    private final List<SnapshotListener> listeners = new ArrayList<>();
+    private long currentTick;
+    private BukkitTask task;
+
+    // 配置，重载时整体替换
+    private volatile Settings settings;
+
+    public SnapshotService(PapiWebAPI plugin) {
+        this.plugin = plugin;
+        this.settings = loadSettings();
+    }
+
+    /**
+     * 开始定时采集快照
+     */
+    public void start() {
+        if (task != null) {
+            return;
+        }
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * 停止采集快照
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * 添加快照更新监听器，应在启动时于主线程中调用
+     */
+    public void addListener(SnapshotListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 重新加载配置，下一次采集时所有端点都会立即刷新
+     */
+    public void reload() {
+        settings = loadSettings();
+        Bukkit.getScheduler().runTask(plugin, lastRefreshTick::clear);
+    }
+
+    private Settings loadSettings() {
+        ConfigurationSection config = plugin.getConfig().getConfigurationSection("snapshot");
+        Settings loaded = new Settings();
+        if (config == null) {
+            return loaded;
+        }
+
+        loaded.enabled = config.getBoolean("enabled", true);
+        loaded.defaultInterval = Math.max(1, config.getInt("interval_ticks", 20));
+        loaded.syncTimeoutMillis = Math.max(100, config.getLong("sync_timeout_ms", 5000));
+
+        ConfigurationSection endpoints = config.getConfigurationSection("endpoints");
+        if (endpoints != null) {
+            for (String endpoint : endpoints.getKeys(false)) {
+                if (endpoints.getBoolean(endpoint + ".live", false)) {
+                    loaded.liveEndpoints.add(endpoint);
+                }
+                int interval = endpoints.getInt(endpoint + ".interval_ticks", 0);
+                if (interval > 0) {
+                    loaded.intervals.put(endpoint, interval);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 获取当前快照
+     */
+    public PlaceholderSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 获取某个端点的快照
+     * @return 端点快照，快照被禁用、端点为实时端点或尚未采集时返回null
+     */
+    public EndpointSnapshot getEndpointSnapshot(String endpoint) {
+        if (isLive(endpoint)) {
+            return null;
+        }
+        return snapshot.getEndpoint(endpoint);
+    }
+
+    /**
+     * 判断端点是否需要实时计算
+     */
+    public boolean isLive(String endpoint) {
+        Settings current = settings;
+        return !current.enabled || current.liveEndpoints.contains(endpoint);
+    }
+
+    /**
+     * 在主线程中执行任务并等待结果
+     * 已在主线程中时直接执行
+     *
+     * @param task 任务
+     * @return 任务结果
+     * @throws Exception 任务失败或等待超时
+     */
+    public <T> T callSync(Callable<T> task) throws Exception {
+        if (Bukkit.isPrimaryThread()) {
+            return task.call();
+        }
+
+        try {
+            return Bukkit.getScheduler().callSyncMethod(plugin, task)
+                    .get(settings.syncTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Timed out waiting for the main thread");
+        }
+    }
+
+    /**
+     * 在主线程中计算所有在线玩家的占位符值
+     */
+    public List<PlayerValue> evaluateOnlinePlayers(String placeholder) throws Exception {
+        return callSync(() -> evaluate(placeholder, Bukkit.getOnlinePlayers()));
+    }
+
+    private static List<PlayerValue> evaluate(String placeholder, Collection<? extends Player> players) {
+        List<PlayerValue> values = new ArrayList<>(players.size());
+        for (Player player : players) {
+            values.add(new PlayerValue(player.getUniqueId(), player.getName(),
+                    PlaceholderUtils.setPlaceholders(player, placeholder)));
+        }
+        return values;
+    }
+
+    /**
+     * 每tick执行一次，刷新到期的端点并发布新快照
+     */
+    private void tick() {
+        currentTick++;
+        Settings current = settings;
+        if (!current.enabled) {
+            if (!snapshot.getEndpoints().isEmpty()) {
+                snapshot = new PlaceholderSnapshot(snapshot.getVersion() + 1, new HashMap<>());
+            }
+            return;
+        }
+
+        PlaceholderSnapshot previous = snapshot;
+        Map<String, String> apis = plugin.getApiManager().getRegisteredApis();
+        Map<String, EndpointSnapshot> endpoints = null;
+        long version = previous.getVersion() + 1;
+        Collection<? extends Player> players = null;
+
+        // 移除已删除或改为实时计算的端点
+        for (String endpoint : previous.getEndpoints().keySet()) {
+            String placeholder = apis.get(endpoint);
+            if (placeholder == null || current.liveEndpoints.contains(endpoint)) {
+                if (endpoints == null) {
+                    endpoints = new HashMap<>(previous.getEndpoints());
+                }
+                endpoints.remove(endpoint);
+                lastRefreshTick.remove(endpoint);
+            }
+        }
+
+        for (Map.Entry<String, String> api : apis.entrySet()) {
+            String endpoint = api.getKey();
+            if (current.liveEndpoints.contains(endpoint)) {
+                continue;
+            }
+
+            // 检查是否到达刷新间隔
+            Long last = lastRefreshTick.get(endpoint);
+            int interval = current.intervals.getOrDefault(endpoint, current.defaultInterval);
+            EndpointSnapshot old = previous.getEndpoint(endpoint);
+            boolean placeholderChanged = old != null && !old.getPlaceholder().equals(api.getValue());
+            if (last != null && currentTick - last < interval && !placeholderChanged) {
+                continue;
+            }
+            lastRefreshTick.put(endpoint, currentTick);
+
+            if (players == null) {
+                players = Bukkit.getOnlinePlayers();
+            }
+            List<PlayerValue> values = evaluate(api.getValue(), players);
+
+            // 值未变化时保留旧快照，使版本号保持不变
+            if (old != null && !placeholderChanged && old.getValues().equals(values)) {
+                continue;
+            }
+
+            if (endpoints == null) {
+                endpoints = new HashMap<>(previous.getEndpoints());
+            }
+            endpoints.put(endpoint, new EndpointSnapshot(endpoint, api.getValue(), version,
+                    System.currentTimeMillis(), values));
+        }
+
+        // 有变化时发布新快照并通知监听器
+        if (endpoints != null) {
+            PlaceholderSnapshot published = new PlaceholderSnapshot(version, endpoints);
+            snapshot = published;
+
+            for (EndpointSnapshot endpointSnapshot : published.getEndpoints().values()) {
+                if (endpointSnapshot.getVersion() != version) {
+                    continue;
+                }
+                for (SnapshotListener listener : listeners) {
+                    try {
+                        listener.onEndpointUpdated(endpointSnapshot);
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.WARNING, "Error in snapshot listener", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 快照配置
+     */
+    private static class Settings {
+        boolean enabled = true;
+        int defaultInterval = 20;
+        long syncTimeoutMillis = 5000;
+        final Map<String, Integer> intervals = new HashMap<>();
+        final Set<String> liveEndpoints = new HashSet<>();
+    }
+}
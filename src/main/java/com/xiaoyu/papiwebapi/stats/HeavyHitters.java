@@ -0,0 +1,153 @@
+package com.xiaoyu.papiwebapi.stats;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 出现次数最多的若干个键（如客户端IP）
+ * 次数由 Count-Min Sketch 估计（只会偏大），另外保留固定数量的候选键，
+ * 内存占用与不同键的数量无关。计数无锁，只有候选键被替换时才加锁
+ */
+final class HeavyHitters {
+
+    private static final int DEPTH = 4;
+    // 每行使用的哈希种子
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int width;
+    private final int mask;
+    private final AtomicLongArray counts;
+    private final int capacity;
+    private final Map<String, Boolean> candidates = new ConcurrentHashMap<>();
+    // 候选键中最小的估计次数，超过它的键才会替换候选键
+    private volatile long threshold;
+
+    /**
+     * @param width 每行的计数器数量，向上取整为2的幂
+     * @param capacity 保留的候选键数量
+     */
+    HeavyHitters(int width, int capacity) {
+        this.width = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.mask = this.width - 1;
+        this.counts = new AtomicLongArray(DEPTH * this.width);
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * 记录一次出现
+     */
+    void add(String key) {
+        long estimate = increment(key, 1);
+        offer(key, estimate);
+    }
+
+    private long increment(String key, long delta) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            long value = counts.addAndGet(row * width + slot(hash, row), delta);
+            estimate = Math.min(estimate, value);
+        }
+        return estimate;
+    }
+
+    private void offer(String key, long estimate) {
+        if (candidates.containsKey(key)) {
+            return;
+        }
+        if (candidates.size() < capacity) {
+            candidates.put(key, Boolean.TRUE);
+            return;
+        }
+        if (estimate > threshold) {
+            replaceMinimum(key, estimate);
+        }
+    }
+
+    /**
+     * 用新的键替换估计次数最小的候选键
+     */
+    private synchronized void replaceMinimum(String key, long estimate) {
+        if (candidates.containsKey(key)) {
+            return;
+        }
+        String minimum = null;
+        long minimumCount = Long.MAX_VALUE;
+        long second = Long.MAX_VALUE;
+        for (String candidate : candidates.keySet()) {
+            long count = estimate(candidate);
+            if (count < minimumCount) {
+                second = minimumCount;
+                minimumCount = count;
+                minimum = candidate;
+            } else if (count < second) {
+                second = count;
+            }
+        }
+        if (minimum != null && estimate > minimumCount) {
+            candidates.remove(minimum);
+            candidates.put(key, Boolean.TRUE);
+            minimumCount = Math.min(second, estimate);
+        }
+        threshold = minimumCount;
+    }
+
+    /**
+     * 键的估计次数
+     */
+    long estimate(String key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counts.get(row * width + slot(hash, row)));
+        }
+        return estimate;
+    }
+
+    private int slot(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * 合并另一个相同大小的统计，用于把每分钟的统计合并为一小时
+     */
+    void merge(HeavyHitters other) {
+        if (other.width != width) {
+            throw new IllegalArgumentException("Sketch width mismatch");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long value = other.counts.get(i);
+            if (value != 0) {
+                counts.addAndGet(i, value);
+            }
+        }
+        for (String key : other.candidates.keySet()) {
+            offer(key, estimate(key));
+        }
+    }
+
+    /**
+     * 估计次数最多的键
+     *
+     * @param limit 最多返回的键数
+     * @return 键 -> 估计次数，按次数从多到少排列
+     */
+    Map<String, Long> top(int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (String key : candidates.keySet()) {
+            entries.add(Map.entry(key, estimate(key)));
+        }
+        entries.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            result.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package com.xiaoyu.papiwebapi.stats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一分钟内的流量计数，所有计数都是无锁的
+ */
+final class MinuteBucket {
+
+    // 每个维度最多单独计数的取值数，其他取值计入 other，避免异常请求占用大量内存
+    private static final int MAX_KEYS = 256;
+    private static final String OTHER = "other";
+
+    private final long minute;
+    private final LongAdder total = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> endpoints = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> regions = new ConcurrentHashMap<>();
+    private final HeavyHitters ips;
+
+    MinuteBucket(long minute, int sketchWidth, int candidates) {
+        this.minute = minute;
+        this.ips = new HeavyHitters(sketchWidth, candidates);
+    }
+
+    /**
+     * 分钟序号（毫秒时间戳 / 60000）
+     */
+    long getMinute() {
+        return minute;
+    }
+
+    HeavyHitters getIps() {
+        return ips;
+    }
+
+    void record(String endpoint, int status, String region, String ip) {
+        total.increment();
+        increment(endpoints, endpoint);
+        increment(statuses, String.valueOf(status));
+        increment(regions, region);
+        ips.add(ip);
+    }
+
+    private static void increment(ConcurrentHashMap<String, LongAdder> counts, String key) {
+        LongAdder counter = counts.get(key);
+        if (counter == null) {
+            if (counts.size() >= MAX_KEYS) {
+                key = OTHER;
+            }
+            counter = counts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * 生成这一分钟的汇总
+     *
+     * @param topIps 保留的客户端IP数量
+     */
+    TrafficRollup toRollup(int topIps) {
+        return new TrafficRollup(TrafficRollup.Granularity.MINUTE, minute * TrafficStats.MINUTE_MILLIS, total.sum(),
+                sum(endpoints), sum(statuses), sum(regions), ips.top(topIps));
+    }
+
+    /**
+     * 只包含端点、状态码和地区的汇总，客户端IP由合并后的统计单独生成
+     */
+    TrafficRollup toRollupWithoutIps() {
+        return new TrafficRollup(TrafficRollup.Granularity.MINUTE, minute * TrafficStats.MINUTE_MILLIS, total.sum(),
+                sum(endpoints), sum(statuses), sum(regions), Map.of());
+    }
+
+    private static Map<String, Long> sum(ConcurrentHashMap<String, LongAdder> counts) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+}
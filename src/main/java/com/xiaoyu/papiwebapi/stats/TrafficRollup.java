@@ -0,0 +1,185 @@
+package com.xiaoyu.papiwebapi.stats;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一段时间内的流量汇总：请求总数，按端点、状态码和地区的请求数，以及请求最多的客户端IP
+ */
+public final class TrafficRollup {
+
+    /**
+     * 汇总的时间粒度
+     */
+    public enum Granularity {
+        MINUTE, HOUR, DAY;
+
+        /**
+         * 从配置或请求参数中解析，无法识别时返回null
+         */
+        public static Granularity fromName(String value) {
+            if (value == null) {
+                return null;
+            }
+            switch (value.toLowerCase()) {
+                case "minute": case "m": return MINUTE;
+                case "hour": case "h": return HOUR;
+                case "day": case "d": return DAY;
+                default: return null;
+            }
+        }
+    }
+
+    private final Granularity granularity;
+    private final long start;
+    private final long total;
+    private final Map<String, Long> endpoints;
+    private final Map<String, Long> statuses;
+    private final Map<String, Long> regions;
+    private final Map<String, Long> topIps;
+
+    TrafficRollup(Granularity granularity, long start, long total, Map<String, Long> endpoints,
+                  Map<String, Long> statuses, Map<String, Long> regions, Map<String, Long> topIps) {
+        this.granularity = granularity;
+        this.start = start;
+        this.total = total;
+        this.endpoints = Collections.unmodifiableMap(endpoints);
+        this.statuses = Collections.unmodifiableMap(statuses);
+        this.regions = Collections.unmodifiableMap(regions);
+        this.topIps = Collections.unmodifiableMap(topIps);
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * 开始时间（毫秒时间戳）
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * 端点 -> 请求数，按名称排序
+     */
+    public Map<String, Long> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 状态码 -> 请求数，按状态码排序
+     */
+    public Map<String, Long> getStatuses() {
+        return statuses;
+    }
+
+    /**
+     * 地区 -> 请求数，按名称排序
+     */
+    public Map<String, Long> getRegions() {
+        return regions;
+    }
+
+    /**
+     * 请求最多的客户端IP -> 估计的请求数，按次数从多到少排列
+     * 按天汇总时为各小时结果之和，只计入该IP进入前几名的小时，是实际次数的下限
+     */
+    public Map<String, Long> getTopIps() {
+        return topIps;
+    }
+
+    /**
+     * 合并多段汇总
+     *
+     * @param granularity 合并后的粒度
+     * @param start 合并后的开始时间
+     * @param parts 要合并的汇总
+     * @param topIps 保留的客户端IP数量
+     */
+    static TrafficRollup merge(Granularity granularity, long start, List<TrafficRollup> parts, int topIps) {
+        long total = 0;
+        Map<String, Long> endpoints = new TreeMap<>();
+        Map<String, Long> statuses = new TreeMap<>();
+        Map<String, Long> regions = new TreeMap<>();
+        Map<String, Long> ips = new TreeMap<>();
+        for (TrafficRollup part : parts) {
+            total += part.total;
+            addAll(endpoints, part.endpoints);
+            addAll(statuses, part.statuses);
+            addAll(regions, part.regions);
+            addAll(ips, part.topIps);
+        }
+        return new TrafficRollup(granularity, start, total, endpoints, statuses, regions, top(ips, topIps));
+    }
+
+    private static void addAll(Map<String, Long> target, Map<String, Long> source) {
+        for (Map.Entry<String, Long> entry : source.entrySet()) {
+            target.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+    }
+
+    /**
+     * 次数最多的若干项，按次数从多到少排列
+     */
+    static Map<String, Long> top(Map<String, Long> counts, int limit) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            result.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 写入二进制格式
+     */
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(granularity.ordinal());
+        out.writeLong(start);
+        out.writeLong(total);
+        for (Map<String, Long> counts : List.of(endpoints, statuses, regions, topIps)) {
+            out.writeShort(counts.size());
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 读取 {@link #write} 写入的汇总
+     */
+    static TrafficRollup read(DataInputStream in) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= Granularity.values().length) {
+            throw new IOException("Corrupt traffic rollup");
+        }
+        Granularity granularity = Granularity.values()[ordinal];
+        long start = in.readLong();
+        long total = in.readLong();
+        List<Map<String, Long>> maps = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            // 客户端IP保持写入时的顺序
+            Map<String, Long> counts = i == 3 ? new LinkedHashMap<>() : new TreeMap<>();
+            int size = in.readUnsignedShort();
+            for (int j = 0; j < size; j++) {
+                counts.put(in.readUTF(), in.readLong());
+            }
+            maps.add(counts);
+        }
+        return new TrafficRollup(granularity, start, total, maps.get(0), maps.get(1), maps.get(2), maps.get(3));
+    }
+}
@@ -0,0 +1,461 @@
+package com.xiaoyu.papiwebapi.stats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 流量汇总
+ * 请求线程把每次请求计入当前分钟的计数（无锁），最近若干分钟的计数保存在内存中；
+ * 每小时结束后合并为小时汇总，每天结束后合并为天汇总，依次追加到 stats/yyyy-MM-dd.bin，
+ * 查询任意粒度都不需要读取访问日志
+ */
+public class TrafficStats {
+
+    static final long MINUTE_MILLIS = 60_000L;
+    static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private static final String FILE_SUFFIX = ".bin";
+    private static final int MAGIC = 0x50575354;
+    private static final int VERSION = 1;
+    // 魔数和版本
+    private static final int HEADER_SIZE = 8;
+    // 小时结束后等待迟到的记录（如等待地理位置查询）的时间
+    private static final long GRACE_MILLIS = 2 * MINUTE_MILLIS;
+    // 永久保留时最多查询的天数
+    private static final long MAX_QUERY_DAYS = 3660;
+    // 每分钟客户端IP统计的大小
+    private static final int SKETCH_WIDTH = 512;
+
+    private final File directory;
+    private final Logger logger;
+    private final int topIps;
+    private final int candidates;
+    private final int retentionDays;
+    private final AtomicReferenceArray<MinuteBucket> minutes;
+
+    // 以下字段只在持有锁时访问
+    // 之前的分钟都已写入文件
+    private long compactedUntil;
+    // 已确认写入天汇总的最后一天
+    private LocalDate dailyCheckedThrough;
+
+    /**
+     * @param directory 汇总文件目录
+     * @param minuteHistory 在内存中保存的分钟数，至少保存一小时加等待时间
+     * @param topIps 每段汇总保留的客户端IP数量
+     * @param retentionDays 汇总文件保留天数（0表示永久保留）
+     */
+    public TrafficStats(File directory, int minuteHistory, int topIps, int retentionDays, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.topIps = Math.max(1, topIps);
+        this.candidates = this.topIps * 4;
+        this.retentionDays = Math.max(0, retentionDays);
+        int history = (int) Math.max(minuteHistory, (HOUR_MILLIS + GRACE_MILLIS) / MINUTE_MILLIS + 1);
+        this.minutes = new AtomicReferenceArray<>(history);
+        this.compactedUntil = floorHour(System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次请求，可在任意线程中调用
+     *
+     * @param time 请求时间（毫秒时间戳）
+     * @param endpoint 端点名称，应只包含已注册的端点或固定的名称
+     * @param status 响应状态码
+     * @param region 客户端地区
+     * @param ip 客户端IP
+     */
+    public void record(long time, String endpoint, int status, String region, String ip) {
+        long minute = time / MINUTE_MILLIS;
+        int slot = (int) (minute % minutes.length());
+        MinuteBucket bucket = minutes.get(slot);
+        while (bucket == null || bucket.getMinute() != minute) {
+            // 槽位已被更新的分钟使用，记录太晚，丢弃
+            if (bucket != null && bucket.getMinute() > minute) {
+                return;
+            }
+            MinuteBucket created = new MinuteBucket(minute, SKETCH_WIDTH, candidates);
+            if (minutes.compareAndSet(slot, bucket, created)) {
+                bucket = created;
+            } else {
+                bucket = minutes.get(slot);
+            }
+        }
+        bucket.record(endpoint != null ? endpoint : "", status, region != null ? region : "", ip != null ? ip : "");
+    }
+
+    /**
+     * 把已结束的小时写入文件，并为已结束的天追加天汇总
+     * 定时在后台线程中调用
+     *
+     * @param now 当前时间
+     * @param flush 是否同时写入当前小时已有的部分（停用插件时）
+     */
+    public synchronized void compact(long now, boolean flush) {
+        // 内存中已没有更早的分钟
+        long oldest = floorHour(now - (long) minutes.length() * MINUTE_MILLIS);
+        if (compactedUntil < oldest) {
+            compactedUntil = oldest;
+        }
+        while (floorHour(compactedUntil) + HOUR_MILLIS + GRACE_MILLIS <= now) {
+            long end = floorHour(compactedUntil) + HOUR_MILLIS;
+            writeHour(compactedUntil, end);
+            compactedUntil = end;
+        }
+        // 重新启动后同一小时的剩余部分会写入另一条记录，读取时合并
+        long flushUntil = (now / MINUTE_MILLIS + 1) * MINUTE_MILLIS;
+        while (flush && compactedUntil < flushUntil) {
+            long end = Math.min(flushUntil, floorHour(compactedUntil) + HOUR_MILLIS);
+            writeHour(compactedUntil, end);
+            compactedUntil = end;
+        }
+
+        // 之前的小时都已写入文件的日期可以合并为天汇总
+        LocalDate firstIncomplete = toDate(compactedUntil);
+        if (dailyCheckedThrough == null || dailyCheckedThrough.isBefore(firstIncomplete.minusDays(1))) {
+            writeDays(firstIncomplete);
+            dailyCheckedThrough = firstIncomplete.minusDays(1);
+        }
+    }
+
+    /**
+     * 合并 [from, to) 内的分钟并写入文件，to 不超过 from 所在小时的结束
+     */
+    private void writeHour(long from, long to) {
+        TrafficRollup hour = mergeMinutes(from, to);
+        if (hour.getTotal() == 0) {
+            return;
+        }
+        try {
+            append(toDate(hour.getStart()), hour);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to save traffic stats", e);
+        }
+    }
+
+    /**
+     * 为已结束但还没有天汇总的日期追加天汇总，并删除过期的文件
+     */
+    private void writeDays(LocalDate firstIncomplete) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        LocalDate cutoff = retentionDays > 0 ? firstIncomplete.minusDays(retentionDays) : null;
+        for (File file : files) {
+            LocalDate date;
+            try {
+                date = LocalDate.parse(file.getName().substring(0, file.getName().length() - FILE_SUFFIX.length()));
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (cutoff != null && date.isBefore(cutoff)) {
+                file.delete();
+                continue;
+            }
+            if (!date.isBefore(firstIncomplete) || (dailyCheckedThrough != null && !date.isAfter(dailyCheckedThrough))) {
+                continue;
+            }
+            try {
+                List<TrafficRollup> records = read(file);
+                boolean hasDay = false;
+                List<TrafficRollup> hours = new ArrayList<>();
+                for (TrafficRollup record : records) {
+                    hasDay |= record.getGranularity() == TrafficRollup.Granularity.DAY;
+                    if (record.getGranularity() == TrafficRollup.Granularity.HOUR) {
+                        hours.add(record);
+                    }
+                }
+                if (!hasDay && !hours.isEmpty()) {
+                    append(date, TrafficRollup.merge(TrafficRollup.Granularity.DAY, startOfDay(date), hours, topIps));
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to compact traffic stats " + file.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 查询流量汇总
+     *
+     * @param granularity 粒度
+     * @param from 开始时间（包含）
+     * @param to 结束时间（不包含）
+     * @return 开始时间在范围内的汇总，按时间排列，没有请求的时间段不包含在内
+     */
+    public synchronized List<TrafficRollup> query(TrafficRollup.Granularity granularity, long from, long to) {
+        // 超出保留天数的部分没有数据，不需要逐天查找
+        long now = System.currentTimeMillis();
+        long maxDays = retentionDays > 0 ? retentionDays + 1 : MAX_QUERY_DAYS;
+        from = Math.max(from, now - maxDays * 24 * HOUR_MILLIS);
+        to = Math.min(to, now + 24 * HOUR_MILLIS);
+        if (from >= to) {
+            return new ArrayList<>();
+        }
+        switch (granularity) {
+            case MINUTE:
+                return queryMinutes(from, to);
+            case HOUR:
+                return queryHours(from, to);
+            default:
+                return queryDays(from, to);
+        }
+    }
+
+    private List<TrafficRollup> queryMinutes(long from, long to) {
+        Map<Long, TrafficRollup> result = new TreeMap<>();
+        for (int i = 0; i < minutes.length(); i++) {
+            MinuteBucket bucket = minutes.get(i);
+            long start = bucket != null ? bucket.getMinute() * MINUTE_MILLIS : -1;
+            if (bucket != null && start >= from && start < to && bucket.getTotal() > 0) {
+                result.put(start, bucket.toRollup(topIps));
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    private List<TrafficRollup> queryHours(long from, long to) {
+        Map<Long, List<TrafficRollup>> parts = new TreeMap<>();
+        for (LocalDate date = toDate(from); !date.isAfter(toDate(to - 1)); date = date.plusDays(1)) {
+            addHours(parts, date);
+        }
+        List<TrafficRollup> result = new ArrayList<>();
+        for (Map.Entry<Long, List<TrafficRollup>> entry : parts.entrySet()) {
+            if (entry.getKey() >= from && entry.getKey() < to) {
+                result.add(combine(TrafficRollup.Granularity.HOUR, entry.getKey(), entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private List<TrafficRollup> queryDays(long from, long to) {
+        List<TrafficRollup> result = new ArrayList<>();
+        for (LocalDate date = toDate(from); !date.isAfter(toDate(to - 1)); date = date.plusDays(1)) {
+            TrafficRollup day = null;
+            try {
+                for (TrafficRollup record : read(file(date))) {
+                    if (record.getGranularity() == TrafficRollup.Granularity.DAY) {
+                        day = record;
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to read traffic stats for " + date, e);
+            }
+            if (day == null) {
+                // 当天或还未合并的日期由小时汇总生成
+                Map<Long, List<TrafficRollup>> parts = new TreeMap<>();
+                addHours(parts, date);
+                List<TrafficRollup> hours = new ArrayList<>();
+                for (Map.Entry<Long, List<TrafficRollup>> entry : parts.entrySet()) {
+                    hours.add(combine(TrafficRollup.Granularity.HOUR, entry.getKey(), entry.getValue()));
+                }
+                if (!hours.isEmpty()) {
+                    day = TrafficRollup.merge(TrafficRollup.Granularity.DAY, startOfDay(date), hours, topIps);
+                }
+            }
+            if (day != null) {
+                result.add(day);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 收集一天的小时汇总：文件中的记录，以及内存中还未写入文件的小时
+     */
+    private void addHours(Map<Long, List<TrafficRollup>> parts, LocalDate date) {
+        try {
+            for (TrafficRollup record : read(file(date))) {
+                if (record.getGranularity() == TrafficRollup.Granularity.HOUR) {
+                    parts.computeIfAbsent(record.getStart(), key -> new ArrayList<>()).add(record);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read traffic stats for " + date, e);
+        }
+
+        // 还未写入文件的分钟
+        long dayStart = startOfDay(date);
+        long dayEnd = startOfDay(date.plusDays(1));
+        for (long hour = floorHour(Math.max(dayStart, compactedUntil)); hour < dayEnd; hour += HOUR_MILLIS) {
+            if (hour < dayStart) {
+                continue;
+            }
+            TrafficRollup pending = mergeMinutes(Math.max(hour, compactedUntil), hour + HOUR_MILLIS);
+            if (pending.getTotal() > 0) {
+                parts.computeIfAbsent(hour, key -> new ArrayList<>()).add(pending);
+            }
+        }
+    }
+
+    /**
+     * 合并同一小时的多条记录（如重新启动前后各写入的一部分）
+     */
+    private TrafficRollup combine(TrafficRollup.Granularity granularity, long start, List<TrafficRollup> parts) {
+        return parts.size() == 1 ? parts.get(0) : TrafficRollup.merge(granularity, start, parts, topIps);
+    }
+
+    /**
+     * 合并内存中 [from, to) 内的分钟为所在小时的汇总，客户端IP由合并后的统计计算
+     */
+    private TrafficRollup mergeMinutes(long from, long to) {
+        List<TrafficRollup> parts = new ArrayList<>();
+        HeavyHitters ips = null;
+        for (int i = 0; i < minutes.length(); i++) {
+            MinuteBucket bucket = minutes.get(i);
+            if (bucket == null) {
+                continue;
+            }
+            long start = bucket.getMinute() * MINUTE_MILLIS;
+            if (start < from || start >= to) {
+                continue;
+            }
+            parts.add(bucket.toRollupWithoutIps());
+            if (ips == null) {
+                ips = new HeavyHitters(SKETCH_WIDTH, candidates);
+            }
+            ips.merge(bucket.getIps());
+        }
+        long hour = floorHour(from);
+        TrafficRollup merged = TrafficRollup.merge(TrafficRollup.Granularity.HOUR, hour, parts, topIps);
+        if (ips == null) {
+            return merged;
+        }
+        return new TrafficRollup(TrafficRollup.Granularity.HOUR, hour, merged.getTotal(), merged.getEndpoints(), merged.getStatuses(),
+                merged.getRegions(), ips.top(topIps));
+    }
+
+    private File file(LocalDate date) {
+        return new File(directory, date + FILE_SUFFIX);
+    }
+
+    /**
+     * 追加一条汇总，每条记录前写入长度
+     * 写入中断留下的不完整记录会先被截掉，读取时也会忽略
+     */
+    private void append(LocalDate date, TrafficRollup rollup) throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        File file = file(date);
+        long complete = completeLength(file);
+        if (complete < file.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (complete == 0) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+            rollup.write(new DataOutputStream(record));
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            bytes.writeTo(out);
+        }
+    }
+
+    /**
+     * 最后一条完整记录结束的位置
+     *
+     * @return 文件不存在或文件头不完整时为0
+     */
+    private static long completeLength(File file) throws IOException {
+        long length = file.length();
+        if (length < HEADER_SIZE) {
+            return 0;
+        }
+        long position = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            readHeader(in, file);
+            int size;
+            while ((size = nextRecordSize(in, length - position)) >= 0) {
+                in.skipNBytes(size);
+                position += 4 + size;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 读取一天的全部记录，写入中断留下的不完整记录会被忽略
+     *
+     * @return 汇总记录，文件不存在时为空
+     */
+    private static List<TrafficRollup> read(File file) throws IOException {
+        List<TrafficRollup> records = new ArrayList<>();
+        long length = file.length();
+        if (length < HEADER_SIZE) {
+            return records;
+        }
+        long position = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            readHeader(in, file);
+            int size;
+            while ((size = nextRecordSize(in, length - position)) >= 0) {
+                byte[] record = new byte[size];
+                in.readFully(record);
+                position += 4 + size;
+                records.add(TrafficRollup.read(new DataInputStream(new ByteArrayInputStream(record))));
+            }
+        }
+        return records;
+    }
+
+    private static void readHeader(DataInputStream in, File file) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unsupported traffic stats file " + file.getName());
+        }
+    }
+
+    /**
+     * 读取下一条记录的长度，并检查记录是否完整
+     *
+     * @param remaining 文件中剩余的字节数
+     * @return 记录长度，没有更多完整的记录时为-1
+     */
+    private static int nextRecordSize(DataInputStream in, long remaining) throws IOException {
+        if (remaining < 4) {
+            return -1;
+        }
+        int size = in.readInt();
+        return size >= 0 && size <= remaining - 4 ? size : -1;
+    }
+
+    private static long floorHour(long time) {
+        return time - Math.floorMod(time, HOUR_MILLIS);
+    }
+
+    private static LocalDate toDate(long time) {
+        return Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static long startOfDay(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
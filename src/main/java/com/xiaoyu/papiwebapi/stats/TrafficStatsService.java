@@ -0,0 +1,94 @@
+package com.xiaoyu.papiwebapi.stats;
+
+import com.xiaoyu.papiwebapi.PapiWebAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 流量汇总服务
+ * HTTP请求结束后计入 {@link TrafficStats}，每分钟在异步线程中把已结束的小时和天写入文件
+ */
+public class TrafficStatsService {
+
+    // 每分钟检查一次（tick）
+    private static final long COMPACT_INTERVAL_TICKS = 20L * 60;
+
+    private final PapiWebAPI plugin;
+    // 未启用时为null
+    private volatile TrafficStats stats;
+    private BukkitTask task;
+
+    public TrafficStatsService(PapiWebAPI plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 按配置开始统计
+     */
+    public void start() {
+        if (stats != null || !plugin.getConfig().getBoolean("stats.enabled", true)) {
+            return;
+        }
+        TrafficStats current = new TrafficStats(new File(plugin.getDataFolder(), "stats"),
+                plugin.getConfig().getInt("stats.minute_history", 120),
+                plugin.getConfig().getInt("stats.top_ips", 20),
+                plugin.getConfig().getInt("stats.retention_days", 90),
+                plugin.getLogger());
+        stats = current;
+        // 启动时先为之前未合并的日期生成天汇总
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin,
+                () -> current.compact(System.currentTimeMillis(), false), 20L, COMPACT_INTERVAL_TICKS);
+    }
+
+    /**
+     * 停止统计，并把当前小时已有的部分写入文件
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        TrafficStats current = stats;
+        stats = null;
+        if (current != null) {
+            current.compact(System.currentTimeMillis(), true);
+        }
+    }
+
+    /**
+     * 重新加载配置，内存中的分钟统计会先写入文件
+     */
+    public void reload() {
+        stop();
+        start();
+    }
+
+    /**
+     * 记录一次请求，地区在地理位置查询完成后计入
+     *
+     * @param endpoint 端点名称，应只包含已注册的端点或固定的名称
+     * @param status 响应状态码
+     * @param ip 客户端IP
+     * @param region 客户端地区
+     */
+    public void record(String endpoint, int status, String ip, CompletableFuture<String> region) {
+        TrafficStats current = stats;
+        if (current == null) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+        region.whenComplete((value, error) ->
+                current.record(time, endpoint, status, value != null ? value : "unknown", ip));
+    }
+
+    /**
+     * 获取流量汇总
+     * @return 流量汇总，未启用时返回null
+     */
+    public TrafficStats getStats() {
+        return stats;
+    }
+}
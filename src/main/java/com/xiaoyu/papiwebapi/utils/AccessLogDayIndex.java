@@ -0,0 +1,311 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一天访问日志的二级索引
+ * IP、端点、地区和状态码按字典编码为整数列，每个取值有一个按记录序号排列的倒排列表；
+ * 鉴权结果为位图，时间为单独的一列。查询时从最短的倒排列表开始，只用列检查其余条件，不读取原始记录
+ * 记录序号与日志文件中的行号一致
+ */
+public class AccessLogDayIndex {
+
+    public static final String INDEX_SUFFIX = "-log.sdx";
+
+    private static final int MAGIC = 0x50574C53;
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // 写入索引文件的字符串最大长度，writeUTF 最多支持65535字节
+    private static final int MAX_VALUE_LENGTH = 16 * 1024;
+
+    private int size;
+    private long[] times = new long[INITIAL_CAPACITY];
+    private final BitSet authSuccess = new BitSet();
+    private final Column ips = new Column();
+    private final Column endpoints = new Column();
+    private final Column regions = new Column();
+    private final Column statuses = new Column();
+
+    /**
+     * 指定日期的索引文件
+     */
+    public static File indexFile(File logsDir, String date) {
+        return new File(logsDir, date + INDEX_SUFFIX);
+    }
+
+    /**
+     * 按顺序追加一条记录
+     *
+     * @param record 日志记录，格式错误的行为null，仍占用一个序号但不会被查询到
+     */
+    public void add(AccessLogRecord record) {
+        int row = size;
+        if (row == times.length) {
+            times = Arrays.copyOf(times, row * 2);
+        }
+        if (record == null) {
+            times[row] = Long.MIN_VALUE;
+            ips.add(row, "");
+            endpoints.add(row, "");
+            regions.add(row, "");
+            statuses.add(row, "");
+        } else {
+            times[row] = record.getTime();
+            authSuccess.set(row, record.isAuthSuccess());
+            ips.add(row, record.getIp());
+            endpoints.add(row, record.getEndpoint());
+            regions.add(row, record.getRegion());
+            statuses.add(row, Integer.toString(record.getStatus()));
+        }
+        size++;
+    }
+
+    /**
+     * 已索引的记录数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 查询符合条件的记录
+     *
+     * @param query 查询条件
+     * @param limit 最多返回的记录序号数
+     * @return 符合条件的记录总数，以及最新的 limit 条记录的序号
+     */
+    public Matches match(AccessLogQuery query, int limit) {
+        Column[] columns = {ips, endpoints, regions, statuses};
+        String[] values = {query.getIp(), query.getEndpoint(), query.getRegion(),
+                query.getStatus() != null ? query.getStatus().toString() : null};
+
+        // 各条件对应的编码，取值不在字典中时没有符合条件的记录
+        int[] codes = new int[columns.length];
+        IntList driver = null;
+        for (int i = 0; i < columns.length; i++) {
+            codes[i] = -1;
+            if (values[i] == null) {
+                continue;
+            }
+            codes[i] = columns[i].code(values[i]);
+            if (codes[i] < 0) {
+                return new Matches(0, new int[0]);
+            }
+            IntList postings = columns[i].postings.get(codes[i]);
+            if (driver == null || postings.size < driver.size) {
+                driver = postings;
+            }
+        }
+
+        Boolean auth = query.getAuthSuccess();
+        long from = query.getFrom();
+        long to = query.getTo();
+        long total = 0;
+        int[] rows = new int[Math.max(0, limit)];
+        int found = 0;
+
+        // 从最新的记录开始检查候选记录
+        int candidates = driver != null ? driver.size : size;
+        for (int i = candidates - 1; i >= 0; i--) {
+            int row = driver != null ? driver.values[i] : i;
+            long time = times[row];
+            if (time < from || time > to) {
+                continue;
+            }
+            if (auth != null && authSuccess.get(row) != auth) {
+                continue;
+            }
+            boolean matches = true;
+            for (int c = 0; c < columns.length && matches; c++) {
+                matches = codes[c] < 0 || columns[c].codes[row] == codes[c];
+            }
+            if (!matches) {
+                continue;
+            }
+            total++;
+            if (found < rows.length) {
+                rows[found++] = row;
+            }
+        }
+        return new Matches(total, Arrays.copyOf(rows, found));
+    }
+
+    /**
+     * 写入索引文件，先写入临时文件再替换
+     * 倒排列表可以由各列重新生成，不写入文件
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath()), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeLong(times[i]);
+                }
+                long[] bits = authSuccess.toLongArray();
+                out.writeInt(bits.length);
+                for (long word : bits) {
+                    out.writeLong(word);
+                }
+                for (Column column : new Column[]{ips, endpoints, regions, statuses}) {
+                    column.write(out, size);
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 读取索引文件
+     *
+     * @return 索引，文件格式不正确时返回null
+     */
+    public static AccessLogDayIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            AccessLogDayIndex index = new AccessLogDayIndex();
+            int size = in.readInt();
+            index.times = new long[Math.max(INITIAL_CAPACITY, size)];
+            for (int i = 0; i < size; i++) {
+                index.times[i] = in.readLong();
+            }
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            index.authSuccess.or(BitSet.valueOf(bits));
+            for (Column column : new Column[]{index.ips, index.endpoints, index.regions, index.statuses}) {
+                column.read(in, size);
+            }
+            index.size = size;
+            return index;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class Matches {
+        private final long total;
+        private final int[] rows;
+
+        Matches(long total, int[] rows) {
+            this.total = total;
+            this.rows = rows;
+        }
+
+        /**
+         * 符合条件的记录总数
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * 最新的若干条记录的序号，最新的在前
+         */
+        public int[] getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * 字典编码的列及其倒排列表
+     */
+    private static final class Column {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<IntList> postings = new ArrayList<>();
+        private int[] codes = new int[INITIAL_CAPACITY];
+
+        void add(int row, String value) {
+            if (value == null) {
+                value = "";
+            }
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                dictionary.put(value, code);
+                postings.add(new IntList());
+            }
+            set(row, code);
+        }
+
+        private void set(int row, int code) {
+            if (row == codes.length) {
+                codes = Arrays.copyOf(codes, row * 2);
+            }
+            codes[row] = code;
+            postings.get(code).add(row);
+        }
+
+        int code(String value) {
+            Integer code = dictionary.get(value);
+            return code != null ? code : -1;
+        }
+
+        void write(DataOutputStream out, int size) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                out.writeUTF(value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value);
+            }
+            for (int i = 0; i < size; i++) {
+                out.writeInt(codes[i]);
+            }
+        }
+
+        void read(DataInputStream in, int size) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String value = in.readUTF();
+                values.add(value);
+                dictionary.putIfAbsent(value, i);
+                postings.add(new IntList());
+            }
+            codes = new int[Math.max(INITIAL_CAPACITY, size)];
+            for (int row = 0; row < size; row++) {
+                int code = in.readInt();
+                if (code < 0 || code >= count) {
+                    throw new IOException("Corrupt log index");
+                }
+                codes[row] = code;
+                postings.get(code).add(row);
+            }
+        }
+    }
+
+    /**
+     * 可增长的整数列表
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 访问日志的偏移量索引
+ * 每个日志文件有一个同名的 .idx 文件，依次保存每条记录在日志文件中的起始位置（8字节），
+ * 读取任意一页时只需读取该页的偏移量和记录，不需要读取整个文件
+ */
+public final class AccessLogIndex {
+
+    public static final String INDEX_SUFFIX = "-log.idx";
+
+    // 每个偏移量的字节数
+    static final int ENTRY_BYTES = 8;
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private AccessLogIndex() {
+    }
+
+    /**
+     * 日志文件对应的索引文件
+     */
+    public static File indexFile(File logFile) {
+        String name = logFile.getName();
+        String date = LogManager.getLogDate(name);
+        return new File(logFile.getParentFile(), (date != null ? date : name) + INDEX_SUFFIX);
+    }
+
+    /**
+     * 使索引与日志文件一致：索引不存在或已损坏时重建，落后于日志文件时补全缺少的部分
+     * 不能与日志的写入同时进行，多个线程同时补全同一个索引时依次进行
+     *
+     * @param logFile 日志文件
+     * @return 索引中的记录数
+     */
+    public static synchronized long repair(File logFile) throws IOException {
+        File indexFile = indexFile(logFile);
+        long logLength = logFile.length();
+        if (!indexFile.exists()) {
+            return rebuild(logFile);
+        }
+
+        try (FileChannel index = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long entries = index.size() / ENTRY_BYTES;
+            // 不完整的偏移量是写入中断留下的
+            if (index.size() % ENTRY_BYTES != 0) {
+                index.truncate(entries * ENTRY_BYTES);
+            }
+            if (entries == 0) {
+                if (logLength == 0) {
+                    return 0;
+                }
+            } else {
+                long last = readOffset(index, entries - 1);
+                if (last < logLength) {
+                    // 补全最后一条已索引记录之后的部分
+                    List<Long> offsets = new ArrayList<>();
+                    scan(logFile, last, logLength, false, offsets);
+                    index.position(index.size());
+                    writeOffsets(index, offsets);
+                    return entries + offsets.size();
+                }
+            }
+        }
+        return rebuild(logFile);
+    }
+
+    /**
+     * 扫描日志文件，重新生成完整的索引
+     *
+     * @return 索引中的记录数
+     */
+    public static synchronized long rebuild(File logFile) throws IOException {
+        File indexFile = indexFile(logFile);
+        List<Long> offsets = new ArrayList<>();
+        scan(logFile, 0, logFile.length(), true, offsets);
+
+        // 先写入临时文件再替换，读取时不会看到不完整的索引
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (FileChannel index = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeOffsets(index, offsets);
+        }
+        Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return offsets.size();
+    }
+
+    /**
+     * 索引中的记录数
+     *
+     * @param logFile 日志文件
+     * @return 记录数，索引不存在时返回-1
+     */
+    public static long count(File logFile) {
+        File indexFile = indexFile(logFile);
+        if (!indexFile.exists()) {
+            return -1;
+        }
+        return indexFile.length() / ENTRY_BYTES;
+    }
+
+    /**
+     * 指定记录在日志文件中的起始位置
+     *
+     * @param logFile 日志文件
+     * @param record 记录序号，从0开始
+     * @return 起始位置，超出索引范围时返回-1
+     */
+    public static long offset(File logFile, long record) throws IOException {
+        try (FileChannel index = FileChannel.open(indexFile(logFile).toPath(), StandardOpenOption.READ)) {
+            if (record < 0 || record >= index.size() / ENTRY_BYTES) {
+                return -1;
+            }
+            return readOffset(index, record);
+        }
+    }
+
+    /**
+     * 读取一页记录，最新的在前
+     * 耗时和内存只与页的大小有关
+     *
+     * @param logFile 日志文件
+     * @param skip 跳过最新的记录数
+     * @param limit 最多读取的记录数
+     * @return 日志记录，格式错误的记录会被跳过
+     */
+    public static List<AccessLogRecord> readPage(File logFile, long skip, int limit) throws IOException {
+        List<AccessLogRecord> records = new ArrayList<>();
+        if (limit <= 0 || skip < 0) {
+            return records;
+        }
+
+        try (FileChannel index = FileChannel.open(indexFile(logFile).toPath(), StandardOpenOption.READ);
+             FileChannel log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            // 先读索引长度再读日志长度，写入时总是先写日志再写索引，所以索引中的记录都已写入日志
+            long entries = index.size() / ENTRY_BYTES;
+            long logLength = log.size();
+            while (entries > 0 && readOffset(index, entries - 1) >= logLength) {
+                entries--;
+            }
+
+            long end = entries - skip;
+            if (end <= 0) {
+                return records;
+            }
+            long start = Math.max(0, end - limit);
+
+            // 读取这一页的偏移量，以及下一条记录的偏移量作为结束位置
+            int count = (int) (end - start);
+            ByteBuffer offsetBuffer = ByteBuffer.allocate((count + 1) * ENTRY_BYTES);
+            offsetBuffer.limit((end < entries ? count + 1 : count) * ENTRY_BYTES);
+            readFully(index, offsetBuffer, start * ENTRY_BYTES);
+            offsetBuffer.flip();
+            long[] offsets = new long[count + 1];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = offsetBuffer.getLong();
+            }
+            offsets[count] = end < entries ? offsetBuffer.getLong() : logLength;
+
+            ByteBuffer data = ByteBuffer.allocate((int) (offsets[count] - offsets[0]));
+            readFully(log, data, offsets[0]);
+            byte[] bytes = data.array();
+
+            for (int i = count - 1; i >= 0; i--) {
+                int from = (int) (offsets[i] - offsets[0]);
+                int next = (int) (offsets[i + 1] - offsets[0]);
+                // 最后一条记录之后可能还有正在写入的部分记录，只取到换行符为止
+                int to = from;
+                while (to < next && bytes[to] != '\n') {
+                    to++;
+                }
+                if (to > from && bytes[to - 1] == '\r') {
+                    to--;
+                }
+                AccessLogRecord record = AccessLogRecord.parse(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 在日志文件的 [from, to) 范围内查找每条记录的起始位置
+     *
+     * @param includeFrom from 本身是否是一条记录的开始
+     */
+    private static void scan(File logFile, long from, long to, boolean includeFrom, List<Long> offsets) throws IOException {
+        if (includeFrom && from < to) {
+            offsets.add(from);
+        }
+        try (FileChannel log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long position = from;
+            while (position < to) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), to - position));
+                int read = log.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                byte[] bytes = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    long next = position + i + 1;
+                    if (bytes[i] == '\n' && next < to) {
+                        offsets.add(next);
+                    }
+                }
+                position += read;
+            }
+        }
+    }
+
+    private static long readOffset(FileChannel index, long entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_BYTES);
+        readFully(index, buffer, entry * ENTRY_BYTES);
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    private static void writeOffsets(FileChannel index, List<Long> offsets) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        for (long offset : offsets) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    index.write(buffer);
+                }
+                buffer.clear();
+            }
+            buffer.putLong(offset);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            index.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问日志的查询条件
+ * 各条件之间为"且"的关系，未指定的条件不限制
+ */
+public class AccessLogQuery {
+
+    // 未指定时间范围时查询最近7天
+    private static final long DEFAULT_RANGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private String ip;
+    private String endpoint;
+    private String region;
+    private Integer status;
+    private Boolean authSuccess;
+    private long from;
+    private long to;
+    private int limit;
+
+    private AccessLogQuery() {
+    }
+
+    /**
+     * 解析查询参数
+     * 支持 ip、endpoint、region、status、auth（ok/fail）、since（如 7d、12h、30m）、
+     * from/to（yyyy-MM-dd、yyyy-MM-ddTHH:mm[:ss] 或毫秒时间戳）和 limit
+     *
+     * @param params 参数
+     * @param defaultLimit 未指定 limit 时返回的记录数
+     * @param maxLimit 最多返回的记录数
+     * @return 查询条件
+     * @throws IllegalArgumentException 参数格式错误时
+     */
+    public static AccessLogQuery parse(Map<String, String> params, int defaultLimit, int maxLimit) {
+        AccessLogQuery query = new AccessLogQuery();
+        long now = System.currentTimeMillis();
+        query.to = now;
+        query.from = now - DEFAULT_RANGE_MILLIS;
+        query.limit = Math.min(defaultLimit, maxLimit);
+
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            String key = param.getKey().toLowerCase(Locale.ROOT);
+            String value = param.getValue().trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            switch (key) {
+                case "ip":
+                    query.ip = value;
+                    break;
+                case "endpoint":
+                    query.endpoint = value;
+                    break;
+                case "region":
+                    query.region = value;
+                    break;
+                case "status":
+                    query.status = parseNumber(key, value);
+                    break;
+                case "auth":
+                    query.authSuccess = parseAuth(value);
+                    break;
+                case "since":
+                    query.from = now - parseDuration(value);
+                    break;
+                case "from":
+                    query.from = parseTime(key, value, false);
+                    break;
+                case "to":
+                    query.to = parseTime(key, value, true);
+                    break;
+                case "limit":
+                    query.limit = Math.max(1, Math.min(parseNumber(key, value), maxLimit));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown search parameter: " + param.getKey());
+            }
+        }
+
+        if (query.from > query.to) {
+            throw new IllegalArgumentException("Time range is empty");
+        }
+        return query;
+    }
+
+    private static int parseNumber(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static boolean parseAuth(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "ok": case "true": case "1": case "success":
+                return true;
+            case "fail": case "false": case "0": case "failed":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid auth: " + value + " (use ok or fail)");
+        }
+    }
+
+    /**
+     * 解析时长，如 7d、12h、30m、45s
+     *
+     * @return 毫秒数
+     * @throws IllegalArgumentException 格式错误时
+     */
+    public static long parseDuration(String value) {
+        TimeUnit unit;
+        switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 'd': unit = TimeUnit.DAYS; break;
+            case 'h': unit = TimeUnit.HOURS; break;
+            case 'm': unit = TimeUnit.MINUTES; break;
+            case 's': unit = TimeUnit.SECONDS; break;
+            default: throw new IllegalArgumentException("Invalid since: " + value + " (e.g. 7d, 12h, 30m)");
+        }
+        try {
+            return unit.toMillis(Long.parseLong(value.substring(0, value.length() - 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid since: " + value + " (e.g. 7d, 12h, 30m)");
+        }
+    }
+
+    /**
+     * 解析时间，只有日期时 from 为当天开始，to 为当天结束
+     */
+    private static long parseTime(String key, String value, boolean endOfDay) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            if (value.matches("\\d{4}-\\d{2}-\\d{2}")) {
+                LocalDate date = LocalDate.parse(value, DATE_FORMAT);
+                return endOfDay
+                        ? date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1
+                        : date.atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            if (value.matches("\\d+")) {
+                return Long.parseLong(value);
+            }
+            return LocalDateTime.parse(value).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value + " (use yyyy-MM-dd or yyyy-MM-ddTHH:mm)");
+        }
+    }
+
+    /**
+     * 时间范围内的日期，最新的在前
+     *
+     * @return 日期字符串（格式：yyyy-MM-dd）
+     */
+    public List<String> getDates() {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate first = Instant.ofEpochMilli(from).atZone(zone).toLocalDate();
+        List<String> dates = new ArrayList<>();
+        for (LocalDate date = Instant.ofEpochMilli(to).atZone(zone).toLocalDate(); !date.isBefore(first); date = date.minusDays(1)) {
+            dates.add(DATE_FORMAT.format(date));
+        }
+        return dates;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * HTTP状态码，未指定时为null
+     */
+    public Integer getStatus() {
+        return status;
+    }
+
+    /**
+     * 鉴权结果，未指定时为null
+     */
+    public Boolean getAuthSuccess() {
+        return authSuccess;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
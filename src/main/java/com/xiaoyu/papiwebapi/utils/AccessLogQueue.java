@@ -0,0 +1,263 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 有界的访问日志队列
+ * 环形缓冲区中的记录对象预先分配并重复使用，写入记录只复制字段引用，不创建对象
+ * 支持多个线程同时写入，只能由日志线程读取
+ */
+public class AccessLogQueue {
+
+    /**
+     * 队列已满时的处理方式
+     */
+    public enum OverflowPolicy {
+        // 等待日志线程取出记录
+        BLOCK,
+        // 丢弃新的记录
+        DROP_NEWEST,
+        // 队列超过3/4后只保留部分记录，已满时丢弃
+        SAMPLE;
+
+        public static OverflowPolicy fromConfig(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return DROP_NEWEST;
+            }
+        }
+    }
+
+    /**
+     * 队列中的一条记录，由队列重复使用，不能在读取之后保留
+     */
+    static final class Entry {
+        long time;
+        String ip;
+        String region;
+        // 尚未解析完成的地区，不为null时由日志线程等待结果后写入
+        CompletableFuture<String> pendingRegion;
+        String path;
+        boolean authSuccess;
+        String response;
+        int status;
+        String endpoint;
+
+        private void clear() {
+            ip = null;
+            region = null;
+            pendingRegion = null;
+            path = null;
+            response = null;
+            endpoint = null;
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryHandler {
+        void accept(Entry entry) throws IOException;
+    }
+
+    // 等待队列有空位时每次休眠的时间（纳秒）
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final Entry[] entries;
+    // 每个位置的序号：等于写入位置时可写入，等于写入位置+1时可读取
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // 只由日志线程修改
+    private volatile long head;
+
+    private final OverflowPolicy policy;
+    private final int sampleRate;
+    private final int sampleThreshold;
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     * @param policy 队列已满时的处理方式
+     * @param sampleRate 采样模式下每多少条记录保留一条
+     */
+    public AccessLogQueue(int capacity, OverflowPolicy policy, int sampleRate) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 24)) - 1) << 1;
+        this.entries = new Entry[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.sampleThreshold = size - size / 4;
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param region 已解析的地区，pendingRegion不为null时忽略
+     * @param pendingRegion 尚未解析完成的地区，没有时为null
+     * @return 是否写入，队列已满或已关闭时丢弃的记录返回false
+     */
+    public boolean offer(long time, String ip, String region, CompletableFuture<String> pendingRegion, String path,
+                         boolean authSuccess, String response, int status, String endpoint) {
+        if (closed) {
+            Metrics.LOG_DROPPED.increment();
+            return false;
+        }
+        if (policy == OverflowPolicy.SAMPLE && size() >= sampleThreshold
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            Metrics.LOG_SAMPLED.increment();
+            return false;
+        }
+
+        long position = claim();
+        while (position < 0) {
+            if (policy != OverflowPolicy.BLOCK || closed) {
+                Metrics.LOG_DROPPED.increment();
+                return false;
+            }
+            wakeConsumer();
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            position = claim();
+        }
+
+        int index = (int) (position & mask);
+        Entry entry = entries[index];
+        entry.time = time;
+        entry.ip = ip;
+        entry.region = region;
+        entry.pendingRegion = pendingRegion;
+        entry.path = path;
+        entry.authSuccess = authSuccess;
+        entry.response = response;
+        entry.status = status;
+        entry.endpoint = endpoint;
+        sequences.set(index, position + 1);
+
+        Metrics.LOG_QUEUE_DEPTH.incrementAndGet();
+        if (consumerWaiting) {
+            wakeConsumer();
+        }
+        return true;
+    }
+
+    /**
+     * 占用一个写入位置
+     *
+     * @return 写入位置，队列已满时返回-1
+     */
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            long diff = sequences.get((int) (position & mask)) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 按写入顺序取出记录，只能在日志线程中调用
+     *
+     * @param handler 处理每条记录，抛出异常时该记录视为已取出
+     * @param max 最多取出的记录数
+     * @return 取出的记录数
+     */
+    int drain(EntryHandler handler, int max) throws IOException {
+        long position = head;
+        int count = 0;
+        try {
+            while (count < max) {
+                int index = (int) (position & mask);
+                if (sequences.get(index) != position + 1) {
+                    break;
+                }
+                Entry entry = entries[index];
+                try {
+                    handler.accept(entry);
+                } finally {
+                    entry.clear();
+                    sequences.set(index, position + entries.length);
+                    head = ++position;
+                    count++;
+                }
+            }
+        } finally {
+            if (count > 0) {
+                Metrics.LOG_QUEUE_DEPTH.addAndGet(-count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 队列为空时等待新的记录，只能在日志线程中调用
+     *
+     * @param timeoutNanos 最长等待时间（纳秒）
+     */
+    void await(long timeoutNanos) {
+        consumer = Thread.currentThread();
+        consumerWaiting = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        consumerWaiting = false;
+    }
+
+    /**
+     * 唤醒正在等待的日志线程
+     */
+    void wakeConsumer() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 关闭队列，之后写入的记录都会被丢弃，已写入的记录仍可取出
+     */
+    void close() {
+        closed = true;
+        wakeConsumer();
+    }
+
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * 等待写入的记录数
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+}
@@ -0,0 +1,195 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 单条API访问日志记录
+ * 磁盘格式为固定字段的单行文本：时间戳(毫秒)\tIP\t地区\t路径\t鉴权(1/0)\t返回信息\t状态码\t端点
+ * 旧版本写入的记录没有状态码和端点，读取时状态码为0、端点为空
+ */
+public class AccessLogRecord {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // 每条记录的字段数，以及旧版本记录的字段数
+    private static final int FIELD_COUNT = 8;
+    private static final int LEGACY_FIELD_COUNT = 6;
+
+    private final long time;
+    private final String ip;
+    private final String region;
+    private final String path;
+    private final boolean authSuccess;
+    private final String response;
+    private final int status;
+    private final String endpoint;
+
+    public AccessLogRecord(long time, String ip, String region, String path, boolean authSuccess, String response) {
+        this(time, ip, region, path, authSuccess, response, 0, "");
+    }
+
+    /**
+     * @param status HTTP状态码，未知时为0
+     * @param endpoint 请求的端点或内置路由名称，未知时为空
+     */
+    public AccessLogRecord(long time, String ip, String region, String path, boolean authSuccess, String response,
+                           int status, String endpoint) {
+        this.time = time;
+        this.ip = ip;
+        this.region = region;
+        this.path = path;
+        this.authSuccess = authSuccess;
+        this.response = response;
+        this.status = status;
+        this.endpoint = endpoint != null ? endpoint : "";
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isAuthSuccess() {
+        return authSuccess;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * HTTP状态码，旧版本的记录为0
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * 请求的端点或内置路由名称，旧版本的记录为空
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * 格式化时间戳
+     */
+    public String getTimestamp() {
+        return TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(time));
+    }
+
+    /**
+     * 生成用于展示的完整日志条目
+     */
+    public String toFullEntry() {
+        String entry = String.format("[%s] %s %s 访问了%s %s 返回%s",
+                getTimestamp(), ip, region, path,
+                authSuccess ? "鉴权正确" : "鉴权错误",
+                response);
+        return status > 0 ? entry + " (" + status + ")" : entry;
+    }
+
+    /**
+     * 将记录编码为一行（含换行符）追加到缓冲区
+     */
+    public void encode(StringBuilder out) {
+        encode(out, time, ip, region, path, authSuccess, response, status, endpoint);
+    }
+
+    /**
+     * 将字段直接编码为一行，避免为写入创建中间对象
+     */
+    public static void encode(StringBuilder out, long time, String ip, String region, String path,
+                              boolean authSuccess, String response, int status, String endpoint) {
+        out.append(time).append('\t');
+        escape(out, ip);
+        out.append('\t');
+        escape(out, region);
+        out.append('\t');
+        escape(out, path);
+        out.append('\t').append(authSuccess ? '1' : '0').append('\t');
+        escape(out, response);
+        out.append('\t').append(status).append('\t');
+        escape(out, endpoint);
+        out.append('\n');
+    }
+
+    /**
+     * 解析一行日志记录
+     *
+     * @param line 不含换行符的日志行
+     * @return 解析出的记录，格式错误时返回null
+     */
+    public static AccessLogRecord parse(String line) {
+        String[] fields = new String[FIELD_COUNT];
+        StringBuilder current = new StringBuilder();
+        int field = 0;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 't': current.append('\t'); break;
+                    case 'n': current.append('\n'); break;
+                    case 'r': current.append('\r'); break;
+                    default: current.append(next); break;
+                }
+            } else if (c == '\t') {
+                if (field >= FIELD_COUNT - 1) {
+                    return null;
+                }
+                fields[field++] = current.toString();
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields[field] = current.toString();
+
+        if (field != FIELD_COUNT - 1 && field != LEGACY_FIELD_COUNT - 1) {
+            return null;
+        }
+
+        try {
+            if (field == LEGACY_FIELD_COUNT - 1) {
+                return new AccessLogRecord(Long.parseLong(fields[0]), fields[1], fields[2], fields[3],
+                        "1".equals(fields[4]), fields[5]);
+            }
+            return new AccessLogRecord(Long.parseLong(fields[0]), fields[1], fields[2], fields[3],
+                    "1".equals(fields[4]), fields[5], Integer.parseInt(fields[6]), fields[7]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c); break;
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 按条件查询访问日志
+ * 每天的日志有一个 {@link AccessLogDayIndex}：当天的索引由日志线程在写入记录时追加，
+ * 写完的日志由后台线程建立后保存为 .sdx 文件。查询只读取索引，不扫描日志；
+ * 索引尚未建立的日期会跳过并安排建立。最近使用的若干天的索引缓存在内存中
+ */
+public class AccessLogSearch {
+
+    private final LogManager logManager;
+    private final File logsDir;
+    private final Logger logger;
+    // 从 .sdx 文件读取的索引，只在持有 this 锁时访问
+    private final Map<String, AccessLogDayIndex> cache;
+    // 已写完但尚未保存到 .sdx 文件的索引
+    private final Map<String, AccessLogDayIndex> unsaved = new ConcurrentHashMap<>();
+    // 正在写入的一天，只由日志线程替换；索引在追加和查询时锁定索引本身
+    private volatile ActiveDay active;
+
+    AccessLogSearch(LogManager logManager, File logsDir, int cacheDays, Logger logger) {
+        this.logManager = logManager;
+        this.logsDir = logsDir;
+        this.logger = logger;
+        int capacity = Math.max(1, cacheDays);
+        this.cache = new LinkedHashMap<String, AccessLogDayIndex>(capacity + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AccessLogDayIndex> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 查询访问日志，多个线程同时查询时依次进行
+     *
+     * @param query 查询条件
+     * @return 查询结果，记录按时间逆序排列
+     */
+    public synchronized Result search(AccessLogQuery query) {
+        long start = System.nanoTime();
+        long total = 0;
+        int days = 0;
+        int pendingDays = 0;
+        List<AccessLogRecord> records = new ArrayList<>();
+
+        for (String date : query.getDates()) {
+            DailyLog log = findLog(date);
+            if (log == null) {
+                continue;
+            }
+            try {
+                AccessLogDayIndex.Matches matches;
+                ActiveDay day = active;
+                if (day != null && day.date.equals(date)) {
+                    synchronized (day.index) {
+                        matches = day.index.match(query, query.getLimit() - records.size());
+                    }
+                } else {
+                    AccessLogDayIndex index = getIndex(log);
+                    if (index == null) {
+                        pendingDays++;
+                        continue;
+                    }
+                    matches = index.match(query, query.getLimit() - records.size());
+                }
+                total += matches.getTotal();
+                days++;
+                for (AccessLogRecord record : log.readRecordsAt(matches.getRows())) {
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error searching log file " + log.getFile().getName(), e);
+            }
+        }
+        return new Result(total, records, days, pendingDays, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 指定日期可查询的日志，旧版本的YAML日志不支持查询
+     */
+    private DailyLog findLog(String date) {
+        for (DailyLog log : logManager.getDailyLogs(date)) {
+            if (!log.isLegacy()) {
+                return log;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取写完的一天的索引：依次使用尚未保存的索引、内存中的缓存和 .sdx 文件
+     *
+     * @return 索引，尚未建立或与日志不一致时安排在后台建立并返回null
+     */
+    private AccessLogDayIndex getIndex(DailyLog log) throws IOException {
+        String date = log.getDate();
+        AccessLogDayIndex index = unsaved.get(date);
+        if (index != null) {
+            return index;
+        }
+
+        File indexFile = AccessLogDayIndex.indexFile(logsDir, date);
+        index = cache.get(date);
+        if (index == null && indexFile.exists()) {
+            try {
+                index = AccessLogDayIndex.read(indexFile);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Rebuilding log search index " + indexFile.getName(), e);
+            }
+        }
+        // 日志文件被替换时删除过时的索引文件并重新建立
+        if (index == null || index.size() != log.count()) {
+            cache.remove(date);
+            if (indexFile.exists() && !indexFile.delete()) {
+                logger.warning("Could not delete outdated log search index " + indexFile.getName());
+            }
+            logManager.scheduleFinishLog(log.getFile(), null);
+            return null;
+        }
+        cache.put(date, index);
+        return index;
+    }
+
+    /**
+     * 开始写入一天的日志，从已有的记录建立当天的索引，只能在日志线程中调用
+     *
+     * @param log 正在写入的日志
+     */
+    void openDay(DailyLog log) throws IOException {
+        AccessLogDayIndex index = new AccessLogDayIndex();
+        log.scan(0, (number, record) -> index.add(record));
+        active = new ActiveDay(log.getDate(), index);
+    }
+
+    /**
+     * 追加一条已写入当天日志的记录，只能在日志线程中调用
+     */
+    void append(AccessLogRecord record) {
+        ActiveDay day = active;
+        if (day != null) {
+            synchronized (day.index) {
+                day.index.add(record);
+            }
+        }
+    }
+
+    /**
+     * 当天的日志已写完，只能在日志线程中调用
+     *
+     * @return 当天的索引，之后由 {@link #saveIndex} 保存；没有正在写入的日志时返回null
+     */
+    AccessLogDayIndex closeDay() {
+        ActiveDay day = active;
+        active = null;
+        if (day == null) {
+            return null;
+        }
+        unsaved.put(day.date, day.index);
+        return day.index;
+    }
+
+    /**
+     * 保存写完的一天的索引，在后台线程中调用
+     *
+     * @param date 日期
+     * @param index 索引，为null时从日志中建立
+     */
+    void saveIndex(String date, AccessLogDayIndex index) throws IOException {
+        try {
+            if (index == null) {
+                DailyLog log = findLog(date);
+                if (log == null) {
+                    return;
+                }
+                AccessLogDayIndex built = new AccessLogDayIndex();
+                log.scan(0, (number, record) -> built.add(record));
+                index = built;
+            }
+            index.write(AccessLogDayIndex.indexFile(logsDir, date));
+        } finally {
+            unsaved.remove(date);
+        }
+        synchronized (this) {
+            cache.remove(date);
+        }
+    }
+
+    /**
+     * 正在写入的一天的索引
+     */
+    private static final class ActiveDay {
+        private final String date;
+        private final AccessLogDayIndex index;
+
+        private ActiveDay(String date, AccessLogDayIndex index) {
+            this.date = date;
+            this.index = index;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class Result {
+        private final long total;
+        private final List<AccessLogRecord> records;
+        private final int days;
+        private final int pendingDays;
+        private final long tookMillis;
+
+        Result(long total, List<AccessLogRecord> records, int days, int pendingDays, long tookMillis) {
+            this.total = total;
+            this.records = Collections.unmodifiableList(records);
+            this.days = days;
+            this.pendingDays = pendingDays;
+            this.tookMillis = tookMillis;
+        }
+
+        /**
+         * 符合条件的记录总数
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * 最新的若干条符合条件的记录
+         */
+        public List<AccessLogRecord> getRecords() {
+            return records;
+        }
+
+        /**
+         * 查询的天数
+         */
+        public int getDays() {
+            return days;
+        }
+
+        /**
+         * 索引尚未建立、没有查询的天数
+         */
+        public int getPendingDays() {
+            return pendingDays;
+        }
+
+        /**
+         * 查询耗时（毫秒）
+         */
+        public long getTookMillis() {
+            return tookMillis;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从文件末尾向前逐块读取访问日志，取到足够的记录后停止
+ * 读取最近的记录时不需要索引，也不会读取整个文件
+ */
+public final class AccessLogTailReader {
+
+    private static final int BLOCK_SIZE = 8 * 1024;
+
+    private AccessLogTailReader() {
+    }
+
+    /**
+     * 读取文件末尾的记录，最新的在前
+     * 文件末尾没有换行符的部分是正在写入的记录，会被忽略
+     *
+     * @param logFile 日志文件
+     * @param skip 跳过最新的行数
+     * @param limit 最多读取的记录数
+     * @return 日志记录，格式错误的记录会被跳过
+     */
+    public static List<AccessLogRecord> readLast(File logFile, long skip, int limit) throws IOException {
+        List<AccessLogRecord> records = new ArrayList<>();
+        if (limit <= 0 || skip < 0) {
+            return records;
+        }
+
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+            // 跨越块边界的行，保存已读取的后半部分
+            byte[] carry = new byte[0];
+            long position = channel.size();
+            boolean trailing = true;
+
+            while (position > 0 && records.size() < limit) {
+                int size = (int) Math.min(BLOCK_SIZE, position);
+                position -= size;
+                block.clear();
+                block.limit(size);
+                while (block.hasRemaining()) {
+                    if (channel.read(block, position + block.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+
+                byte[] bytes = block.array();
+                int end = size;
+                for (int i = size - 1; i >= 0 && records.size() < limit; i--) {
+                    if (bytes[i] != '\n') {
+                        continue;
+                    }
+                    if (trailing) {
+                        // 最后一个换行符之后的内容尚未写完
+                        trailing = false;
+                    } else {
+                        skip = accept(join(bytes, i + 1, end, carry), skip, records);
+                    }
+                    carry = new byte[0];
+                    end = i;
+                }
+                if (records.size() < limit && !trailing) {
+                    carry = join(bytes, 0, end, carry);
+                }
+            }
+
+            // 文件的第一行
+            if (position == 0 && records.size() < limit && !trailing && carry.length > 0) {
+                accept(carry, skip, records);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 处理一行，跳过的行数与索引一致，按行而不是按有效记录计算
+     *
+     * @return 剩余需要跳过的行数
+     */
+    private static long accept(byte[] line, long skip, List<AccessLogRecord> records) {
+        if (skip > 0) {
+            return skip - 1;
+        }
+        int length = line.length;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        AccessLogRecord record = AccessLogRecord.parse(new String(line, 0, length, StandardCharsets.UTF_8));
+        if (record != null) {
+            records.add(record);
+        }
+        return 0;
+    }
+
+    private static byte[] join(byte[] bytes, int from, int to, byte[] carry) {
+        byte[] line = new byte[to - from + carry.length];
+        System.arraycopy(bytes, from, line, 0, to - from);
+        System.arraycopy(carry, 0, line, to - from, carry.length);
+        return line;
+    }
+}
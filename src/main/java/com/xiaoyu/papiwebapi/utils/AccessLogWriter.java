@@ -0,0 +1,212 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 追加写入的访问日志文件
+ * 每条记录只编码一次并追加到文件末尾，写入开销与当天已有的记录数无关
+ * 同时在索引文件中追加每条记录的起始位置，见 {@link AccessLogIndex}
+ * 非线程安全，只应在日志线程中使用
+ */
+public class AccessLogWriter implements AutoCloseable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // 索引缓冲区可容纳的偏移量数
+    private static final int INDEX_BUFFER_ENTRIES = 4096;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final FileChannel indexChannel;
+    private final ByteBuffer indexBuffer;
+    // 已写入文件的字节数，不含缓冲区
+    private long position;
+    // 缓冲区中尚未写入文件的记录数
+    private int bufferedRecords;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(256);
+
+    public AccessLogWriter(File file) throws IOException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param file 日志文件
+     * @param bufferSize 缓冲区大小（字节），缓冲区已满时写入文件
+     */
+    public AccessLogWriter(File file, int bufferSize) throws IOException {
+        this.file = file;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.indexBuffer = ByteBuffer.allocateDirect(INDEX_BUFFER_ENTRIES * AccessLogIndex.ENTRY_BYTES);
+        // 去掉上次异常退出时写了一半的记录，之后追加的记录从新的一行开始
+        if (file.exists()) {
+            truncateTornLine(file);
+        }
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            this.position = channel.size();
+            // 补全上次异常退出时未写入的索引
+            AccessLogIndex.repair(file);
+            this.indexChannel = FileChannel.open(AccessLogIndex.indexFile(file).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 将文件截断到最后一个换行符之后
+     *
+     * @return 截断后的文件长度
+     */
+    static long truncateTornLine(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return truncateTornLine(channel);
+        }
+    }
+
+    private static long truncateTornLine(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer chunk = ByteBuffer.allocate(4096);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - chunk.capacity());
+            chunk.clear().limit((int) (end - start));
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, start + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    long length = start + i + 1;
+                    if (length < size) {
+                        channel.truncate(length);
+                    }
+                    return length;
+                }
+            }
+            end = start;
+        }
+        if (size > 0) {
+            channel.truncate(0);
+        }
+        return 0;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 追加一条记录到缓冲区，缓冲区满时写入文件
+     */
+    public void append(long time, String ip, String region, String path, boolean authSuccess,
+                       String response, int status, String endpoint) throws IOException {
+        if (!indexBuffer.hasRemaining()) {
+            writeBuffer();
+        }
+        long start = position + buffer.position();
+
+        line.setLength(0);
+        AccessLogRecord.encode(line, time, ip, region, path, authSuccess, response, status, endpoint);
+
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                writeBuffer();
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            writeBuffer();
+        }
+        // 记录完整编码后才加入索引
+        indexBuffer.putLong(start);
+        bufferedRecords++;
+    }
+
+    /**
+     * 缓冲区中尚未写入文件的记录数，写入失败时这些记录会丢失
+     */
+    public int getBufferedRecords() {
+        return bufferedRecords;
+    }
+
+    /**
+     * 将缓冲区中的数据写入文件
+     */
+    public void flush() throws IOException {
+        writeBuffer();
+    }
+
+    /**
+     * 将缓冲区中的数据写入文件并同步到磁盘
+     */
+    public void sync() throws IOException {
+        writeBuffer();
+        channel.force(false);
+        indexChannel.force(false);
+    }
+
+    /**
+     * 先写入日志再写入索引，索引中的偏移量总是指向已写入文件的记录
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+        buffer.clear();
+
+        indexBuffer.flip();
+        while (indexBuffer.hasRemaining()) {
+            indexChannel.write(indexBuffer);
+        }
+        indexBuffer.clear();
+        bufferedRecords = 0;
+    }
+
+    /**
+     * 写入失败后关闭文件，丢弃缓冲区中的数据
+     * 写了一半的记录和缺少的索引在下次打开时修复
+     */
+    public void discard() {
+        buffer.clear();
+        indexBuffer.clear();
+        bufferedRecords = 0;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 已经无法写入
+        }
+        try {
+            indexChannel.close();
+        } catch (IOException ignored) {
+            // 已经无法写入
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+            indexChannel.close();
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压缩后的日志
+ * 日志按整行分块，每块单独压缩为一个gzip成员并依次连接，整个文件仍是标准的gzip文件；
+ * 同名的 .blk 文件依次保存每块的压缩偏移量和第一条记录的序号（各8字节），
+ * 最后一项为文件长度和总记录数，读取一页时只解压该页所在的块
+ */
+public class CompressedDailyLog extends DailyLog {
+
+    public static final String BLOCK_INDEX_SUFFIX = "-log.blk";
+
+    // 每块在块索引中的字节数
+    private static final int BLOCK_ENTRY_BYTES = 16;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    CompressedDailyLog(File file, String date) {
+        super(file, date);
+    }
+
+    /**
+     * 日志文件对应的块索引文件
+     */
+    public static File blockIndexFile(File compressedFile) {
+        return new File(compressedFile.getParentFile(), LogManager.getLogDate(compressedFile.getName()) + BLOCK_INDEX_SUFFIX);
+    }
+
+    @Override
+    public long count() throws IOException {
+        try (FileChannel blocks = FileChannel.open(blockIndexFile(file).toPath(), StandardOpenOption.READ)) {
+            return readLong(blocks, blocks.size() - 8);
+        }
+    }
+
+    @Override
+    public List<AccessLogRecord> readRecords(long skip, int limit) throws IOException {
+        List<AccessLogRecord> records = new ArrayList<>();
+        if (limit <= 0 || skip < 0) {
+            return records;
+        }
+
+        try (FileChannel blocks = FileChannel.open(blockIndexFile(file).toPath(), StandardOpenOption.READ);
+             FileChannel data = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int blockCount = (int) (blocks.size() / BLOCK_ENTRY_BYTES) - 1;
+            long total = readLong(blocks, (long) blockCount * BLOCK_ENTRY_BYTES + 8);
+            long end = total - skip;
+            if (end <= 0 || blockCount <= 0) {
+                return records;
+            }
+            long start = Math.max(0, end - limit);
+
+            // 从最后一条记录所在的块开始向前读取
+            for (int block = findBlock(blocks, blockCount, end - 1); block >= 0; block--) {
+                long first = readLong(blocks, (long) block * BLOCK_ENTRY_BYTES + 8);
+                List<String> lines = readBlock(data,
+                        readLong(blocks, (long) block * BLOCK_ENTRY_BYTES),
+                        readLong(blocks, (long) (block + 1) * BLOCK_ENTRY_BYTES));
+                for (int i = lines.size() - 1; i >= 0; i--) {
+                    long number = first + i;
+                    if (number >= end) {
+                        continue;
+                    }
+                    if (number < start) {
+                        return records;
+                    }
+                    AccessLogRecord record = AccessLogRecord.parse(lines.get(i));
+                    if (record != null) {
+                        records.add(record);
+                    }
+                }
+                if (first <= start) {
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 读取指定序号的记录，相邻的记录通常在同一块中，每块只解压一次
+     */
+    @Override
+    public List<AccessLogRecord> readRecordsAt(int[] numbers) throws IOException {
+        List<AccessLogRecord> records = new ArrayList<>(numbers.length);
+        try (FileChannel blocks = FileChannel.open(blockIndexFile(file).toPath(), StandardOpenOption.READ);
+             FileChannel data = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int blockCount = (int) (blocks.size() / BLOCK_ENTRY_BYTES) - 1;
+            long total = readLong(blocks, (long) blockCount * BLOCK_ENTRY_BYTES + 8);
+            int cachedBlock = -1;
+            long cachedFirst = 0;
+            List<String> lines = null;
+            for (int number : numbers) {
+                if (number < 0 || number >= total || blockCount <= 0) {
+                    records.add(null);
+                    continue;
+                }
+                int block = findBlock(blocks, blockCount, number);
+                if (block != cachedBlock) {
+                    cachedBlock = block;
+                    cachedFirst = readLong(blocks, (long) block * BLOCK_ENTRY_BYTES + 8);
+                    lines = readBlock(data,
+                            readLong(blocks, (long) block * BLOCK_ENTRY_BYTES),
+                            readLong(blocks, (long) (block + 1) * BLOCK_ENTRY_BYTES));
+                }
+                int line = (int) (number - cachedFirst);
+                records.add(line < lines.size() ? AccessLogRecord.parse(lines.get(line)) : null);
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public long scan(long from, RecordHandler handler) throws IOException {
+        long total = count();
+        long number = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(
+                Files.newInputStream(file.toPath()), READ_BUFFER_SIZE), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+            String line;
+            while (number < total && (line = reader.readLine()) != null) {
+                if (number >= from) {
+                    handler.accept(number, AccessLogRecord.parse(line));
+                }
+                number++;
+            }
+        }
+        return Math.max(from, number);
+    }
+
+    @Override
+    public List<File> getFiles() {
+        return Arrays.asList(file, blockIndexFile(file), AccessLogDayIndex.indexFile(file.getParentFile(), date));
+    }
+
+    /**
+     * 查找包含指定记录的块
+     */
+    private static int findBlock(FileChannel blocks, int blockCount, long record) throws IOException {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (readLong(blocks, (long) mid * BLOCK_ENTRY_BYTES + 8) <= record) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 解压一块，返回其中的各行
+     */
+    private static List<String> readBlock(FileChannel data, long from, long to) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate((int) (to - from));
+        while (compressed.hasRemaining()) {
+            if (data.read(compressed, from + compressed.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(compressed.array())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer.getLong();
+    }
+
+    /**
+     * 压缩一天的文本日志，完成后删除原文件及其索引
+     * 先写入临时文件再替换，中断时原文件保持不变
+     *
+     * @param plainFile 已写完的文本日志
+     * @param blockSize 每块压缩前的大小（字节）
+     * @return 压缩后的日志文件
+     * @throws InterruptedIOException 线程被中断时，正在写入文件时被中断则为 ClosedByInterruptException
+     */
+    public static File compress(File plainFile, int blockSize) throws IOException {
+        String date = LogManager.getLogDate(plainFile.getName());
+        File target = new File(plainFile.getParentFile(), date + LogManager.COMPRESSED_LOG_SUFFIX);
+        File blockIndex = blockIndexFile(target);
+        File tempTarget = new File(target.getParentFile(), target.getName() + ".tmp");
+        File tempBlockIndex = new File(blockIndex.getParentFile(), blockIndex.getName() + ".tmp");
+
+        try {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(plainFile.toPath()), READ_BUFFER_SIZE);
+                 FileChannel out = FileChannel.open(tempTarget.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 FileChannel index = FileChannel.open(tempBlockIndex.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                BlockWriter writer = new BlockWriter(out, index, blockSize);
+                byte[] buffer = new byte[READ_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Compression of " + plainFile.getName() + " interrupted");
+                    }
+                    writer.write(buffer, read);
+                }
+                writer.finish();
+                out.force(true);
+                index.force(true);
+            }
+
+            // 先替换块索引，读取时压缩文件存在即可使用
+            Files.move(tempBlockIndex.toPath(), blockIndex.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tempTarget.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempTarget.delete();
+            tempBlockIndex.delete();
+        }
+
+        plainFile.delete();
+        AccessLogIndex.indexFile(plainFile).delete();
+        return target;
+    }
+
+    /**
+     * 按整行分块压缩写入
+     */
+    private static class BlockWriter {
+        private final FileChannel out;
+        private final FileChannel index;
+        private final int blockSize;
+        private final ByteArrayOutputStream block;
+        private final ByteArrayOutputStream compressed;
+        private final ByteBuffer entry = ByteBuffer.allocate(BLOCK_ENTRY_BYTES);
+
+        // 已写入的完整记录数，以及当前块的第一条记录序号
+        private long records;
+        private long blockFirst;
+        private long position;
+        private byte lastByte = '\n';
+
+        BlockWriter(FileChannel out, FileChannel index, int blockSize) {
+            this.out = out;
+            this.index = index;
+            this.blockSize = blockSize;
+            this.block = new ByteArrayOutputStream(blockSize + READ_BUFFER_SIZE);
+            this.compressed = new ByteArrayOutputStream(blockSize / 2);
+        }
+
+        void write(byte[] bytes, int length) throws IOException {
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                block.write(bytes, lineStart, i + 1 - lineStart);
+                lineStart = i + 1;
+                records++;
+                if (block.size() >= blockSize) {
+                    flushBlock();
+                }
+            }
+            // 未结束的行留在下一块
+            block.write(bytes, lineStart, length - lineStart);
+            if (length > 0) {
+                lastByte = bytes[length - 1];
+            }
+        }
+
+        void finish() throws IOException {
+            if (block.size() > 0) {
+                // 没有换行符的最后一行与偏移量索引一样计为一条记录
+                if (lastByte != '\n') {
+                    records++;
+                }
+                flushBlock();
+            }
+            writeEntry(position, records);
+        }
+
+        private void flushBlock() throws IOException {
+            writeEntry(position, blockFirst);
+
+            compressed.reset();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                block.writeTo(gzip);
+            }
+            ByteBuffer data = ByteBuffer.wrap(compressed.toByteArray());
+            while (data.hasRemaining()) {
+                position += out.write(data);
+            }
+
+            block.reset();
+            blockFirst = records;
+        }
+
+        private void writeEntry(long offset, long first) throws IOException {
+            entry.clear();
+            entry.putLong(offset).putLong(first).flip();
+            while (entry.hasRemaining()) {
+                index.write(entry);
+            }
+        }
+    }
+}
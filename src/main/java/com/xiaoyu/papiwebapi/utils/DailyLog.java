@@ -0,0 +1,160 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一天的访问日志文件，屏蔽文本、压缩和旧版本YAML格式之间的差异
+ */
+public abstract class DailyLog {
+
+    protected final File file;
+    protected final String date;
+
+    protected DailyLog(File file, String date) {
+        this.file = file;
+        this.date = date;
+    }
+
+    /**
+     * 根据文件名创建对应格式的日志
+     *
+     * @param file 日志文件
+     * @param active 是否正在写入（当天的日志）
+     * @return 日志，不是日志文件时返回null
+     */
+    public static DailyLog of(File file, boolean active) {
+        String name = file.getName();
+        String date = LogManager.getLogDate(name);
+        if (date == null) {
+            return null;
+        }
+        if (name.endsWith(LogManager.COMPRESSED_LOG_SUFFIX)) {
+            return new CompressedDailyLog(file, date);
+        }
+        if (name.endsWith(LogManager.LEGACY_LOG_SUFFIX)) {
+            return new LegacyDailyLog(file, date);
+        }
+        return new PlainDailyLog(file, date, active);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * 是否为旧版本的YAML日志，只能读取展示用的条目
+     */
+    public boolean isLegacy() {
+        return false;
+    }
+
+    /**
+     * 日志中的记录数
+     */
+    public abstract long count() throws IOException;
+
+    /**
+     * 读取一页记录
+     *
+     * @param skip 跳过最新的记录数
+     * @param limit 最多读取的记录数
+     * @return 日志记录，最新的在前
+     */
+    public abstract List<AccessLogRecord> readRecords(long skip, int limit) throws IOException;
+
+    /**
+     * 读取最近的记录，默认与 {@link #readRecords} 相同
+     */
+    public List<AccessLogRecord> readLatest(long skip, int limit) throws IOException {
+        return readRecords(skip, limit);
+    }
+
+    /**
+     * 读取指定序号的记录
+     *
+     * @param numbers 记录序号，从0开始，与文件中的行号一致
+     * @return 日志记录，与序号一一对应，无法解析的为null
+     */
+    public List<AccessLogRecord> readRecordsAt(int[] numbers) throws IOException {
+        long total = count();
+        List<AccessLogRecord> records = new ArrayList<>(numbers.length);
+        for (int number : numbers) {
+            List<AccessLogRecord> page = number < total ? readRecords(total - 1 - number, 1) : null;
+            records.add(page != null && !page.isEmpty() ? page.get(0) : null);
+        }
+        return records;
+    }
+
+    /**
+     * 按顺序读取从指定序号开始的全部记录，用于建立查询索引
+     *
+     * @param from 开始的记录序号
+     * @param handler 记录处理器
+     * @return 读取结束后的记录序号，即已读取到的记录数
+     */
+    public abstract long scan(long from, RecordHandler handler) throws IOException;
+
+    /**
+     * 读取一页展示用的日志条目
+     *
+     * @param skip 跳过最新的记录数
+     * @param limit 最多读取的记录数
+     * @return 日志条目，最新的在前
+     */
+    public List<String> readEntries(long skip, int limit) throws IOException {
+        return toEntries(readRecords(skip, limit));
+    }
+
+    /**
+     * 读取最近的展示用日志条目
+     */
+    public List<String> readLatestEntries(long skip, int limit) throws IOException {
+        return toEntries(readLatest(skip, limit));
+    }
+
+    /**
+     * 日志文件及其附属文件（如索引）
+     */
+    public abstract List<File> getFiles();
+
+    /**
+     * 删除日志文件及其附属文件
+     *
+     * @return 日志文件是否已删除
+     */
+    public boolean delete() {
+        boolean deleted = file.delete();
+        if (deleted) {
+            for (File other : getFiles()) {
+                other.delete();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 按顺序处理记录
+     */
+    public interface RecordHandler {
+        /**
+         * @param number 记录序号
+         * @param record 日志记录，格式错误的行为null
+         */
+        void accept(long number, AccessLogRecord record);
+    }
+
+    private static List<String> toEntries(List<AccessLogRecord> records) {
+        List<String> entries = new ArrayList<>(records.size());
+        for (AccessLogRecord record : records) {
+            entries.add(record.toFullEntry());
+        }
+        return entries;
+    }
+}
@@ -1,50 +1,236 @@
 package com.xiaoyu.papiwebapi.utils;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.HashMap;
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+import com.xiaoyu.papiwebapi.utils.geo.IPLocationProvider;
+import com.xiaoyu.papiwebapi.utils.geo.IpApiLocationProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * IP地理位置解析工具
- * 使用缓存减少API调用
+ * 按顺序查询配置的数据来源，本地数据来源直接查询，网络数据来源在后台线程中异步执行，
+ * 使用有界的过期缓存减少API调用
  */
 public class IPLocationUtil {
 
+    // 本地网络的地区名称
+    public static final String LOCAL_REGION = "本地网络";
+    // 查询失败时的地区名称
+    public static final String UNKNOWN_REGION = "未知地区";
+    // 查询尚未完成时的地区名称
+    public static final String PENDING_REGION = "解析中";
+
     // 缓存IP查询结果，避免重复查询
-    private static final Map<String, CachedLocation> locationCache = new HashMap<>();
+    private static final Map<String, CachedLocation> locationCache = new ConcurrentHashMap<>();
+    // 正在进行中的查询，同一IP的并发查询共享同一个结果
+    private static final Map<String, CompletableFuture<String>> pendingLookups = new ConcurrentHashMap<>();
     // 缓存过期时间（小时）
     private static final long CACHE_EXPIRY_HOURS = 24;
+    // 查询失败的结果缓存时间（分钟），避免对同一IP反复请求
+    private static final long FAILURE_EXPIRY_MINUTES = 10;
+    // 缓存最大条目数
+    private static final int MAX_CACHE_SIZE = 10000;
+    // 等待查询的IP数上限，超过时直接视为未知地区，避免大量不同的IP占用内存并拖慢后续查询
+    private static final int MAX_QUEUED_LOOKUPS = 256;
+    // 连接和读取超时（毫秒）
+    public static final int TIMEOUT_MILLIS = 5000;
+
+    // 不会阻塞的数据来源，在请求线程中直接查询
+    private static volatile List<IPLocationProvider> inlineProviders = Collections.emptyList();
+    // 会阻塞的数据来源，只在后台线程中查询
+    private static volatile List<IPLocationProvider> blockingProviders =
+            Collections.singletonList(new IpApiLocationProvider(TIMEOUT_MILLIS));
+
+    // 执行查询的后台线程
+    private static final ExecutorService lookupExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_LOOKUPS), new LookupThreadFactory());
 
     /**
-     * 获取IP地址对应的地理位置
+     * 获取IP地址对应的地理位置，未命中缓存时会阻塞直到查询完成
      *
      * @param ip IP地址
      * @return 地理位置信息
      */
     public static String getIPLocation(String ip) {
+        try {
+            return getIPLocationAsync(ip).get(TIMEOUT_MILLIS * 2L, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            return UNKNOWN_REGION;
+        }
+    }
+
+    /**
+     * 异步获取IP地址对应的地理位置
+     * 命中缓存时返回已完成的结果，否则在后台线程中查询；等待查询的IP过多时直接返回"未知地区"
+     *
+     * @param ip IP地址
+     * @return 地理位置信息，查询失败时为"未知地区"，不会异常完成
+     */
+    public static CompletableFuture<String> getIPLocationAsync(String ip) {
         // 检查是否为本地网络IP
         if (isLocalIP(ip)) {
-            return "本地网络";
+            return CompletableFuture.completedFuture(LOCAL_REGION);
         }
 
         // 检查缓存
         CachedLocation cached = locationCache.get(ip);
         if (cached != null && !cached.isExpired()) {
-            return cached.getLocation();
+            Metrics.GEO_CACHE_HITS.increment();
+            return CompletableFuture.completedFuture(cached.getLocation());
+        }
+
+        // 查询本地数据来源
+        for (IPLocationProvider provider : inlineProviders) {
+            try {
+                String location = provider.lookup(ip);
+                if (location != null) {
+                    Metrics.GEO_INLINE_HITS.increment();
+                    return CompletableFuture.completedFuture(location);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+
+        if (blockingProviders.isEmpty()) {
+            return CompletableFuture.completedFuture(UNKNOWN_REGION);
+        }
+
+        // 合并同一IP的并发查询
+        CompletableFuture<String> pending = pendingLookups.get(ip);
+        if (pending != null) {
+            Metrics.GEO_PENDING_JOINS.increment();
+            return pending;
+        }
+        if (pendingLookups.size() >= MAX_QUEUED_LOOKUPS) {
+            Metrics.GEO_REJECTED.increment();
+            return CompletableFuture.completedFuture(UNKNOWN_REGION);
+        }
+        pending = pendingLookups.computeIfAbsent(ip, IPLocationUtil::startLookup);
+        // 查询队列已满时不会保留在进行中的查询里，之后的请求会重新尝试
+        if (pending.isDone()) {
+            pendingLookups.remove(ip, pending);
+        }
+        return pending;
+    }
+
+    /**
+     * 设置地理位置数据来源，按列表顺序查询，前一个无法解析时使用下一个
+     *
+     * @param providers 数据来源列表
+     */
+    public static void setProviders(List<IPLocationProvider> providers) {
+        List<IPLocationProvider> inline = new ArrayList<>();
+        List<IPLocationProvider> blocking = new ArrayList<>();
+        for (IPLocationProvider provider : providers) {
+            (provider.isBlocking() ? blocking : inline).add(provider);
+        }
+
+        List<IPLocationProvider> previous = new ArrayList<>(inlineProviders);
+        previous.addAll(blockingProviders);
+
+        inlineProviders = Collections.unmodifiableList(inline);
+        blockingProviders = Collections.unmodifiableList(blocking);
+
+        // 数据来源改变后，之前的查询结果不再可靠
+        locationCache.clear();
+
+        for (IPLocationProvider provider : previous) {
+            if (!providers.contains(provider)) {
+                provider.close();
+            }
+        }
+    }
+
+    private static String lookupBlocking(String ip) throws Exception {
+        Exception failure = null;
+        for (IPLocationProvider provider : blockingProviders) {
+            try {
+                String location = provider.lookup(ip);
+                if (location != null) {
+                    return location;
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return UNKNOWN_REGION;
+    }
+
+    private static CompletableFuture<String> startLookup(String ip) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            lookupExecutor.execute(() -> runLookup(ip, future));
+        } catch (RejectedExecutionException e) {
+            Metrics.GEO_REJECTED.increment();
+            future.complete(UNKNOWN_REGION);
+            return future;
         }
+        Metrics.GEO_MISSES.increment();
+        return future;
+    }
 
-        // 调用API获取位置信息
+    private static void runLookup(String ip, CompletableFuture<String> future) {
+        String location;
+        long expiry;
+        long start = System.nanoTime();
         try {
-            String location = fetchLocationFromAPI(ip);
-            // 缓存结果
-            locationCache.put(ip, new CachedLocation(location));
-            return location;
+            location = lookupBlocking(ip);
+            expiry = TimeUnit.HOURS.toMillis(CACHE_EXPIRY_HOURS);
         } catch (Exception e) {
-            return "未知地区";
+            Metrics.GEO_FAILURES.increment();
+            location = UNKNOWN_REGION;
+            expiry = TimeUnit.MINUTES.toMillis(FAILURE_EXPIRY_MINUTES);
+        }
+        Metrics.GEO_LOOKUP.recordSince(start);
+
+        // 先写入缓存再移除进行中的查询，保证后续请求总能命中其中之一
+        cacheLocation(ip, location, expiry);
+        pendingLookups.remove(ip, future);
+        future.complete(location);
+    }
+
+    /**
+     * 写入缓存，超过容量时先清理过期条目，再淘汰最早的条目
+     */
+    private static void cacheLocation(String ip, String location, long expiryMillis) {
+        locationCache.put(ip, new CachedLocation(location, expiryMillis));
+        if (locationCache.size() <= MAX_CACHE_SIZE) {
+            return;
+        }
+
+        locationCache.values().removeIf(CachedLocation::isExpired);
+
+        // 仍然超过容量时，按写入时间淘汰约十分之一的条目
+        int excess = locationCache.size() - MAX_CACHE_SIZE * 9 / 10;
+        if (excess <= 0) {
+            return;
+        }
+        long cutoff = locationCache.values().stream()
+                .mapToLong(CachedLocation::getTimestamp)
+                .sorted()
+                .skip(excess - 1)
+                .findFirst()
+                .orElse(Long.MAX_VALUE);
+        Iterator<CachedLocation> iterator = locationCache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getTimestamp() <= cutoff) {
+                iterator.remove();
+            }
         }
     }
 
@@ -76,50 +262,44 @@ public class IPLocationUtil {
         return false;
     }
 
-    /**
-     * 从API获取地理位置信息
-     * 这里使用的是ip-api.com的免费服务，实际使用中可以替换为其他服务
-     */
-    private static String fetchLocationFromAPI(String ip) throws Exception {
-        URL url = new URL("http://ip-api.com/line/" + ip + "?fields=country,regionName,city&lang=zh-CN");
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(5000);
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!response.isEmpty()) {
-                    response.append(" ");
-                }
-                response.append(line);
-            }
-
-            return response.toString();
-        }
-    }
-
     /**
      * 缓存的地理位置信息类
      */
     private static class CachedLocation {
         private final String location;
         private final long timestamp;
+        private final long expiryMillis;
 
-        public CachedLocation(String location) {
+        public CachedLocation(String location, long expiryMillis) {
             this.location = location;
             this.timestamp = System.currentTimeMillis();
+            this.expiryMillis = expiryMillis;
         }
 
         public String getLocation() {
             return location;
         }
 
+        public long getTimestamp() {
+            return timestamp;
+        }
+
         public boolean isExpired() {
-            long currentTime = System.currentTimeMillis();
-            long expiry = TimeUnit.HOURS.toMillis(CACHE_EXPIRY_HOURS);
-            return (currentTime - timestamp) > expiry;
+            return (System.currentTimeMillis() - timestamp) > expiryMillis;
+        }
+    }
+
+    /**
+     * 查询线程工厂，使用守护线程以免阻止服务器关闭
+     */
+    private static class LookupThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PapiWebAPI-GeoLookup-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
@@ -0,0 +1,80 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 旧版本的YAML日志，只能整体读取，仅保存了展示用的条目
+ */
+public class LegacyDailyLog extends DailyLog {
+
+    LegacyDailyLog(File file, String date) {
+        super(file, date);
+    }
+
+    @Override
+    public boolean isLegacy() {
+        return true;
+    }
+
+    @Override
+    public long count() {
+        return readAll().size();
+    }
+
+    /**
+     * 旧格式没有可解析的记录
+     */
+    @Override
+    public List<AccessLogRecord> readRecords(long skip, int limit) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 旧格式不支持查询
+     */
+    @Override
+    public long scan(long from, RecordHandler handler) {
+        return from;
+    }
+
+    @Override
+    public List<String> readEntries(long skip, int limit) {
+        List<String> entries = readAll();
+        int from = (int) Math.min(skip, entries.size());
+        return entries.subList(from, (int) Math.min(entries.size(), from + (long) limit));
+    }
+
+    @Override
+    public List<String> readLatestEntries(long skip, int limit) {
+        return readEntries(skip, limit);
+    }
+
+    @Override
+    public List<File> getFiles() {
+        return Collections.singletonList(file);
+    }
+
+    /**
+     * 读取全部记录
+     * @return 日志记录列表，最新的在前
+     */
+    private List<String> readAll() {
+        List<String> entries = new ArrayList<>();
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+        for (String key : config.getKeys(false)) {
+            String entry = config.getString(key + ".full_entry");
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+
+        // 按时间逆序排列，最新的记录在前
+        entries.sort((e1, e2) -> e2.compareTo(e1));
+        return entries;
+    }
+}
@@ -1,17 +1,29 @@
 package com.xiaoyu.papiwebapi.utils;
 
 import com.xiaoyu.papiwebapi.PapiWebAPI;
-import org.bukkit.configuration.file.YamlConfiguration;
+import com.xiaoyu.papiwebapi.metrics.Metrics;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 /**
@@ -19,28 +31,112 @@ import java.util.logging.Level;
  */
 public class LogManager {
 
+    // 日志文件后缀
+    public static final String LOG_SUFFIX = "-log.txt";
+    // 压缩后的日志文件后缀
+    public static final String COMPRESSED_LOG_SUFFIX = "-log.txt.gz";
+    // 旧版本的YAML日志文件后缀，仅用于读取
+    public static final String LEGACY_LOG_SUFFIX = "-log.yml";
+    // 写入前等待地区解析的最长时间（毫秒），从记录时间算起
+    private static final long REGION_WAIT_MILLIS = IPLocationUtil.TIMEOUT_MILLIS;
+
+    /**
+     * 每批记录写入后的持久化方式
+     */
+    public enum Durability {
+        // 不单独写入，缓冲区已满或超过 flush_interval_ms 时才写入文件
+        NONE,
+        // 每批写入文件（操作系统缓存），插件或服务器崩溃时不会丢失
+        FLUSH,
+        // 每批写入文件并同步到磁盘，断电时也不会丢失
+        FSYNC;
+
+        public static Durability fromConfig(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return FLUSH;
+            }
+        }
+    }
+
     private final PapiWebAPI plugin;
     private final File logsDir;
-    private final SimpleDateFormat dateFormat;
     private final SimpleDateFormat fileFormat;
-    private final ExecutorService logExecutor;
 
-    // 当前日志文件和配置
-    private File currentLogFile;
-    private YamlConfiguration currentLogs;
-    private String currentDateStr;
-
-    // 日志计数，用于生成唯一的键
-    private int logCounter = 0;
+    // 等待写入的记录，由日志线程取出
+    private final AccessLogQueue queue;
+    // 在日志线程中执行的其他任务，如清理过期日志
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // 最近的记录，为null时不保存
+    private final RecentLogBuffer recentLogs;
+
+    // 按条件查询访问日志
+    private final AccessLogSearch search;
+    private final int searchMaxResults;
+
+    // 为已写完的日志保存查询索引并压缩
+    private final ExecutorService compressor;
+    private final boolean compressionEnabled;
+    private final int compressionBlockSize;
+    // 已安排在后台处理的日期，避免重复处理
+    private final Set<String> finishing = ConcurrentHashMap.newKeySet();
+
+    // 批量写入设置
+    private final Durability durability;
+    private final int batchSize;
+    private final int bufferSize;
+    private final long flushIntervalNanos;
+    private final long shutdownTimeoutMillis;
+
+    // 当前日志文件和写入器
+    private AccessLogWriter currentWriter;
+    private volatile String currentDateStr;
+
+    // 写入失败后重新打开文件前等待的时间（纳秒），只由日志线程访问
+    private static final long MIN_RETRY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private long retryDelayNanos;
+    // 本批中已写入缓冲区的记录数
+    private int drainedEntries;
 
     public LogManager(PapiWebAPI plugin) {
         this.plugin = plugin;
         this.logsDir = new File(plugin.getDataFolder(), "logs");
-        this.dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
         this.fileFormat = new SimpleDateFormat("yyyy-MM-dd");
 
-        // 创建单线程执行器来处理日志，避免主线程IO操作
-        this.logExecutor = Executors.newSingleThreadExecutor();
+        // 有界队列，请求线程只写入队列，不会等待磁盘IO
+        int capacity = plugin.getConfig().getInt("logging.queue.capacity", 65536);
+        AccessLogQueue.OverflowPolicy policy = AccessLogQueue.OverflowPolicy.fromConfig(
+                plugin.getConfig().getString("logging.queue.overflow", "drop_newest"));
+        int sampleRate = plugin.getConfig().getInt("logging.queue.sample_rate", 10);
+        this.queue = new AccessLogQueue(capacity, policy, sampleRate);
+
+        this.durability = Durability.fromConfig(plugin.getConfig().getString("logging.write.durability", "flush"));
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("logging.write.batch_size", 4096));
+        this.bufferSize = Math.max(4, plugin.getConfig().getInt("logging.write.buffer_kb", 64)) * 1024;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(1, plugin.getConfig().getInt("logging.write.flush_interval_ms", 1000)));
+        this.shutdownTimeoutMillis = Math.max(0, plugin.getConfig().getLong("logging.write.shutdown_timeout_ms", 5000));
+
+        int recentCapacity = plugin.getConfig().getInt("logging.recent_buffer", 1000);
+        this.recentLogs = recentCapacity > 0 ? new RecentLogBuffer(recentCapacity) : null;
+
+        this.search = new AccessLogSearch(this, logsDir,
+                plugin.getConfig().getInt("logging.search.cache_days", 3), plugin.getLogger());
+        this.searchMaxResults = Math.max(1, plugin.getConfig().getInt("logging.search.max_results", 100));
+
+        // 低优先级的后台线程，不与请求线程和日志线程争抢CPU
+        this.compressionBlockSize = Math.max(4, plugin.getConfig().getInt("logging.compression.block_kb", 256)) * 1024;
+        this.compressionEnabled = plugin.getConfig().getBoolean("logging.compression.enabled", true);
+        this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PapiWebAPI-LogCompressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
 
         // 初始化日志目录
         if (!logsDir.exists()) {
@@ -49,54 +145,353 @@ public class LogManager {
 
         // 初始化当天的日志文件
         initCurrentLogFile();
+
+        // 专用的日志线程，避免主线程IO操作
+        this.writerThread = new Thread(this::runWriter, "PapiWebAPI-LogWriter");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        // 为之前写完的日志建立缺少的查询索引，并压缩未压缩的日志
+        for (DailyLog log : getDailyLogs()) {
+            if (log.isLegacy() || log.getDate().equals(currentDateStr)) {
+                continue;
+            }
+            if (log instanceof PlainDailyLog || !AccessLogDayIndex.indexFile(logsDir, log.getDate()).exists()) {
+                scheduleFinishLog(log.getFile(), null);
+            }
+        }
     }
 
     /**
-     * 初始化当天的日志文件
+     * 日志线程：依次执行任务，每次取出队列中的全部记录（最多 batch_size 条）作为一批写入，
+     * 再按持久化方式提交，队列为空时等待
      */
-    private void initCurrentLogFile() {
-        try {
-            // 获取当前日期字符串
-            currentDateStr = fileFormat.format(new Date());
+    private void runWriter() {
+        // 缓冲区中是否有尚未提交的记录，以及上次提交的时间
+        boolean dirty = false;
+        long lastCommit = System.nanoTime();
+
+        loadRecentLogs();
+        openSearchDay();
+
+        while (true) {
+            runTasks();
+            checkLogFileRotation();
+
+            // 日志文件无法打开时记录留在队列中，等待一段时间后重新打开
+            if (currentWriter == null) {
+                initCurrentLogFile();
+                if (currentWriter == null) {
+                    if (!running && tasks.isEmpty()) {
+                        int remaining = queue.size();
+                        Metrics.LOG_DROPPED.add(remaining);
+                        plugin.getLogger().warning("Log file unavailable, " + remaining + " entries not written");
+                        break;
+                    }
+                    backOff();
+                    continue;
+                }
+                openSearchDay();
+            }
 
-            // 创建对应的日志文件
-            currentLogFile = new File(logsDir, currentDateStr + "-log.yml");
-            if (!currentLogFile.exists()) {
-                currentLogFile.createNewFile();
+            int written;
+            drainedEntries = 0;
+            try {
+                written = queue.drain(this::writeEntry, batchSize);
+            } catch (IOException e) {
+                Metrics.LOG_WRITTEN.add(drainedEntries);
+                // 出错的记录也已从队列中取出
+                handleWriteFailure(e, 1);
+                dirty = false;
+                continue;
+            }
+            if (written > 0) {
+                dirty = true;
+                Metrics.LOG_WRITTEN.add(written);
             }
 
-            // 加载日志配置
-            currentLogs = YamlConfiguration.loadConfiguration(currentLogFile);
+            long now = System.nanoTime();
+            if (dirty && (durability != Durability.NONE || now - lastCommit >= flushIntervalNanos)) {
+                dirty = false;
+                lastCommit = now;
+                if (!commit()) {
+                    continue;
+                }
+            }
+            retryDelayNanos = 0;
 
-            // 如果日志中已有条目，找出最大的计数器值
-            if (currentLogs.getKeys(false).size() > 0) {
-                for (String key : currentLogs.getKeys(false)) {
-                    try {
-                        int id = Integer.parseInt(key);
-                        if (id > logCounter) {
-                            logCounter = id;
-                        }
-                    } catch (NumberFormatException ignored) {}
+            if (written == 0) {
+                if (!running && tasks.isEmpty()) {
+                    break;
                 }
+                long wait = dirty ? flushIntervalNanos - (now - lastCommit) : TimeUnit.MILLISECONDS.toNanos(100);
+                queue.await(Math.max(1, wait));
+            }
+        }
+        closeCurrentWriter();
+    }
+
+    /**
+     * 提交缓冲区中的记录
+     *
+     * @return 是否成功，失败时已关闭当前文件
+     */
+    private boolean commit() {
+        if (currentWriter == null) {
+            return true;
+        }
+        long start = System.nanoTime();
+        try {
+            currentWriter.flush();
+            if (durability == Durability.FSYNC) {
+                currentWriter.sync();
+            }
+            Metrics.LOG_WRITE.recordSince(start);
+            return true;
+        } catch (IOException e) {
+            handleWriteFailure(e, 0);
+            return false;
+        }
+    }
+
+    /**
+     * 写入失败时缓冲区中的记录已丢失，计入丢弃的记录数；
+     * 关闭当前文件，等待一段时间后由日志线程重新打开，打开时会去掉写了一半的记录
+     *
+     * @param failed 出错时正在写入、不在缓冲区中的记录数
+     */
+    private void handleWriteFailure(IOException e, int failed) {
+        int lost = failed + (currentWriter != null ? currentWriter.getBufferedRecords() : 0);
+        Metrics.LOG_DROPPED.add(lost);
+        plugin.getLogger().log(Level.SEVERE, "Error writing to log file, " + lost + " entries lost, reopening it", e);
+        if (currentWriter != null) {
+            currentWriter.discard();
+            currentWriter = null;
+        }
+        backOff();
+    }
+
+    /**
+     * 连续失败时等待的时间加倍，成功写入后重置；插件停用时不再等待
+     */
+    private void backOff() {
+        if (!running) {
+            return;
+        }
+        retryDelayNanos = retryDelayNanos == 0 ? MIN_RETRY_DELAY_NANOS : Math.min(retryDelayNanos * 2, MAX_RETRY_DELAY_NANOS);
+        queue.await(retryDelayNanos);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Error in log task", e);
             }
+        }
+    }
 
-            plugin.getLogger().info("Initialized log file: " + currentLogFile.getName());
+    /**
+     * 在日志线程中执行任务
+     */
+    private void submit(Runnable task) {
+        tasks.add(task);
+        queue.wakeConsumer();
+    }
+
+    private void writeEntry(AccessLogQueue.Entry entry) throws IOException {
+        if (currentWriter == null) {
+            Metrics.LOG_DROPPED.increment();
+            return;
+        }
+
+        String region = entry.pendingRegion != null ? awaitRegion(entry.time, entry.pendingRegion) : entry.region;
+
+        // 追加一行记录到缓冲区，缓冲区已满时写入文件，不会重写已有内容
+        currentWriter.append(entry.time, entry.ip, region, entry.path, entry.authSuccess, entry.response,
+                entry.status, entry.endpoint);
+        AccessLogRecord record = new AccessLogRecord(entry.time, entry.ip, region, entry.path,
+                entry.authSuccess, entry.response, entry.status, entry.endpoint);
+        search.append(record);
+        if (recentLogs != null) {
+            recentLogs.add(record);
+        }
+        drainedEntries++;
+    }
+
+    /**
+     * 等待地区解析完成，写入文件的记录不会再修改
+     * 等待的截止时间从记录时间算起，队列中积压的多条记录不会累加等待时间
+     *
+     * @param time 记录时间
+     * @param region 正在解析的地区
+     * @return 解析结果，超时或失败时为"未知地区"
+     */
+    private String awaitRegion(long time, CompletableFuture<String> region) {
+        String resolved = region.getNow(null);
+        if (resolved != null) {
+            return resolved;
+        }
+        long remaining = time + REGION_WAIT_MILLIS - System.currentTimeMillis();
+        try {
+            if (remaining > 0) {
+                resolved = region.get(remaining, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+            // 视为未知地区；不恢复中断状态，中断会关闭日志文件的通道
+        }
+        return resolved != null ? resolved : IPLocationUtil.UNKNOWN_REGION;
+    }
+
+    /**
+     * 从日志文件末尾载入启动前最近的记录
+     */
+    private void loadRecentLogs() {
+        if (recentLogs == null) {
+            return;
+        }
+        List<AccessLogRecord> records = new ArrayList<>();
+        boolean complete = true;
+        for (DailyLog log : getDailyLogs()) {
+            int remaining = recentLogs.getCapacity() - records.size();
+            // 旧格式的日志不放入缓冲区，由文件读取
+            if (remaining <= 0 || log.isLegacy()) {
+                complete = false;
+                break;
+            }
+            try {
+                records.addAll(log.readLatest(0, remaining));
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Error reading log file " + log.getFile().getName(), e);
+                complete = false;
+                break;
+            }
+        }
+        // 缓冲区已满时可能还有更早的记录
+        recentLogs.load(records, complete && records.size() < recentLogs.getCapacity());
+    }
+
+    /**
+     * 初始化当天的日志文件
+     */
+    private void initCurrentLogFile() {
+        try {
+            // 关闭前一天的写入器
+            closeCurrentWriter();
+
+            // 获取当前日期字符串
+            currentDateStr = fileFormat.format(new Date());
+
+            // 打开对应的日志文件，以追加方式写入
+            currentWriter = new AccessLogWriter(new File(logsDir, currentDateStr + LOG_SUFFIX), bufferSize);
+
+            plugin.getLogger().info("Initialized log file: " + currentWriter.getFile().getName());
 
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Error initializing log file", e);
         }
     }
 
+    private void closeCurrentWriter() {
+        if (currentWriter != null) {
+            try {
+                if (durability == Durability.FSYNC) {
+                    currentWriter.sync();
+                }
+                currentWriter.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Error closing log file", e);
+            }
+            currentWriter = null;
+        }
+    }
+
     /**
      * 检查是否需要切换到新的日志文件
      */
     private void checkLogFileRotation() {
         String dateStr = fileFormat.format(new Date());
 
-        // 如果日期改变，切换到新的日志文件
+        // 如果日期改变，切换到新的日志文件，前一天的日志已写完，保存查询索引并压缩
         if (!dateStr.equals(currentDateStr)) {
             plugin.getLogger().info("Rotating log file to new date: " + dateStr);
+            File previous = currentWriter != null ? currentWriter.getFile() : null;
+            AccessLogDayIndex finished = search.closeDay();
             initCurrentLogFile();
+            openSearchDay();
+            if (previous != null) {
+                scheduleFinishLog(previous, finished);
+            }
+        }
+    }
+
+    /**
+     * 从当天已有的记录建立查询索引，之后写入的记录由 {@link #writeEntry} 追加
+     */
+    private void openSearchDay() {
+        if (currentWriter == null) {
+            return;
+        }
+        try {
+            search.openDay(DailyLog.of(currentWriter.getFile(), true));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Error indexing log file " + currentWriter.getFile().getName(), e);
+        }
+    }
+
+    /**
+     * 在后台线程中处理已写完的日志：保存查询索引，再压缩日志文件
+     *
+     * @param file 日志文件
+     * @param index 写入时建立的查询索引，为null时在缺少索引文件时从日志中建立
+     */
+    void scheduleFinishLog(File file, AccessLogDayIndex index) {
+        String date = getLogDate(file.getName());
+        // 正在写入的日志由日志线程维护索引，不能压缩
+        if (date == null || date.equals(currentDateStr) || !finishing.add(date)) {
+            return;
+        }
+        try {
+            compressor.execute(() -> {
+                try {
+                    finishLog(file, date, index);
+                } finally {
+                    finishing.remove(date);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭
+            finishing.remove(date);
+        }
+    }
+
+    private void finishLog(File file, String date, AccessLogDayIndex index) {
+        try {
+            if (index != null || !AccessLogDayIndex.indexFile(logsDir, date).exists()) {
+                search.saveIndex(date, index);
+            }
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            // 插件停用，下次启动时重新建立
+            return;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Error saving log search index for " + date, e);
+        }
+
+        if (!compressionEnabled || !file.getName().endsWith(LOG_SUFFIX) || !file.exists()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long size = file.length();
+        try {
+            File compressed = CompressedDailyLog.compress(file, compressionBlockSize);
+            plugin.getLogger().info("Compressed log file " + file.getName() + " (" + size / 1024 + " KB -> "
+                    + compressed.length() / 1024 + " KB) in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (InterruptedIOException | ClosedByInterruptException e) {
+            // 插件停用，下次启动时重新压缩
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Error compressing log file " + file.getName(), e);
         }
     }
 
@@ -106,45 +501,39 @@ public class LogManager {
      * @param ip 访问IP地址
      * @param region 访问地区
      * @param path 访问路径
+     * @param endpoint 请求的端点或内置路由名称
+     * @param status HTTP状态码
      * @param authSuccess 鉴权是否成功
      * @param responseMessage 返回信息
      */
-    public void logAccess(String ip, String region, String path, boolean authSuccess, String responseMessage) {
-        // 异步处理日志写入
-        logExecutor.submit(() -> {
-            try {
-                // 检查是否需要轮转日志文件
-                checkLogFileRotation();
-
-                // 生成日志条目编号
-                logCounter++;
-                String logId = String.valueOf(logCounter);
-
-                // 构造日志条目
-                String timestamp = dateFormat.format(new Date());
-                String logEntry = String.format("[%s] %s %s 访问了%s %s 返回%s",
-                        timestamp, ip, region, path,
-                        authSuccess ? "鉴权正确" : "鉴权错误",
-                        responseMessage);
-
-                // 写入日志
-                currentLogs.set(logId + ".timestamp", timestamp);
-                currentLogs.set(logId + ".ip", ip);
-                currentLogs.set(logId + ".region", region);
-                currentLogs.set(logId + ".path", path);
-                currentLogs.set(logId + ".auth_success", authSuccess);
-                currentLogs.set(logId + ".response", responseMessage);
-                currentLogs.set(logId + ".full_entry", logEntry);
-
-                // 保存日志文件
-                currentLogs.save(currentLogFile);
-
-                // 打印到控制台
-                //plugin.getLogger().info(logEntry);
-            } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Error writing to log file", e);
-            }
-        });
+    public void logAccess(String ip, String region, String path, String endpoint, int status,
+                          boolean authSuccess, String responseMessage) {
+        logAccess(System.currentTimeMillis(), ip, region, null, path, endpoint, status, authSuccess, responseMessage);
+    }
+
+    /**
+     * 记录API访问日志，立即写入队列以保持日志按时间排列
+     * 地区尚未解析完成时由日志线程在写入前等待，最多等待到记录时间之后 {@link #REGION_WAIT_MILLIS} 毫秒
+     *
+     * @param ip 访问IP地址
+     * @param region 正在解析的访问地区
+     * @param path 访问路径
+     * @param endpoint 请求的端点或内置路由名称
+     * @param status HTTP状态码
+     * @param authSuccess 鉴权是否成功
+     * @param responseMessage 返回信息
+     */
+    public void logAccess(String ip, CompletableFuture<String> region, String path, String endpoint, int status,
+                          boolean authSuccess, String responseMessage) {
+        String resolved = region.getNow(null);
+        logAccess(System.currentTimeMillis(), ip, resolved, resolved == null ? region : null, path, endpoint,
+                status, authSuccess, responseMessage);
+    }
+
+    private void logAccess(long time, String ip, String region, CompletableFuture<String> pendingRegion, String path,
+                           String endpoint, int status, boolean authSuccess, String responseMessage) {
+        // 只写入队列，由日志线程异步写入文件；队列已满时按配置等待或丢弃
+        queue.offer(time, ip, region, pendingRegion, path, authSuccess, responseMessage, status, endpoint);
     }
 
     /**
@@ -153,15 +542,82 @@ public class LogManager {
      */
     public List<File> getLogFiles() {
         List<File> files = new ArrayList<>();
-        File[] logFiles = logsDir.listFiles((dir, name) -> name.endsWith("-log.yml"));
+        for (DailyLog log : getDailyLogs()) {
+            files.add(log.getFile());
+        }
+        return files;
+    }
+
+    /**
+     * 获取所有日志
+     * @return 日志列表，按日期排序（最新的在前）；同一天的新格式日志排在旧格式之前，
+     *         压缩完成后残留的文本日志会被忽略
+     */
+    public List<DailyLog> getDailyLogs() {
+        List<DailyLog> logs = new ArrayList<>();
+        File[] logFiles = logsDir.listFiles((dir, name) -> getLogDate(name) != null);
+        if (logFiles == null) {
+            return logs;
+        }
 
-        if (logFiles != null) {
-            // 按文件名（日期）排序，最新的在前
-            java.util.Arrays.sort(logFiles, (f1, f2) -> f2.getName().compareTo(f1.getName()));
-            java.util.Collections.addAll(files, logFiles);
+        Set<String> compressedDates = new HashSet<>();
+        for (File file : logFiles) {
+            if (file.getName().endsWith(COMPRESSED_LOG_SUFFIX)) {
+                compressedDates.add(getLogDate(file.getName()));
+            }
         }
 
-        return files;
+        String current = currentDateStr;
+        for (File file : logFiles) {
+            String date = getLogDate(file.getName());
+            if (file.getName().endsWith(LOG_SUFFIX) && compressedDates.contains(date)) {
+                continue;
+            }
+            logs.add(DailyLog.of(file, date.equals(current)));
+        }
+
+        logs.sort((l1, l2) -> {
+            int byDate = l2.getDate().compareTo(l1.getDate());
+            if (byDate != 0) {
+                return byDate;
+            }
+            return Boolean.compare(l1.isLegacy(), l2.isLegacy());
+        });
+        return logs;
+    }
+
+    /**
+     * 获取指定日期的日志，新格式在前
+     */
+    List<DailyLog> getDailyLogs(String date) {
+        List<DailyLog> logs = new ArrayList<>(2);
+        File compressed = new File(logsDir, date + COMPRESSED_LOG_SUFFIX);
+        File file = new File(logsDir, date + LOG_SUFFIX);
+        if (compressed.exists()) {
+            logs.add(DailyLog.of(compressed, false));
+        } else if (file.exists()) {
+            logs.add(DailyLog.of(file, date.equals(currentDateStr)));
+        }
+
+        File legacyFile = new File(logsDir, date + LEGACY_LOG_SUFFIX);
+        if (legacyFile.exists()) {
+            logs.add(DailyLog.of(legacyFile, false));
+        }
+        return logs;
+    }
+
+    /**
+     * 从日志文件名中提取日期
+     * @param fileName 日志文件名
+     * @return 日期字符串（格式：yyyy-MM-dd），不是日志文件时返回null
+     */
+    public static String getLogDate(String fileName) {
+        for (String suffix : new String[]{LOG_SUFFIX, COMPRESSED_LOG_SUFFIX, LEGACY_LOG_SUFFIX}) {
+            if (fileName.endsWith(suffix)) {
+                return fileName.substring(0, fileName.length() - suffix.length());
+            }
+        }
+        return null;
     }
 
     /**
@@ -170,8 +626,41 @@ public class LogManager {
      * @return 日志文件，如果不存在则返回null
      */
     public File getLogFile(String date) {
-        File file = new File(logsDir, date + "-log.yml");
-        return file.exists() ? file : null;
+        List<DailyLog> logs = getDailyLogs(date);
+        return logs.isEmpty() ? null : logs.get(0).getFile();
+    }
+
+    /**
+     * 获取指定日期的全部日志记录
+     * @param date 日期字符串（格式：yyyy-MM-dd）
+     * @return 日志记录列表，最新的在前
+     */
+    public List<String> getLogEntries(String date) {
+        return getLogEntries(date, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 获取指定日期的一页日志记录，只读取这一页（压缩的日志只解压这一页所在的块）
+     * @param date 日期字符串（格式：yyyy-MM-dd）
+     * @param offset 跳过最新的记录数
+     * @param limit 最多返回的记录数
+     * @return 日志记录列表，最新的在前
+     */
+    public List<String> getLogEntries(String date, long offset, int limit) {
+        return readEntries(getDailyLogs(date), offset, limit, false);
+    }
+
+    /**
+     * 获取指定日期的日志记录数
+     * @param date 日期字符串（格式：yyyy-MM-dd）
+     * @return 记录数
+     */
+    public long getLogEntryCount(String date) {
+        long count = 0;
+        for (DailyLog log : getDailyLogs(date)) {
+            count += countEntries(log);
+        }
+        return count;
     }
 
     /**
@@ -180,45 +669,141 @@ public class LogManager {
      * @return 日志记录列表
      */
     public List<String> getRecentLogs(int count) {
-        List<String> result = new ArrayList<>();
-        List<File> logFiles = getLogFiles();
+        return getRecentLogs(0, count);
+    }
 
-        int remaining = count;
+    /**
+     * 获取最近的一页日志记录（所有日期）
+     * @param offset 跳过最新的记录数
+     * @param limit 最多返回的记录数
+     * @return 日志记录列表，最新的在前
+     */
+    public List<String> getRecentLogs(long offset, int limit) {
+        if (recentLogs != null && recentLogs.covers(offset, limit)) {
+            List<String> result = new ArrayList<>();
+            for (AccessLogRecord record : recentLogs.get(offset, limit)) {
+                result.add(record.toFullEntry());
+            }
+            return result;
+        }
 
-        for (File logFile : logFiles) {
-            if (remaining <= 0) break;
+        // 从最新的文件末尾向前读取，取到足够的记录后停止
+        return readEntries(getDailyLogs(), offset, limit, true);
+    }
 
-            YamlConfiguration config = YamlConfiguration.loadConfiguration(logFile);
-            List<String> entries = new ArrayList<>();
+    /**
+     * 获取最近的日志记录数（所有日期）
+     * @param max 最多统计的记录数，达到后不再读取更早的日志
+     * @return 记录数
+     */
+    public long getRecentLogCount(long max) {
+        if (recentLogs != null && recentLogs.covers(0, (int) Math.min(max, Integer.MAX_VALUE))) {
+            return Math.min(recentLogs.size(), max);
+        }
 
-            for (String key : config.getKeys(false)) {
-                String entry = config.getString(key + ".full_entry");
-                if (entry != null) {
-                    entries.add(entry);
-                }
+        long count = 0;
+        for (DailyLog log : getDailyLogs()) {
+            if (count >= max) {
+                break;
             }
+            count += countEntries(log);
+        }
+        return Math.min(count, max);
+    }
 
-            // 按ID逆序排列，最新的记录在前
-            entries.sort((e1, e2) -> e2.compareTo(e1));
-
-            // 添加到结果列表
-            for (String entry : entries) {
-                if (remaining <= 0) break;
-                result.add(entry);
-                remaining--;
+    /**
+     * 依次从多个日志中读取一页记录
+     * @param logs 日志，最新的在前
+     * @param offset 跳过最新的记录数
+     * @param limit 最多返回的记录数
+     * @param latest 是否从文件末尾向前读取（不需要索引）
+     * @return 日志记录列表，最新的在前
+     */
+    private List<String> readEntries(List<DailyLog> logs, long offset, int limit, boolean latest) {
+        List<String> result = new ArrayList<>();
+        for (DailyLog log : logs) {
+            if (result.size() >= limit) {
+                break;
             }
+            long count = countEntries(log);
+            if (offset >= count) {
+                offset -= count;
+                continue;
+            }
+            try {
+                result.addAll(latest
+                        ? log.readLatestEntries(offset, limit - result.size())
+                        : log.readEntries(offset, limit - result.size()));
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Error reading log file " + log.getFile().getName(), e);
+            }
+            offset = 0;
         }
-
         return result;
     }
 
+    /**
+     * 单个日志中的记录数，出错时视为0
+     */
+    private long countEntries(DailyLog log) {
+        try {
+            return log.count();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Error reading log file " + log.getFile().getName(), e);
+            return 0;
+        }
+    }
+
+    /**
+     * 按条件查询访问日志，会读取磁盘，不应在主线程调用
+     *
+     * @param query 查询条件
+     * @return 查询结果
+     */
+    public AccessLogSearch.Result search(AccessLogQuery query) {
+        return search.search(query);
+    }
+
+    /**
+     * 一次查询最多返回的记录数
+     */
+    public int getSearchMaxResults() {
+        return searchMaxResults;
+    }
+
+    /**
+     * 当前正在写入的日志日期
+     */
+    String getCurrentDate() {
+        return currentDateStr;
+    }
+
     /**
      * 关闭日志管理器
      */
     public void shutdown() {
-        // 关闭执行器
-        logExecutor.shutdown();
+        // 日志线程写完已在队列中的记录后关闭当前文件并退出
+        running = false;
+        queue.close();
+        compressor.shutdownNow();
+
+        try {
+            writerThread.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            plugin.getLogger().warning("Log writer did not finish in time, " + queue.size() + " entries not written");
+        }
     }
+
+    /**
+     * 获取访问日志队列
+     */
+    public AccessLogQueue getQueue() {
+        return queue;
+    }
+
     /**
      * 清理过期的日志文件
      */
@@ -228,23 +813,22 @@ public class LogManager {
             return; // 不清理
         }
 
-        logExecutor.submit(() -> {
+        submit(() -> {
             try {
-                List<File> logFiles = getLogFiles();
+                List<DailyLog> logs = getDailyLogs();
 
                 Calendar cal = Calendar.getInstance();
                 cal.add(Calendar.DAY_OF_MONTH, -retentionDays);
                 Date cutoffDate = cal.getTime();
                 String cutoffDateStr = fileFormat.format(cutoffDate);
 
-                for (File file : logFiles) {
-                    String fileName = file.getName();
-                    if (fileName.endsWith("-log.yml")) {
-                        String dateStr = fileName.substring(0, fileName.lastIndexOf("-log.yml"));
-
-                        // 如果日志文件日期早于截止日期，则删除
+                for (DailyLog log : logs) {
+                    String fileName = log.getFile().getName();
+                    String dateStr = log.getDate();
+                    if (dateStr != null) {
+                        // 如果日志文件日期早于截止日期，则删除（包括索引等附属文件）
                         if (dateStr.compareTo(cutoffDateStr) < 0) {
-                            if (file.delete()) {
+                            if (log.delete()) {
                                 plugin.getLogger().info("Deleted old log file: " + fileName);
                             } else {
                                 plugin.getLogger().warning("Failed to delete old log file: " + fileName);
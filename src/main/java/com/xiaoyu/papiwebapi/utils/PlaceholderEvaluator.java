@@ -0,0 +1,20 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import org.bukkit.OfflinePlayer;
+
+/**
+ * 计算占位符值的方式
+ * 插件运行时使用PlaceholderAPI，基准测试中替换为模拟实现
+ */
+@FunctionalInterface
+public interface PlaceholderEvaluator {
+
+    /**
+     * 计算某个玩家的占位符值
+     *
+     * @param player 玩家
+     * @param placeholder 已格式化的占位符，如 %player_level%
+     * @return 占位符值
+     */
+    String evaluate(OfflinePlayer player, String placeholder);
+}
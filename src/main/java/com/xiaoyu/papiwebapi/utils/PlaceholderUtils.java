@@ -1,5 +1,9 @@
 package com.xiaoyu.papiwebapi.utils;
 
+import com.xiaoyu.papiwebapi.leaderboard.SortEntry;
+import com.xiaoyu.papiwebapi.leaderboard.SortKey;
+import com.xiaoyu.papiwebapi.metrics.Metrics;
+import com.xiaoyu.papiwebapi.snapshot.PlayerValue;
 import me.clip.placeholderapi.PlaceholderAPI;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -7,82 +11,158 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
 
 public class PlaceholderUtils {
 
+    // 找不到玩家时返回的值
+    public static final String PLAYER_NOT_FOUND = "Player not found";
+
+    // 玩家名称索引，未设置时遍历所有离线玩家
+    private static volatile PlayerNameIndex playerNameIndex;
+
+    // 占位符的计算方式，使用lambda而不是方法引用，未调用时不会加载PlaceholderAPI
+    private static volatile PlaceholderEvaluator evaluator =
+            (player, placeholder) -> PlaceholderAPI.setPlaceholders(player, placeholder);
+
     public static String getPlaceholderValue(String placeholder, String playerName) {
         OfflinePlayer player = getPlayerByName(playerName);
         if (player == null) {
-            return "Player not found";
+            return PLAYER_NOT_FOUND;
         }
 
         // 确保占位符格式正确
         String formattedPlaceholder = formatPlaceholder(placeholder);
 
-        return PlaceholderAPI.setPlaceholders(player, formattedPlaceholder);
+        return evaluate(player, formattedPlaceholder);
+    }
+
+    /**
+     * 计算某个玩家的占位符值
+     * 许多占位符扩展不是线程安全的，应在主线程中调用
+     */
+    public static String setPlaceholders(OfflinePlayer player, String placeholder) {
+        return evaluate(player, formatPlaceholder(placeholder));
     }
 
-    public static List<String> getPlayersSorted(String placeholder, String sortOrder, int limit) {
+    /**
+     * 计算已格式化的占位符，并记录耗时
+     */
+    private static String evaluate(OfflinePlayer player, String formattedPlaceholder) {
+        long start = System.nanoTime();
+        try {
+            return evaluator.evaluate(player, formattedPlaceholder);
+        } finally {
+            Metrics.PLACEHOLDER_EVALUATION.recordSince(start);
+        }
+    }
+
+    public static List<PlayerValue> getPlayersSorted(String placeholder, String sortOrder, int limit) {
         List<OfflinePlayer> players = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
 
         // 获取所有在线和离线玩家
         for (Player player : Bukkit.getOnlinePlayers()) {
-            players.add(player);
+            if (seen.add(player.getUniqueId())) {
+                players.add(player);
+            }
         }
 
         for (OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
-            if (!players.contains(offlinePlayer)) {
+            if (seen.add(offlinePlayer.getUniqueId())) {
                 players.add(offlinePlayer);
             }
         }
 
         // 确保占位符格式正确
         String formattedPlaceholder = formatPlaceholder(placeholder);
+        SortKey.NonNumericPolicy policy = SortKey.getNonNumericPolicy();
+        boolean byValue = "htl".equalsIgnoreCase(sortOrder) || "lth".equalsIgnoreCase(sortOrder);
+
+        // 获取每个玩家的占位符值，排序键只解析一次
+        List<SortEntry> entries = new ArrayList<>(players.size());
+        for (OfflinePlayer player : players) {
+            if (player.getName() == null) {
+                continue;
+            }
+            SortEntry entry = SortEntry.of(player.getUniqueId(), player.getName(),
+                    evaluate(player, formattedPlaceholder), policy);
+            if (byValue && policy == SortKey.NonNumericPolicy.EXCLUDE && !entry.isNumeric()) {
+                continue;
+            }
+            entries.add(entry);
+        }
+        return sortEntries(entries, sortOrder, limit, policy);
+    }
+
+    /**
+     * 对已计算出的值排序，不计算任何占位符
+     *
+     * @param values 玩家的值
+     * @param sortOrder 排序方式（htl, lth, atz, zta）
+     * @param limit 返回的数量，0表示全部
+     * @return 排序后的值
+     */
+    public static List<PlayerValue> sortValues(List<PlayerValue> values, String sortOrder, int limit) {
+        SortKey.NonNumericPolicy policy = SortKey.getNonNumericPolicy();
+        boolean byValue = "htl".equalsIgnoreCase(sortOrder) || "lth".equalsIgnoreCase(sortOrder);
+
+        List<SortEntry> entries = new ArrayList<>(values.size());
+        for (PlayerValue value : values) {
+            SortEntry entry = SortEntry.of(value.getUuid(), value.getName(), value.getValue(), policy);
+            if (byValue && policy == SortKey.NonNumericPolicy.EXCLUDE && !entry.isNumeric()) {
+                continue;
+            }
+            entries.add(entry);
+        }
+        return sortEntries(entries, sortOrder, limit, policy);
+    }
+
+    private static List<PlayerValue> sortEntries(List<SortEntry> entries, String sortOrder, int limit,
+                                                 SortKey.NonNumericPolicy policy) {
+        boolean byValue = "htl".equalsIgnoreCase(sortOrder) || "lth".equalsIgnoreCase(sortOrder);
+
+        // 未知的排序方式保持原有顺序
+        boolean known = byValue || "atz".equalsIgnoreCase(sortOrder) || "zta".equalsIgnoreCase(sortOrder);
+        List<SortEntry> sorted;
+        if (!known) {
+            sorted = limit > 0 && limit < entries.size() ? entries.subList(0, limit) : entries;
+        } else if (limit > 0 && limit < entries.size()) {
+            sorted = selectTop(entries, SortEntry.comparator(sortOrder, policy), limit);
+        } else {
+            sorted = entries;
+            sorted.sort(SortEntry.comparator(sortOrder, policy));
+        }
 
-        // 获取每个玩家的占位符值并按要求排序
-        List<PlayerPlaceholderPair> pairs = players.stream()
-                .map(player -> new PlayerPlaceholderPair(player,
-                        PlaceholderAPI.setPlaceholders(player, formattedPlaceholder)))
-                .collect(Collectors.toList());
-
-        // 根据排序方式进行排序
-        if ("htl".equalsIgnoreCase(sortOrder)) {
-            // 从高到低排序 (尝试数值排序，失败则按字符串排序)
-            pairs.sort((p1, p2) -> {
-                try {
-                    double v1 = Double.parseDouble(p1.getValue());
-                    double v2 = Double.parseDouble(p2.getValue());
-                    return Double.compare(v2, v1);
-                } catch (NumberFormatException e) {
-                    return p2.getValue().compareTo(p1.getValue());
-                }
-            });
-        } else if ("lth".equalsIgnoreCase(sortOrder)) {
-            // 从低到高排序
-            pairs.sort((p1, p2) -> {
-                try {
-                    double v1 = Double.parseDouble(p1.getValue());
-                    double v2 = Double.parseDouble(p2.getValue());
-                    return Double.compare(v1, v2);
-                } catch (NumberFormatException e) {
-                    return p1.getValue().compareTo(p2.getValue());
-                }
-            });
-        } else if ("atz".equalsIgnoreCase(sortOrder)) {
-            // 从A到Z排序
-            pairs.sort(Comparator.comparing(p -> p.getPlayer().getName(), String.CASE_INSENSITIVE_ORDER));
-        } else if ("zta".equalsIgnoreCase(sortOrder)) {
-            // 从Z到A排序
-            pairs.sort((p1, p2) -> p2.getPlayer().getName().compareToIgnoreCase(p1.getPlayer().getName()));
+        List<PlayerValue> result = new ArrayList<>(sorted.size());
+        for (SortEntry entry : sorted) {
+            result.add(entry.toPlayerValue());
+        }
+        return result;
+    }
+
+    /**
+     * 使用容量为limit的堆选出前limit个元素，复杂度 O(n log limit)
+     */
+    private static List<SortEntry> selectTop(List<SortEntry> entries, Comparator<SortEntry> order, int limit) {
+        // 堆顶是当前保留的元素中排名最靠后的一个
+        PriorityQueue<SortEntry> heap = new PriorityQueue<>(limit + 1, order.reversed());
+        for (SortEntry entry : entries) {
+            if (heap.size() < limit) {
+                heap.add(entry);
+            } else if (order.compare(entry, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(entry);
+            }
         }
 
-        // 应用限制并格式化结果
-        return pairs.stream()
-                .limit(limit > 0 ? limit : pairs.size())
-                .map(pair -> pair.getPlayer().getName() + ": " + pair.getValue())
-                .collect(Collectors.toList());
+        List<SortEntry> top = new ArrayList<>(heap);
+        top.sort(order);
+        return top;
     }
 
     // 处理占位符格式的辅助方法
@@ -104,31 +184,46 @@ public class PlaceholderUtils {
             return player;
         }
 
-        // 再查找离线玩家
+        // 再通过名称索引查找离线玩家
+        PlayerNameIndex index = playerNameIndex;
+        if (index != null) {
+            if (index.isKnownMissing(name)) {
+                return null;
+            }
+            UUID uuid = index.find(name);
+            if (uuid != null) {
+                return Bukkit.getOfflinePlayer(uuid);
+            }
+            if (index.isReady()) {
+                index.markMissing(name);
+                return null;
+            }
+        }
+
+        // 索引尚未构建完成时遍历离线玩家
         for (OfflinePlayer offlinePlayer : Bukkit.getOfflinePlayers()) {
             if (offlinePlayer.getName() != null && offlinePlayer.getName().equalsIgnoreCase(name)) {
                 return offlinePlayer;
             }
         }
 
+        if (index != null) {
+            index.markMissing(name);
+        }
         return null;
     }
 
-    private static class PlayerPlaceholderPair {
-        private final OfflinePlayer player;
-        private final String value;
-
-        public PlayerPlaceholderPair(OfflinePlayer player, String value) {
-            this.player = player;
-            this.value = value;
-        }
-
-        public OfflinePlayer getPlayer() {
-            return player;
-        }
+    /**
+     * 设置玩家名称索引，用于按名称查找离线玩家
+     */
+    public static void setPlayerNameIndex(PlayerNameIndex index) {
+        playerNameIndex = index;
+    }
 
-        public String getValue() {
-            return value;
-        }
+    /**
+     * 设置占位符的计算方式，用于在没有PlaceholderAPI的环境中测试
+     */
+    public static void setEvaluator(PlaceholderEvaluator placeholderEvaluator) {
+        evaluator = placeholderEvaluator;
     }
 }
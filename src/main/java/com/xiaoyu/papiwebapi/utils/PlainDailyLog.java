@@ -0,0 +1,101 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 未压缩的文本日志，通过偏移量索引按页读取
+ */
+public class PlainDailyLog extends DailyLog {
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    // 当天的日志正在写入，索引由日志线程维护
+    private final boolean active;
+
+    PlainDailyLog(File file, String date, boolean active) {
+        super(file, date);
+        this.active = active;
+    }
+
+    @Override
+    public long count() throws IOException {
+        return ensureIndex();
+    }
+
+    @Override
+    public List<AccessLogRecord> readRecords(long skip, int limit) throws IOException {
+        if (ensureIndex() <= 0) {
+            return Collections.emptyList();
+        }
+        return AccessLogIndex.readPage(file, skip, limit);
+    }
+
+    /**
+     * 从文件末尾向前读取，不需要索引
+     */
+    @Override
+    public List<AccessLogRecord> readLatest(long skip, int limit) throws IOException {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        return AccessLogTailReader.readLast(file, skip, limit);
+    }
+
+    /**
+     * 只读取索引中已有的记录，不会读到正在写入的部分记录
+     */
+    @Override
+    public long scan(long from, RecordHandler handler) throws IOException {
+        long count = ensureIndex();
+        long offset = from < count ? AccessLogIndex.offset(file, from) : -1;
+        if (offset < 0) {
+            return Math.max(from, count);
+        }
+
+        long number = from;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     Channels.newInputStream(channel.position(offset)), StandardCharsets.UTF_8), SCAN_BUFFER_SIZE)) {
+            String line;
+            while (number < count && (line = reader.readLine()) != null) {
+                handler.accept(number++, AccessLogRecord.parse(line));
+            }
+        }
+        return number;
+    }
+
+    @Override
+    public List<File> getFiles() {
+        return Arrays.asList(file, AccessLogIndex.indexFile(file), AccessLogDayIndex.indexFile(file.getParentFile(), date));
+    }
+
+    /**
+     * 确保索引可用
+     * 当天的索引由日志线程维护；之前的文件在索引缺失或落后时补全，正常情况下只需检查最后一条记录
+     *
+     * @return 索引中的记录数
+     */
+    private long ensureIndex() throws IOException {
+        // 文件可能刚被压缩后删除
+        if (!file.exists()) {
+            return 0;
+        }
+        if (active) {
+            long count = AccessLogIndex.count(file);
+            if (count >= 0) {
+                return count;
+            }
+        }
+        return AccessLogIndex.repair(file);
+    }
+}
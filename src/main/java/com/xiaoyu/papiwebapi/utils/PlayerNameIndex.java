@@ -0,0 +1,105 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 玩家名称到UUID的索引（不区分大小写）
+ * 启动时构建一次，之后随玩家加入和改名更新，查询不再需要遍历所有离线玩家；
+ * 查询不到的名称会在一段时间内被记住，重复查询直接返回
+ */
+public class PlayerNameIndex {
+
+    // 未找到的名称缓存时间
+    private static final long NEGATIVE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // 未找到的名称缓存最大条目数
+    private static final int MAX_NEGATIVE_ENTRIES = 10000;
+
+    private final Map<String, UUID> uuidByName = new ConcurrentHashMap<>();
+    private final Map<UUID, String> nameByUuid = new ConcurrentHashMap<>();
+    private final Map<String, Long> missingNames = new ConcurrentHashMap<>();
+
+    // 是否已经加载了所有离线玩家
+    private volatile boolean ready;
+
+    /**
+     * 记录玩家当前的名称，玩家改名时会移除旧名称
+     *
+     * @param uuid 玩家UUID
+     * @param name 玩家名称
+     */
+    public void put(UUID uuid, String name) {
+        if (uuid == null || name == null) {
+            return;
+        }
+        String key = key(name);
+        String previous = nameByUuid.put(uuid, name);
+        if (previous != null && !key(previous).equals(key)) {
+            uuidByName.remove(key(previous), uuid);
+        }
+        uuidByName.put(key, uuid);
+        missingNames.remove(key);
+    }
+
+    /**
+     * 记录玩家名称，玩家已经在索引中时不覆盖
+     * 用于启动时的批量加载，避免覆盖加载期间由加入事件写入的新名称
+     */
+    public void putIfAbsent(UUID uuid, String name) {
+        if (uuid == null || name == null || nameByUuid.containsKey(uuid)) {
+            return;
+        }
+        put(uuid, name);
+    }
+
+    /**
+     * 按名称查找玩家UUID
+     *
+     * @param name 玩家名称（不区分大小写）
+     * @return 玩家UUID，不存在时返回null
+     */
+    public UUID find(String name) {
+        return uuidByName.get(key(name));
+    }
+
+    /**
+     * 记住查询不到的名称
+     */
+    public void markMissing(String name) {
+        if (missingNames.size() >= MAX_NEGATIVE_ENTRIES) {
+            long now = System.currentTimeMillis();
+            missingNames.values().removeIf(expiry -> expiry < now);
+            if (missingNames.size() >= MAX_NEGATIVE_ENTRIES) {
+                missingNames.clear();
+            }
+        }
+        missingNames.put(key(name), System.currentTimeMillis() + NEGATIVE_TTL_MILLIS);
+    }
+
+    /**
+     * 判断名称最近是否查询过且不存在
+     */
+    public boolean isKnownMissing(String name) {
+        Long expiry = missingNames.get(key(name));
+        return expiry != null && expiry >= System.currentTimeMillis();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public int size() {
+        return nameByUuid.size();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,99 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存中最近的访问日志记录
+ * 由日志线程写入，查看最近的日志时不需要读取文件
+ */
+public class RecentLogBuffer {
+
+    private final AccessLogRecord[] records;
+    // 下一条记录的写入位置
+    private int next;
+    private int size;
+    // 是否已从日志文件载入启动前的记录
+    private volatile boolean loaded;
+    // 缓冲区是否包含全部日志记录（未写满且没有更早的日志）
+    private boolean complete;
+
+    /**
+     * @param capacity 最多保存的记录数
+     */
+    public RecentLogBuffer(int capacity) {
+        this.records = new AccessLogRecord[Math.max(1, capacity)];
+    }
+
+    /**
+     * 追加一条最新的记录，已满时覆盖最早的记录
+     */
+    public synchronized void add(AccessLogRecord record) {
+        records[next] = record;
+        next = (next + 1) % records.length;
+        if (size < records.length) {
+            size++;
+        } else {
+            complete = false;
+        }
+    }
+
+    /**
+     * 载入启动前的记录
+     *
+     * @param newestFirst 日志文件中最近的记录，最新的在前
+     * @param complete 是否已没有更早的记录
+     */
+    synchronized void load(List<AccessLogRecord> newestFirst, boolean complete) {
+        // 载入之前已写入的记录更新，放在后面
+        List<AccessLogRecord> current = get(0, size);
+        next = 0;
+        size = 0;
+        int count = Math.min(newestFirst.size(), records.length - current.size());
+        for (int i = count - 1; i >= 0; i--) {
+            add(newestFirst.get(i));
+        }
+        for (int i = current.size() - 1; i >= 0; i--) {
+            add(current.get(i));
+        }
+        this.complete = complete && count == newestFirst.size();
+        this.loaded = true;
+    }
+
+    /**
+     * 获取一段记录
+     *
+     * @param offset 跳过最新的记录数
+     * @param limit 最多返回的记录数
+     * @return 日志记录，最新的在前
+     */
+    public synchronized List<AccessLogRecord> get(long offset, int limit) {
+        List<AccessLogRecord> result = new ArrayList<>();
+        for (long i = offset; i < size && result.size() < limit; i++) {
+            result.add(records[(int) ((next - 1 - i + records.length) % records.length)]);
+        }
+        return result;
+    }
+
+    /**
+     * 缓冲区能否提供指定范围的记录
+     */
+    public synchronized boolean covers(long offset, int limit) {
+        return loaded && (complete || offset + limit <= size);
+    }
+
+    /**
+     * 缓冲区是否包含全部日志记录
+     */
+    public synchronized boolean isComplete() {
+        return loaded && complete;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return records.length;
+    }
+}
@@ -0,0 +1,185 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+/**
+ * 不分配对象的IP地址解析工具
+ */
+public final class IPAddresses {
+
+    private IPAddresses() {
+    }
+
+    /**
+     * 解析IPv4地址
+     *
+     * @param s 字符串
+     * @param from 起始位置（包含）
+     * @param to 结束位置（不包含）
+     * @return 无符号32位地址值，格式错误时返回-1
+     */
+    public static long parseIPv4(CharSequence s, int from, int to) {
+        long address = 0;
+        int octets = 0;
+        int i = from;
+
+        while (i <= to) {
+            int value = 0;
+            int digits = 0;
+            while (i < to) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                if (++digits > 3) {
+                    return -1;
+                }
+                i++;
+            }
+            if (digits == 0 || value > 255) {
+                return -1;
+            }
+
+            address = (address << 8) | value;
+            octets++;
+
+            if (i == to) {
+                break;
+            }
+            if (s.charAt(i) != '.' || octets == 4) {
+                return -1;
+            }
+            i++;
+        }
+
+        return octets == 4 ? address : -1;
+    }
+
+    /**
+     * 解析IPv6地址，支持"::"缩写、内嵌IPv4和区域标识
+     *
+     * @param s 字符串
+     * @param out 长度至少为2的数组，解析成功时写入高64位和低64位
+     * @return 是否解析成功
+     */
+    public static boolean parseIPv6(CharSequence s, long[] out) {
+        int end = s.length();
+        for (int i = 0; i < end; i++) {
+            if (s.charAt(i) == '%') {
+                end = i;
+                break;
+            }
+        }
+
+        long headHi = 0, headLo = 0, tailHi = 0, tailLo = 0;
+        int head = 0, tail = 0;
+        boolean compressed = false;
+        int i = 0;
+
+        if (end >= 2 && s.charAt(0) == ':' && s.charAt(1) == ':') {
+            compressed = true;
+            i = 2;
+        } else if (end >= 1 && s.charAt(0) == ':') {
+            return false;
+        }
+
+        while (i < end) {
+            int start = i;
+            int value = 0;
+            int digits = 0;
+            while (i < end) {
+                int digit = Character.digit(s.charAt(i), 16);
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                if (++digits > 4) {
+                    return false;
+                }
+                i++;
+            }
+
+            // 内嵌IPv4地址，占用最后两个分组
+            if (i < end && s.charAt(i) == '.') {
+                long v4 = parseIPv4(s, start, end);
+                if (v4 < 0) {
+                    return false;
+                }
+                for (int k = 0; k < 2; k++) {
+                    int group = (int) (k == 0 ? v4 >>> 16 : v4 & 0xFFFF);
+                    if (compressed) {
+                        tailHi = (tailHi << 16) | (tailLo >>> 48);
+                        tailLo = (tailLo << 16) | group;
+                        tail++;
+                    } else {
+                        headHi = (headHi << 16) | (headLo >>> 48);
+                        headLo = (headLo << 16) | group;
+                        head++;
+                    }
+                }
+                break;
+            }
+
+            if (digits == 0) {
+                return false;
+            }
+            if (compressed) {
+                tailHi = (tailHi << 16) | (tailLo >>> 48);
+                tailLo = (tailLo << 16) | value;
+                tail++;
+            } else {
+                headHi = (headHi << 16) | (headLo >>> 48);
+                headLo = (headLo << 16) | value;
+                head++;
+            }
+            if (head + tail > 8) {
+                return false;
+            }
+
+            if (i == end) {
+                break;
+            }
+            if (s.charAt(i) != ':') {
+                return false;
+            }
+            i++;
+            if (i < end && s.charAt(i) == ':') {
+                if (compressed) {
+                    return false;
+                }
+                compressed = true;
+                i++;
+            } else if (i == end) {
+                return false;
+            }
+        }
+
+        int groups = head + tail;
+        if (compressed ? groups > 7 : groups != 8) {
+            return false;
+        }
+
+        // 头部分组左移到高位，尾部分组保持在低位
+        int shift = 16 * (8 - head);
+        if (shift >= 128) {
+            headHi = 0;
+            headLo = 0;
+        } else if (shift >= 64) {
+            headHi = headLo << (shift - 64);
+            headLo = 0;
+        } else if (shift > 0) {
+            headHi = (headHi << shift) | (headLo >>> (64 - shift));
+            headLo = headLo << shift;
+        }
+
+        out[0] = headHi | tailHi;
+        out[1] = headLo | tailLo;
+        return true;
+    }
+
+    /**
+     * 判断IPv6地址是否为IPv4映射地址（::ffff:a.b.c.d）
+     */
+    public static boolean isIPv4Mapped(long hi, long lo) {
+        return hi == 0 && (lo >>> 32) == 0xFFFFL;
+    }
+}
@@ -0,0 +1,393 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 将CSV格式的IP区间文件转换为 {@link OfflineIPDatabase} 使用的二进制格式
+ *
+ * 支持的CSV行格式（以#开头的行为注释）：
+ * 起始IP,结束IP,地区
+ * CIDR,地区
+ *
+ * 区间可以重叠或嵌套，重叠的部分使用范围最小的区间的地区，范围相同时使用后出现的行
+ *
+ * 命令行用法：java -cp PapiWebAPI.jar com.xiaoyu.papiwebapi.utils.geo.IPDatabaseConverter input.csv output.db
+ */
+public class IPDatabaseConverter {
+
+    private final List<V4Range> v4Ranges = new ArrayList<>();
+    private final List<V6Range> v6Ranges = new ArrayList<>();
+    private final List<String> regions = new ArrayList<>();
+    private final Map<String, Integer> regionIds = new HashMap<>();
+
+    /**
+     * 转换CSV文件
+     *
+     * @param csvFile CSV文件
+     * @param output 输出的数据库文件
+     * @return 写入的区间数
+     * @throws IOException 读取或写入失败
+     */
+    public static int convert(File csvFile, File output) throws IOException {
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+        try (BufferedReader reader = Files.newBufferedReader(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    converter.addLine(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid line " + lineNumber + " in " + csvFile.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+        return converter.write(output);
+    }
+
+    /**
+     * 解析一行CSV
+     */
+    public void addLine(String line) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+
+        int first = line.indexOf(',');
+        if (first < 0) {
+            throw new IllegalArgumentException("missing region");
+        }
+        String start = line.substring(0, first).trim();
+
+        if (start.indexOf('/') >= 0) {
+            addCidr(start, unquote(line.substring(first + 1)));
+            return;
+        }
+
+        int second = line.indexOf(',', first + 1);
+        if (second < 0) {
+            throw new IllegalArgumentException("missing end address or region");
+        }
+        addRange(start, line.substring(first + 1, second).trim(), unquote(line.substring(second + 1)));
+    }
+
+    /**
+     * 添加一个CIDR区间
+     */
+    public void addCidr(String cidr, String region) {
+        int slash = cidr.indexOf('/');
+        String address = cidr.substring(0, slash);
+        int prefix = Integer.parseInt(cidr.substring(slash + 1).trim());
+
+        if (address.indexOf(':') < 0) {
+            long base = requireIPv4(address);
+            if (prefix < 0 || prefix > 32) {
+                throw new IllegalArgumentException("invalid prefix: " + cidr);
+            }
+            long hostMask = prefix == 0 ? 0xFFFFFFFFL : (1L << (32 - prefix)) - 1;
+            long start = base & ~hostMask & 0xFFFFFFFFL;
+            v4Ranges.add(new V4Range(start, start | hostMask, regionId(region)));
+        } else {
+            long[] base = requireIPv6(address);
+            if (prefix < 0 || prefix > 128) {
+                throw new IllegalArgumentException("invalid prefix: " + cidr);
+            }
+            long hiMask = prefix >= 64 ? -1L : (prefix == 0 ? 0 : -1L << (64 - prefix));
+            long loMask = prefix <= 64 ? 0 : (prefix == 128 ? -1L : -1L << (128 - prefix));
+            long startHi = base[0] & hiMask;
+            long startLo = base[1] & loMask;
+            v6Ranges.add(new V6Range(startHi, startLo, startHi | ~hiMask, startLo | ~loMask, regionId(region)));
+        }
+    }
+
+    /**
+     * 添加一个起止地址区间（包含两端）
+     */
+    public void addRange(String start, String end, String region) {
+        if (start.indexOf(':') < 0) {
+            long from = requireIPv4(start);
+            long to = requireIPv4(end);
+            if (from > to) {
+                throw new IllegalArgumentException("start is after end: " + start + " - " + end);
+            }
+            v4Ranges.add(new V4Range(from, to, regionId(region)));
+        } else {
+            long[] from = requireIPv6(start);
+            long[] to = requireIPv6(end);
+            if (OfflineIPDatabase.compare128(from[0], from[1], to[0], to[1]) > 0) {
+                throw new IllegalArgumentException("start is after end: " + start + " - " + end);
+            }
+            v6Ranges.add(new V6Range(from[0], from[1], to[0], to[1], regionId(region)));
+        }
+    }
+
+    /**
+     * 获取已添加的区间数
+     */
+    public int size() {
+        return v4Ranges.size() + v6Ranges.size();
+    }
+
+    /**
+     * 拆分为互不重叠的区间并按起始地址排序后写入数据库文件，查询时只需检查起始地址不大于目标地址的最后一个区间
+     * 先写入临时文件再替换，避免正在使用的映射文件被截断
+     */
+    public int write(File output) throws IOException {
+        // IPv4区间按128位地址的低32位处理，与IPv6使用同一个拆分过程
+        List<V6Range> widened = new ArrayList<>(v4Ranges.size());
+        for (V4Range range : v4Ranges) {
+            widened.add(new V6Range(0, range.start, 0, range.end, range.region));
+        }
+        List<V4Range> v4 = new ArrayList<>();
+        for (V6Range range : flatten(widened)) {
+            v4.add(new V4Range(range.startLo, range.endLo, range.region));
+        }
+        List<V6Range> v6 = flatten(v6Ranges);
+
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File temp = new File(output.getPath() + ".tmp");
+
+        try (OutputStream stream = Files.newOutputStream(temp.toPath());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(OfflineIPDatabase.MAGIC);
+            out.writeInt(OfflineIPDatabase.VERSION);
+            out.writeInt(v4.size());
+            out.writeInt(v6.size());
+            out.writeInt(regions.size());
+
+            for (V4Range range : v4) {
+                out.writeInt((int) range.start);
+                out.writeInt((int) range.end);
+                out.writeInt(range.region);
+            }
+            for (V6Range range : v6) {
+                out.writeLong(range.startHi);
+                out.writeLong(range.startLo);
+                out.writeLong(range.endHi);
+                out.writeLong(range.endLo);
+                out.writeInt(range.region);
+            }
+            for (String region : regions) {
+                byte[] bytes = region.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return v4.size() + v6.size();
+    }
+
+    /**
+     * 把可能重叠或嵌套的区间拆分为按起始地址排序、互不重叠的区间
+     * 每一段使用覆盖它的区间中范围最小的一个，范围相同时使用后添加的区间；相邻且地区相同的段会合并
+     */
+    private static List<V6Range> flatten(List<V6Range> ranges) {
+        int count = ranges.size();
+        Integer[] byStart = new Integer[count];
+        Integer[] byEnd = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byStart[i] = i;
+            byEnd[i] = i;
+        }
+        Arrays.sort(byStart, (a, b) -> compareStart(ranges.get(a), ranges.get(b)));
+        Arrays.sort(byEnd, (a, b) -> compareEnd(ranges.get(a), ranges.get(b)));
+
+        // 覆盖当前位置的区间，范围最小的在堆顶；已结束的区间在到达堆顶时移除
+        PriorityQueue<Integer> active = new PriorityQueue<>((a, b) -> {
+            V6Range x = ranges.get(a);
+            V6Range y = ranges.get(b);
+            int result = OfflineIPDatabase.compare128(x.sizeHi(), x.sizeLo(), y.sizeHi(), y.sizeLo());
+            return result != 0 ? result : Integer.compare(b, a);
+        });
+        boolean[] ended = new boolean[count];
+
+        List<V6Range> result = new ArrayList<>();
+        long segmentHi = 0;
+        long segmentLo = 0;
+        int nextStart = 0;
+        int nextEnd = 0;
+        while (nextEnd < count) {
+            V6Range end = ranges.get(byEnd[nextEnd]);
+            boolean starting = nextStart < count
+                    && compareStartToEnd(ranges.get(byStart[nextStart]), end) <= 0;
+
+            // 下一个边界：区间的起始地址，或区间结束地址的下一个地址
+            long pointHi;
+            long pointLo;
+            if (starting) {
+                V6Range start = ranges.get(byStart[nextStart]);
+                pointHi = start.startHi;
+                pointLo = start.startLo;
+            } else if (end.endHi == -1L && end.endLo == -1L) {
+                // 结束于最大地址的区间没有下一个地址，剩余的部分一直延续到最大地址
+                emit(result, ranges, active, ended, segmentHi, segmentLo, -1L, -1L);
+                break;
+            } else {
+                pointLo = end.endLo + 1;
+                pointHi = pointLo == 0 ? end.endHi + 1 : end.endHi;
+            }
+
+            // 输出上一个边界到当前边界之间的一段
+            if (OfflineIPDatabase.compare128(segmentHi, segmentLo, pointHi, pointLo) < 0) {
+                long lastLo = pointLo - 1;
+                long lastHi = pointLo == 0 ? pointHi - 1 : pointHi;
+                emit(result, ranges, active, ended, segmentHi, segmentLo, lastHi, lastLo);
+            }
+
+            if (starting) {
+                while (nextStart < count && ranges.get(byStart[nextStart]).startHi == pointHi
+                        && ranges.get(byStart[nextStart]).startLo == pointLo) {
+                    active.add(byStart[nextStart++]);
+                }
+            } else {
+                while (nextEnd < count && ranges.get(byEnd[nextEnd]).endHi == end.endHi
+                        && ranges.get(byEnd[nextEnd]).endLo == end.endLo) {
+                    ended[byEnd[nextEnd++]] = true;
+                }
+            }
+            segmentHi = pointHi;
+            segmentLo = pointLo;
+        }
+        return result;
+    }
+
+    /**
+     * 输出一段地址，地区为覆盖它的区间中范围最小的一个，没有区间覆盖时不输出
+     */
+    private static void emit(List<V6Range> result, List<V6Range> ranges, PriorityQueue<Integer> active,
+                             boolean[] ended, long startHi, long startLo, long endHi, long endLo) {
+        while (!active.isEmpty() && ended[active.peek()]) {
+            active.poll();
+        }
+        if (active.isEmpty()) {
+            return;
+        }
+        int region = ranges.get(active.peek()).region;
+
+        // 与上一段相邻且地区相同时合并
+        if (!result.isEmpty()) {
+            V6Range last = result.get(result.size() - 1);
+            long nextLo = last.endLo + 1;
+            long nextHi = nextLo == 0 ? last.endHi + 1 : last.endHi;
+            if (last.region == region && nextHi == startHi && nextLo == startLo) {
+                result.set(result.size() - 1, new V6Range(last.startHi, last.startLo, endHi, endLo, region));
+                return;
+            }
+        }
+        result.add(new V6Range(startHi, startLo, endHi, endLo, region));
+    }
+
+    private static int compareStart(V6Range a, V6Range b) {
+        return OfflineIPDatabase.compare128(a.startHi, a.startLo, b.startHi, b.startLo);
+    }
+
+    private static int compareEnd(V6Range a, V6Range b) {
+        return OfflineIPDatabase.compare128(a.endHi, a.endLo, b.endHi, b.endLo);
+    }
+
+    private static int compareStartToEnd(V6Range start, V6Range end) {
+        return OfflineIPDatabase.compare128(start.startHi, start.startLo, end.endHi, end.endLo);
+    }
+
+    private int regionId(String region) {
+        if (region.getBytes(StandardCharsets.UTF_8).length > 0xFFFF) {
+            throw new IllegalArgumentException("region name too long");
+        }
+        return regionIds.computeIfAbsent(region, key -> {
+            regions.add(key);
+            return regions.size() - 1;
+        });
+    }
+
+    private static long requireIPv4(String address) {
+        long value = IPAddresses.parseIPv4(address, 0, address.length());
+        if (value < 0) {
+            throw new IllegalArgumentException("invalid IPv4 address: " + address);
+        }
+        return value;
+    }
+
+    private static long[] requireIPv6(String address) {
+        long[] value = new long[2];
+        if (!IPAddresses.parseIPv6(address, value)) {
+            throw new IllegalArgumentException("invalid IPv6 address: " + address);
+        }
+        return value;
+    }
+
+    private static String unquote(String value) {
+        value = value.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IPDatabaseConverter <input.csv> <output.db>");
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        int count = convert(new File(args[0]), new File(args[1]));
+        System.out.println("Converted " + count + " ranges in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static class V4Range {
+        final long start;
+        final long end;
+        final int region;
+
+        V4Range(long start, long end, int region) {
+            this.start = start;
+            this.end = end;
+            this.region = region;
+        }
+    }
+
+    private static class V6Range {
+        final long startHi;
+        final long startLo;
+        final long endHi;
+        final long endLo;
+        final int region;
+
+        V6Range(long startHi, long startLo, long endHi, long endLo, int region) {
+            this.startHi = startHi;
+            this.startLo = startLo;
+            this.endHi = endHi;
+            this.endLo = endLo;
+            this.region = region;
+        }
+
+        /**
+         * 区间大小减一的高64位
+         */
+        long sizeHi() {
+            return endHi - startHi - (Long.compareUnsigned(endLo, startLo) < 0 ? 1 : 0);
+        }
+
+        long sizeLo() {
+            return endLo - startLo;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+/**
+ * IP地理位置数据来源
+ */
+public interface IPLocationProvider {
+
+    /**
+     * 查询IP地址对应的地区
+     *
+     * @param ip IP地址
+     * @return 地区名称，无法解析时返回null
+     * @throws Exception 查询失败
+     */
+    String lookup(String ip) throws Exception;
+
+    /**
+     * 查询是否可能阻塞（例如网络请求）
+     * 会阻塞的数据来源只在后台线程中调用，不会阻塞的数据来源直接在请求线程中查询
+     */
+    default boolean isBlocking() {
+        return true;
+    }
+
+    /**
+     * 释放数据来源占用的资源
+     */
+    default void close() {
+    }
+}
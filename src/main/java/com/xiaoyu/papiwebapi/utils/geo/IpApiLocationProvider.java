@@ -0,0 +1,57 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 使用ip-api.com免费服务查询地理位置
+ */
+public class IpApiLocationProvider implements IPLocationProvider {
+
+    // 默认的查询地址，IP追加在末尾
+    public static final String DEFAULT_URL = "http://ip-api.com/line/";
+
+    private final String baseUrl;
+    // 连接和读取超时（毫秒）
+    private final int timeoutMillis;
+
+    public IpApiLocationProvider(int timeoutMillis) {
+        this(DEFAULT_URL, timeoutMillis);
+    }
+
+    /**
+     * @param baseUrl 查询地址，需要兼容ip-api.com的 /line/ 接口，如本地测试用的模拟服务
+     * @param timeoutMillis 连接和读取超时（毫秒）
+     */
+    public IpApiLocationProvider(String baseUrl, int timeoutMillis) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public String lookup(String ip) throws Exception {
+        URL url = new URL(baseUrl + ip + "?fields=country,regionName,city&lang=zh-CN");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(timeoutMillis);
+        conn.setReadTimeout(timeoutMillis);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+            StringBuilder response = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!response.isEmpty()) {
+                    response.append(" ");
+                }
+                response.append(line);
+            }
+
+            return response.toString();
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于内存映射文件的离线IP地区数据库
+ * 文件由 {@link IPDatabaseConverter} 生成，查询时在按起始地址排序的区间上二分查找，不分配对象
+ *
+ * 文件格式（大端序）：
+ * 头部：魔数、版本、IPv4区间数、IPv6区间数、地区数
+ * IPv4区间：起始地址(int) 结束地址(int) 地区编号(int)
+ * IPv6区间：起始地址(long, long) 结束地址(long, long) 地区编号(int)
+ * 地区表：长度(short) UTF-8字节
+ */
+public class OfflineIPDatabase implements IPLocationProvider {
+
+    static final int MAGIC = 0x50574950; // "PWIP"
+    // 版本2起区间互不重叠
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 20;
+    static final int V4_RECORD_SIZE = 12;
+    static final int V6_RECORD_SIZE = 36;
+
+    // 每个线程复用的IPv6解析缓冲区
+    private static final ThreadLocal<long[]> IPV6_SCRATCH = ThreadLocal.withInitial(() -> new long[2]);
+
+    // 只使用绝对位置读取，多个线程可以安全地共享同一个缓冲区
+    private final MappedByteBuffer data;
+    private final int v4Count;
+    private final int v6Count;
+    private final int v4Offset;
+    private final int v6Offset;
+    private final String[] regions;
+
+    private OfflineIPDatabase(MappedByteBuffer data) throws IOException {
+        this.data = data;
+
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not an IP region database");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported IP region database version: " + data.getInt(4));
+        }
+
+        this.v4Count = data.getInt(8);
+        this.v6Count = data.getInt(12);
+        int regionCount = data.getInt(16);
+        this.v4Offset = HEADER_SIZE;
+        this.v6Offset = v4Offset + v4Count * V4_RECORD_SIZE;
+
+        // 地区名称数量很少，加载时一次性解码，查询时直接返回
+        this.regions = new String[regionCount];
+        int position = v6Offset + v6Count * V6_RECORD_SIZE;
+        for (int i = 0; i < regionCount; i++) {
+            int length = data.getShort(position) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            data.get(position + 2, bytes);
+            regions[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 2 + length;
+        }
+    }
+
+    /**
+     * 判断数据库文件是否为当前版本，旧版本的文件需要重新转换
+     */
+    public static boolean isCurrentVersion(File file) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 打开数据库文件
+     *
+     * @param file 数据库文件
+     * @return 数据库实例
+     * @throws IOException 文件不存在或格式错误
+     */
+    public static OfflineIPDatabase open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new OfflineIPDatabase(buffer);
+        }
+    }
+
+    @Override
+    public String lookup(String ip) {
+        if (ip.indexOf(':') < 0) {
+            long address = IPAddresses.parseIPv4(ip, 0, ip.length());
+            return address < 0 ? null : lookupIPv4((int) address);
+        }
+
+        long[] scratch = IPV6_SCRATCH.get();
+        if (!IPAddresses.parseIPv6(ip, scratch)) {
+            return null;
+        }
+        if (IPAddresses.isIPv4Mapped(scratch[0], scratch[1])) {
+            return lookupIPv4((int) scratch[1]);
+        }
+        return lookupIPv6(scratch[0], scratch[1]);
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * 查询IPv4地址
+     *
+     * @param address 32位地址值（按无符号比较）
+     * @return 地区名称，不在任何区间内时返回null
+     */
+    public String lookupIPv4(int address) {
+        int low = 0;
+        int high = v4Count - 1;
+        int found = -1;
+
+        // 查找起始地址不大于目标地址的最后一个区间
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = data.getInt(v4Offset + mid * V4_RECORD_SIZE);
+            if (Integer.compareUnsigned(start, address) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (found < 0) {
+            return null;
+        }
+        int record = v4Offset + found * V4_RECORD_SIZE;
+        if (Integer.compareUnsigned(address, data.getInt(record + 4)) > 0) {
+            return null;
+        }
+        return regions[data.getInt(record + 8)];
+    }
+
+    /**
+     * 查询IPv6地址
+     *
+     * @param hi 高64位
+     * @param lo 低64位
+     * @return 地区名称，不在任何区间内时返回null
+     */
+    public String lookupIPv6(long hi, long lo) {
+        int low = 0;
+        int high = v6Count - 1;
+        int found = -1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int record = v6Offset + mid * V6_RECORD_SIZE;
+            if (compare128(data.getLong(record), data.getLong(record + 8), hi, lo) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (found < 0) {
+            return null;
+        }
+        int record = v6Offset + found * V6_RECORD_SIZE;
+        if (compare128(hi, lo, data.getLong(record + 16), data.getLong(record + 24)) > 0) {
+            return null;
+        }
+        return regions[data.getInt(record + 32)];
+    }
+
+    /**
+     * 获取区间总数
+     */
+    public int size() {
+        return v4Count + v6Count;
+    }
+
+    static int compare128(long aHi, long aLo, long bHi, long bLo) {
+        int result = Long.compareUnsigned(aHi, bHi);
+        return result != 0 ? result : Long.compareUnsigned(aLo, bLo);
+    }
+}
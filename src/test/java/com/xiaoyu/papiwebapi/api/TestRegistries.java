@@ -0,0 +1,27 @@
+package com.xiaoyu.papiwebapi.api;
+
+import java.util.Map;
+
+/**
+ * 在测试中创建API注册表快照
+ */
+public final class TestRegistries {
+
+    private TestRegistries() {
+    }
+
+    /**
+     * @param apis 别名 -> 占位符
+     * @return 版本为1的注册表
+     */
+    public static ApiRegistry of(Map<String, String> apis) {
+        return ApiRegistry.EMPTY.next(apis);
+    }
+
+    /**
+     * 基于已有的注册表生成下一个版本
+     */
+    public static ApiRegistry next(ApiRegistry registry, Map<String, String> apis) {
+        return registry.next(apis);
+    }
+}
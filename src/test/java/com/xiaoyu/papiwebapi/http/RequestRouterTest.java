@@ -0,0 +1,182 @@
+package com.xiaoyu.papiwebapi.http;
+
+import com.xiaoyu.papiwebapi.api.ApiRegistry;
+import com.xiaoyu.papiwebapi.api.TestRegistries;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RequestRouterTest {
+
+    private final AtomicReference<ApiRegistry> registry = new AtomicReference<>(TestRegistries.of(apis(
+            "level", "%player_level%",
+            "money", "%vault_eco_balance%")));
+
+    private static Map<String, String> apis(String... pairs) {
+        Map<String, String> apis = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            apis.put(pairs[i], pairs[i + 1]);
+        }
+        return apis;
+    }
+
+    private RequestRouter router(boolean authEnabled) {
+        return new RequestRouter(authEnabled, "token", "secret", registry::get);
+    }
+
+    private static void assertRoute(RequestRouter router, String path, RequestRouter.Auth auth, RequestRouter.RouteType type) {
+        RequestRouter.Match match = router.route(path);
+        assertEquals(auth, match.getAuth(), path);
+        assertEquals(type, match.getType(), path);
+    }
+
+    @Test
+    public void missingToken() {
+        RequestRouter router = router(true);
+        assertRoute(router, "/", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.HOME);
+        assertRoute(router, "", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.HOME);
+        assertRoute(router, "/level", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/secret/level", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/tokens=secret/level", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+    }
+
+    @Test
+    public void emptyToken() {
+        RequestRouter router = router(true);
+        assertRoute(router, "/token=/level", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/token=", RequestRouter.Auth.MISSING_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+    }
+
+    @Test
+    public void invalidToken() {
+        RequestRouter router = router(true);
+        assertRoute(router, "/token=wrong/level", RequestRouter.Auth.INVALID_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/token=secre/level", RequestRouter.Auth.INVALID_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/token=secrets/level", RequestRouter.Auth.INVALID_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/token=SECRET/level", RequestRouter.Auth.INVALID_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+        assertRoute(router, "/token=wrong", RequestRouter.Auth.INVALID_TOKEN, RequestRouter.RouteType.NOT_FOUND);
+    }
+
+    @Test
+    public void tokenWithoutTrailingSlash() {
+        RequestRouter router = router(true);
+        // 只有令牌段时为首页
+        assertRoute(router, "/token=secret", RequestRouter.Auth.OK, RequestRouter.RouteType.HOME);
+        assertRoute(router, "/token=secret/", RequestRouter.Auth.OK, RequestRouter.RouteType.HOME);
+
+        RequestRouter.Match match = router.route("/token=secret/level/Steve");
+        assertEquals(RequestRouter.Auth.OK, match.getAuth());
+        assertEquals(RequestRouter.RouteType.PLAYER, match.getType());
+        assertEquals("level", match.getEndpoint());
+        assertEquals("Steve", match.getPlayerName());
+    }
+
+    @Test
+    public void authDisabled() {
+        RequestRouter router = router(false);
+        assertRoute(router, "/", RequestRouter.Auth.OK, RequestRouter.RouteType.HOME);
+        assertRoute(router, "", RequestRouter.Auth.OK, RequestRouter.RouteType.HOME);
+        assertRoute(router, "/level", RequestRouter.Auth.OK, RequestRouter.RouteType.ONLINE);
+        // 关闭鉴权时令牌段被当作端点名称
+        assertRoute(router, "/token=secret/level", RequestRouter.Auth.OK, RequestRouter.RouteType.UNKNOWN_ENDPOINT);
+    }
+
+    @Test
+    public void trailingSlashes() {
+        RequestRouter router = router(false);
+        assertRoute(router, "/level/", RequestRouter.Auth.OK, RequestRouter.RouteType.ONLINE);
+        assertRoute(router, "/level//", RequestRouter.Auth.OK, RequestRouter.RouteType.ONLINE);
+        assertRoute(router, "//", RequestRouter.Auth.OK, RequestRouter.RouteType.NOT_FOUND);
+
+        RequestRouter.Match match = router.route("/level/Steve/");
+        assertEquals(RequestRouter.RouteType.PLAYER, match.getType());
+        assertEquals("Steve", match.getPlayerName());
+
+        match = router.route("/level/sort/htl/");
+        assertEquals(RequestRouter.RouteType.SORT, match.getType());
+        assertEquals("htl", match.getSortOrder());
+        assertEquals(-1, match.getLimit());
+
+        match = router.route("/level/sort/lth/5/");
+        assertEquals(RequestRouter.RouteType.SORT, match.getType());
+        assertEquals(5, match.getLimit());
+    }
+
+    @Test
+    public void sortRoutes() {
+        RequestRouter router = router(false);
+        RequestRouter.Match match = router.route("/level/SoRt/HTL/10");
+        assertEquals(RequestRouter.RouteType.SORT, match.getType());
+        assertEquals("level", match.getEndpoint());
+        assertEquals("%player_level%", match.getPlaceholder());
+        // 排序方式保持原样，由处理请求时忽略大小写比较
+        assertEquals("HTL", match.getSortOrder());
+        assertEquals(10, match.getLimit());
+
+        assertEquals(Integer.MAX_VALUE, router.route("/level/sort/htl/2147483647").getLimit());
+        assertEquals(-1, router.route("/level/sort/htl/2147483648").getLimit());
+        assertEquals(-1, router.route("/level/sort/htl/99999999999999999999").getLimit());
+        assertEquals(-1, router.route("/level/sort/htl/-1").getLimit());
+        assertEquals(-1, router.route("/level/sort/htl/ten").getLimit());
+        assertEquals(0, router.route("/level/sort/htl/0").getLimit());
+
+        // 没有排序方式时 sort 被当作玩家名称
+        match = router.route("/level/sort");
+        assertEquals(RequestRouter.RouteType.PLAYER, match.getType());
+        assertEquals("sort", match.getPlayerName());
+    }
+
+    @Test
+    public void parsesIntegers() {
+        assertEquals(42, RequestRouter.parseInt("42", 0, 2));
+        assertEquals(5, RequestRouter.parseInt("+5", 0, 2));
+        assertEquals(Integer.MIN_VALUE, RequestRouter.parseInt("-2147483648", 0, 11));
+        assertEquals(-1, RequestRouter.parseInt("-2147483649", 0, 11));
+        assertEquals(-1, RequestRouter.parseInt("", 0, 0));
+        assertEquals(-1, RequestRouter.parseInt("-", 0, 1));
+        assertEquals(-1, RequestRouter.parseInt("1x", 0, 2));
+        assertEquals(12, RequestRouter.parseInt("/12/", 1, 3));
+    }
+
+    @Test
+    public void builtInRoutesShadowEndpoints() {
+        registry.set(TestRegistries.next(registry.get(), apis(
+                "batch", "%a%", "metrics", "%b%", "logs", "%c%", "stats", "%d%", "Batch", "%e%")));
+        RequestRouter router = router(false);
+
+        assertRoute(router, "/batch", RequestRouter.Auth.OK, RequestRouter.RouteType.BATCH);
+        assertRoute(router, "/metrics", RequestRouter.Auth.OK, RequestRouter.RouteType.METRICS);
+        assertRoute(router, "/logs/Steve", RequestRouter.Auth.OK, RequestRouter.RouteType.LOGS);
+        assertRoute(router, "/stats/", RequestRouter.Auth.OK, RequestRouter.RouteType.STATS);
+        assertNull(router.route("/batch").getEndpoint());
+
+        // 内置路由区分大小写
+        RequestRouter.Match match = router.route("/Batch");
+        assertEquals(RequestRouter.RouteType.ONLINE, match.getType());
+        assertEquals("%e%", match.getPlaceholder());
+    }
+
+    @Test
+    public void followsRegistryChanges() {
+        RequestRouter router = router(false);
+        assertRoute(router, "/kills", RequestRouter.Auth.OK, RequestRouter.RouteType.UNKNOWN_ENDPOINT);
+        long version = router.route("/level").getRegistryVersion();
+
+        Map<String, String> changed = new HashMap<>(registry.get().getApis());
+        changed.put("kills", "%statistic_player_kills%");
+        changed.remove("money");
+        registry.set(TestRegistries.next(registry.get(), changed));
+
+        RequestRouter.Match match = router.route("/kills");
+        assertEquals(RequestRouter.RouteType.ONLINE, match.getType());
+        assertEquals("%statistic_player_kills%", match.getPlaceholder());
+        assertEquals(version + 1, match.getRegistryVersion());
+        assertRoute(router, "/money", RequestRouter.Auth.OK, RequestRouter.RouteType.UNKNOWN_ENDPOINT);
+        assertEquals("money", router.route("/money").getEndpointSegment());
+    }
+}
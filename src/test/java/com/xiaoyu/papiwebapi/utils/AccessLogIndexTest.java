@@ -0,0 +1,85 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogIndexTest {
+
+    private static final int RECORDS = 100;
+
+    @TempDir
+    File tempDir;
+
+    private File writeLog() throws IOException {
+        File file = new File(tempDir, "2026-01-01" + LogManager.LOG_SUFFIX);
+        // 缓冲区较小，写入过程中会多次写入文件
+        try (AccessLogWriter writer = new AccessLogWriter(file, 256)) {
+            for (int i = 0; i < RECORDS; i++) {
+                writer.append(i, "10.0.0." + i, "r", "/p\n" + i, i % 2 == 0, "line\t" + i, 200, "e");
+            }
+        }
+        return file;
+    }
+
+    private static void assertPage(List<AccessLogRecord> page, long newest, int size) {
+        assertEquals(size, page.size());
+        for (int i = 0; i < size; i++) {
+            assertEquals(newest - i, page.get(i).getTime());
+            assertEquals("line\t" + (newest - i), page.get(i).getResponse());
+        }
+    }
+
+    @Test
+    public void readsPagesNewestFirst() throws IOException {
+        File file = writeLog();
+        assertEquals(RECORDS, AccessLogIndex.count(file));
+
+        assertPage(AccessLogIndex.readPage(file, 0, 10), 99, 10);
+        assertPage(AccessLogIndex.readPage(file, 10, 10), 89, 10);
+        // 最后一页不足 limit 条
+        assertPage(AccessLogIndex.readPage(file, 95, 10), 4, 5);
+        assertPage(AccessLogIndex.readPage(file, 0, 1000), 99, RECORDS);
+        assertTrue(AccessLogIndex.readPage(file, RECORDS, 10).isEmpty());
+        assertTrue(AccessLogIndex.readPage(file, 0, 0).isEmpty());
+        assertTrue(AccessLogIndex.readPage(file, -1, 10).isEmpty());
+    }
+
+    @Test
+    public void ignoresUnindexedTail() throws IOException {
+        File file = writeLog();
+        // 写入中断留下的部分记录没有索引
+        Files.write(file.toPath(), "100\t10.0.0.100\tr".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertPage(AccessLogIndex.readPage(file, 0, 3), 99, 3);
+        assertEquals(RECORDS, AccessLogIndex.count(file));
+    }
+
+    @Test
+    public void repairsMissingOrTruncatedIndex() throws IOException {
+        File file = writeLog();
+        File index = AccessLogIndex.indexFile(file);
+        long length = index.length();
+
+        // 丢失最后几条记录的偏移量，以及不完整的偏移量
+        try (java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(index.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length - 3 * AccessLogIndex.ENTRY_BYTES - 3);
+        }
+        assertEquals(RECORDS, AccessLogIndex.repair(file));
+        assertEquals(length, index.length());
+        assertPage(AccessLogIndex.readPage(file, 0, 5), 99, 5);
+
+        assertTrue(index.delete());
+        assertEquals(RECORDS, AccessLogIndex.repair(file));
+        assertPage(AccessLogIndex.readPage(file, 50, 50), 49, 50);
+    }
+}
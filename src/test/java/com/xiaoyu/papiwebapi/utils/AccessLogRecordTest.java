@@ -0,0 +1,88 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccessLogRecordTest {
+
+    private static String encode(AccessLogRecord record) {
+        StringBuilder out = new StringBuilder();
+        record.encode(out);
+        return out.toString();
+    }
+
+    private static AccessLogRecord roundTrip(AccessLogRecord record) {
+        String line = encode(record);
+        // 每条记录只占一行
+        assertEquals(line.length() - 1, line.indexOf('\n'));
+        AccessLogRecord parsed = AccessLogRecord.parse(line.substring(0, line.length() - 1));
+        assertNotNull(parsed, line);
+        return parsed;
+    }
+
+    @Test
+    public void roundTripsSpecialCharacters() {
+        AccessLogRecord record = new AccessLogRecord(1700000000123L, "2001:db8::1", "地区\t名称",
+                "/token=a\\b/level\n/sort", false, "Error: a\tb\r\nc\\", 500, "level\\\t");
+        AccessLogRecord parsed = roundTrip(record);
+
+        assertEquals(record.getTime(), parsed.getTime());
+        assertEquals(record.getIp(), parsed.getIp());
+        assertEquals(record.getRegion(), parsed.getRegion());
+        assertEquals(record.getPath(), parsed.getPath());
+        assertFalse(parsed.isAuthSuccess());
+        assertEquals(record.getResponse(), parsed.getResponse());
+        assertEquals(500, parsed.getStatus());
+        assertEquals(record.getEndpoint(), parsed.getEndpoint());
+    }
+
+    @Test
+    public void roundTripsEscapeLikeText() {
+        // 原样出现的反斜杠和字母不能被当作转义
+        AccessLogRecord parsed = roundTrip(new AccessLogRecord(1L, "1.2.3.4", "\\t", "\\n\\\\", true, "\\", 200, ""));
+        assertEquals("\\t", parsed.getRegion());
+        assertEquals("\\n\\\\", parsed.getPath());
+        assertEquals("\\", parsed.getResponse());
+        assertTrue(parsed.isAuthSuccess());
+        assertEquals("", parsed.getEndpoint());
+    }
+
+    @Test
+    public void encodesNullFieldsAsEmpty() {
+        AccessLogRecord parsed = roundTrip(new AccessLogRecord(1L, "1.2.3.4", null, "/", true, null, 204, null));
+        assertEquals("", parsed.getRegion());
+        assertEquals("", parsed.getResponse());
+        assertEquals("", parsed.getEndpoint());
+    }
+
+    @Test
+    public void parsesLegacyLines() {
+        AccessLogRecord parsed = AccessLogRecord.parse("1700000000000\t1.2.3.4\t本地网络\t/level\t1\tok\\tdone");
+        assertNotNull(parsed);
+        assertEquals(1700000000000L, parsed.getTime());
+        assertEquals("1.2.3.4", parsed.getIp());
+        assertEquals("本地网络", parsed.getRegion());
+        assertEquals("/level", parsed.getPath());
+        assertTrue(parsed.isAuthSuccess());
+        assertEquals("ok\tdone", parsed.getResponse());
+        // 旧版本的记录没有状态码和端点
+        assertEquals(0, parsed.getStatus());
+        assertEquals("", parsed.getEndpoint());
+        assertFalse(parsed.toFullEntry().endsWith(")"));
+    }
+
+    @Test
+    public void rejectsMalformedLines() {
+        assertNull(AccessLogRecord.parse(""));
+        assertNull(AccessLogRecord.parse("1\t2\t3"));
+        assertNull(AccessLogRecord.parse("1\t1.2.3.4\tr\t/\t1\tok\t200"));
+        assertNull(AccessLogRecord.parse("1\t1.2.3.4\tr\t/\t1\tok\t200\tlevel\textra"));
+        assertNull(AccessLogRecord.parse("time\t1.2.3.4\tr\t/\t1\tok"));
+        assertNull(AccessLogRecord.parse("1\t1.2.3.4\tr\t/\t1\tok\tstatus\tlevel"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AccessLogWriterTest {
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    public void dropsTornLineWhenReopened() throws IOException {
+        File file = new File(tempDir, "2026-01-01" + LogManager.LOG_SUFFIX);
+        try (AccessLogWriter writer = new AccessLogWriter(file)) {
+            writer.append(1, "10.0.0.1", "r", "/a", true, "ok", 200, "a");
+            writer.append(2, "10.0.0.2", "r", "/b", true, "ok", 200, "b");
+        }
+        // 上次异常退出时写了一半的记录
+        Files.write(file.toPath(), "3\t10.0.0.3\tr\t/c".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (AccessLogWriter writer = new AccessLogWriter(file)) {
+            writer.append(4, "10.0.0.4", "r", "/d", true, "ok", 200, "d");
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(4, AccessLogRecord.parse(lines.get(2)).getTime());
+        assertEquals(3, AccessLogIndex.count(file));
+        assertEquals(4, AccessLogIndex.readPage(file, 0, 1).get(0).getTime());
+    }
+
+    @Test
+    public void dropsFileWithoutCompleteLine() throws IOException {
+        File file = new File(tempDir, "2026-01-02" + LogManager.LOG_SUFFIX);
+        Files.write(file.toPath(), "1\t10.0.0.1".getBytes(StandardCharsets.UTF_8));
+
+        try (AccessLogWriter writer = new AccessLogWriter(file)) {
+            writer.append(2, "10.0.0.2", "r", "/b", true, "ok", 200, "b");
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertEquals(2, AccessLogRecord.parse(lines.get(0)).getTime());
+        assertEquals(1, AccessLogIndex.count(file));
+    }
+}
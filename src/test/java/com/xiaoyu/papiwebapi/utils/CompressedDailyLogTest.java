@@ -0,0 +1,87 @@
+package com.xiaoyu.papiwebapi.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressedDailyLogTest {
+
+    private static final int RECORDS = 500;
+    // 较小的块，每块只有十几条记录
+    private static final int BLOCK_SIZE = 1024;
+
+    @TempDir
+    File tempDir;
+
+    private DailyLog compress() throws IOException {
+        File plain = new File(tempDir, "2026-01-01" + LogManager.LOG_SUFFIX);
+        try (AccessLogWriter writer = new AccessLogWriter(plain)) {
+            for (int i = 0; i < RECORDS; i++) {
+                writer.append(i, "10.0.0." + (i % 256), "r", "/level/" + i, true, "value " + i, 200, "level");
+            }
+        }
+        File compressed = CompressedDailyLog.compress(plain, BLOCK_SIZE);
+        assertFalse(plain.exists());
+        assertTrue(CompressedDailyLog.blockIndexFile(compressed).length() > 3 * 16, "expected several blocks");
+        DailyLog log = DailyLog.of(compressed, false);
+        assertTrue(log instanceof CompressedDailyLog);
+        return log;
+    }
+
+    @Test
+    public void readsPagesAcrossBlocks() throws IOException {
+        DailyLog log = compress();
+        assertEquals(RECORDS, log.count());
+
+        // 每一页都会跨越块的边界
+        for (int skip = 0; skip < RECORDS; skip += 37) {
+            List<AccessLogRecord> page = log.readRecords(skip, 40);
+            int expected = Math.min(40, RECORDS - skip);
+            assertEquals(expected, page.size());
+            for (int i = 0; i < expected; i++) {
+                assertEquals(RECORDS - 1 - skip - i, page.get(i).getTime());
+            }
+        }
+        assertTrue(log.readRecords(RECORDS, 10).isEmpty());
+    }
+
+    @Test
+    public void readsRecordsAtNumbers() throws IOException {
+        DailyLog log = compress();
+        int[] numbers = {499, 0, 1, 250, 251, 17, 18, 16, 498, -1, RECORDS};
+        List<AccessLogRecord> records = log.readRecordsAt(numbers);
+
+        assertEquals(numbers.length, records.size());
+        for (int i = 0; i < numbers.length - 2; i++) {
+            assertEquals(numbers[i], records.get(i).getTime());
+            assertEquals("/level/" + numbers[i], records.get(i).getPath());
+        }
+        assertNull(records.get(numbers.length - 2));
+        assertNull(records.get(numbers.length - 1));
+    }
+
+    @Test
+    public void scansFromRecord() throws IOException {
+        DailyLog log = compress();
+        List<Long> numbers = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        long end = log.scan(480, (number, record) -> {
+            numbers.add(number);
+            times.add(record.getTime());
+        });
+
+        assertEquals(RECORDS, end);
+        assertEquals(20, numbers.size());
+        assertEquals(480L, (long) numbers.get(0));
+        assertEquals(numbers, times);
+    }
+}
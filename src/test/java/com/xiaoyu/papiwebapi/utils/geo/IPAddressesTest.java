@@ -0,0 +1,74 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IPAddressesTest {
+
+    private static long parseIPv4(String s) {
+        return IPAddresses.parseIPv4(s, 0, s.length());
+    }
+
+    private static long[] parseIPv6(String s) {
+        long[] out = new long[2];
+        assertTrue(IPAddresses.parseIPv6(s, out), s);
+        return out;
+    }
+
+    @Test
+    public void parsesIPv4() {
+        assertEquals(0L, parseIPv4("0.0.0.0"));
+        assertEquals(0xFFFFFFFFL, parseIPv4("255.255.255.255"));
+        assertEquals(0xC0A8010AL, parseIPv4("192.168.1.10"));
+        // 只解析指定的部分
+        assertEquals(0x01020304L, IPAddresses.parseIPv4("ip=1.2.3.4;", 3, 10));
+    }
+
+    @Test
+    public void rejectsInvalidIPv4() {
+        String[] invalid = {"", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1..2.3", "1.2.3.", ".1.2.3", "0001.1.1.1", "1.2.3.a", "1.2.3.4 "};
+        for (String s : invalid) {
+            assertEquals(-1L, parseIPv4(s), s);
+        }
+    }
+
+    @Test
+    public void parsesIPv6() {
+        assertArrayEquals(new long[]{0, 0}, parseIPv6("::"));
+        assertArrayEquals(new long[]{0, 1}, parseIPv6("::1"));
+        assertArrayEquals(new long[]{0x0001000000000000L, 0}, parseIPv6("1::"));
+        assertArrayEquals(new long[]{0x20010DB800000000L, 1}, parseIPv6("2001:db8::1"));
+        assertArrayEquals(new long[]{0x20010DB800000000L, 1}, parseIPv6("2001:0DB8:0:0:0:0:0:1"));
+        assertArrayEquals(new long[]{0x0001000200030004L, 0x0005000600070008L}, parseIPv6("1:2:3:4:5:6:7:8"));
+        assertArrayEquals(new long[]{0x0001000200030004L, 0x0005000600070000L}, parseIPv6("1:2:3:4:5:6:7::"));
+        assertArrayEquals(new long[]{-1L, -1L}, parseIPv6("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        // 内嵌IPv4和区域标识
+        assertArrayEquals(new long[]{0, 0x0000FFFF01020304L}, parseIPv6("::ffff:1.2.3.4"));
+        assertArrayEquals(new long[]{0x0064FF9B00000000L, 0xC0A80001L}, parseIPv6("64:ff9b::192.168.0.1"));
+        assertArrayEquals(new long[]{0xFE80000000000000L, 1}, parseIPv6("fe80::1%eth0"));
+    }
+
+    @Test
+    public void rejectsInvalidIPv6() {
+        String[] invalid = {"", ":", ":::", ":1::", "1:", "1::2::3", "12345::", "g::", "1:2:3:4:5:6:7",
+                "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::", "::1.2.3", "::1.2.3.4:5"};
+        long[] out = new long[2];
+        for (String s : invalid) {
+            assertFalse(IPAddresses.parseIPv6(s, out), s);
+        }
+    }
+
+    @Test
+    public void detectsIPv4Mapped() {
+        long[] mapped = parseIPv6("::ffff:10.0.0.1");
+        assertTrue(IPAddresses.isIPv4Mapped(mapped[0], mapped[1]));
+        long[] compat = parseIPv6("::10.0.0.1");
+        assertFalse(IPAddresses.isIPv4Mapped(compat[0], compat[1]));
+        long[] other = parseIPv6("1::ffff:10.0.0.1");
+        assertFalse(IPAddresses.isIPv4Mapped(other[0], other[1]));
+    }
+}
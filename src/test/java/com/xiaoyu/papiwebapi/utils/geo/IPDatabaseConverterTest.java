@@ -0,0 +1,137 @@
+package com.xiaoyu.papiwebapi.utils.geo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 转换后的数据库通过 {@link OfflineIPDatabase} 查询，检查区间拆分的结果
+ */
+public class IPDatabaseConverterTest {
+
+    @TempDir
+    File tempDir;
+
+    private OfflineIPDatabase write(IPDatabaseConverter converter) throws IOException {
+        File output = new File(tempDir, "ip-region.db");
+        converter.write(output);
+        assertTrue(OfflineIPDatabase.isCurrentVersion(output));
+        return OfflineIPDatabase.open(output);
+    }
+
+    @Test
+    public void nestedRangesUseSmallestRange() throws IOException {
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+        converter.addCidr("10.0.0.0/8", "A");
+        converter.addCidr("10.1.2.0/24", "C");
+        converter.addCidr("10.1.0.0/16", "B");
+        OfflineIPDatabase database = write(converter);
+
+        assertEquals("A", database.lookup("10.0.0.0"));
+        assertEquals("A", database.lookup("10.0.255.255"));
+        assertEquals("B", database.lookup("10.1.0.0"));
+        assertEquals("B", database.lookup("10.1.1.255"));
+        assertEquals("C", database.lookup("10.1.2.0"));
+        assertEquals("C", database.lookup("10.1.2.255"));
+        assertEquals("B", database.lookup("10.1.3.0"));
+        assertEquals("B", database.lookup("10.1.255.255"));
+        assertEquals("A", database.lookup("10.2.0.0"));
+        assertEquals("A", database.lookup("10.255.255.255"));
+        assertNull(database.lookup("9.255.255.255"));
+        assertNull(database.lookup("11.0.0.0"));
+        // IPv4映射地址按IPv4查询
+        assertEquals("C", database.lookup("::ffff:10.1.2.3"));
+        assertEquals(5, database.size());
+    }
+
+    @Test
+    public void sameRangeUsesLaterLine() throws IOException {
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+        converter.addLine("1.0.0.0,1.0.0.255,first");
+        converter.addLine("1.0.0.0/24,second");
+        OfflineIPDatabase database = write(converter);
+
+        assertEquals("second", database.lookup("1.0.0.128"));
+        assertEquals(1, database.size());
+    }
+
+    @Test
+    public void adjacentRanges() throws IOException {
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+        converter.addRange("1.0.0.0", "1.0.0.255", "A");
+        converter.addRange("1.0.1.0", "1.0.1.255", "B");
+        // 相邻且地区相同的区间合并为一个
+        converter.addRange("2.0.0.0", "2.0.0.255", "C");
+        converter.addRange("2.0.1.0", "2.0.1.255", "C");
+        converter.addRange("2001:db8::", "2001:db8::ffff", "D");
+        converter.addRange("2001:db8::1:0", "2001:db8::1:ffff", "E");
+        OfflineIPDatabase database = write(converter);
+
+        assertEquals("A", database.lookup("1.0.0.255"));
+        assertEquals("B", database.lookup("1.0.1.0"));
+        assertNull(database.lookup("1.0.2.0"));
+        assertEquals("C", database.lookup("2.0.0.255"));
+        assertEquals("C", database.lookup("2.0.1.0"));
+        assertEquals("D", database.lookup("2001:db8::ffff"));
+        assertEquals("E", database.lookup("2001:db8::1:0"));
+        assertNull(database.lookup("2001:db8::2:0"));
+        assertEquals(5, database.size());
+    }
+
+    @Test
+    public void rangesEndingAtMaxAddress() throws IOException {
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+        converter.addCidr("ffff::/16", "X");
+        converter.addRange("ffff:ffff::", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", "Y");
+        converter.addCidr("255.0.0.0/8", "V");
+        converter.addRange("255.255.255.0", "255.255.255.255", "W");
+        OfflineIPDatabase database = write(converter);
+
+        assertEquals("X", database.lookup("ffff::1"));
+        assertEquals("X", database.lookup("ffff:fffe:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertEquals("Y", database.lookup("ffff:ffff::"));
+        assertEquals("Y", database.lookup("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertNull(database.lookup("fffe:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertEquals("V", database.lookup("255.255.254.255"));
+        assertEquals("W", database.lookup("255.255.255.255"));
+        assertEquals(4, database.size());
+    }
+
+    @Test
+    public void convertsCsvFile() throws IOException {
+        File csv = new File(tempDir, "ip-region.csv");
+        Files.write(csv.toPath(), Arrays.asList(
+                "# 注释",
+                "",
+                "1.0.0.0,1.0.0.255,\"中国 北京\"",
+                "2001:db8::/32,测试网络"), StandardCharsets.UTF_8);
+        File output = new File(tempDir, "ip-region.db");
+
+        assertEquals(2, IPDatabaseConverter.convert(csv, output));
+        OfflineIPDatabase database = OfflineIPDatabase.open(output);
+        assertEquals("中国 北京", database.lookup("1.0.0.1"));
+        assertEquals("测试网络", database.lookup("2001:db8:1234::1"));
+        assertNull(database.lookup("not an address"));
+    }
+
+    @Test
+    public void rejectsInvalidLines() {
+        IPDatabaseConverter converter = new IPDatabaseConverter();
+        assertThrows(IllegalArgumentException.class, () -> converter.addLine("1.2.3.4"));
+        assertThrows(IllegalArgumentException.class, () -> converter.addLine("1.2.3.4,region"));
+        assertThrows(IllegalArgumentException.class, () -> converter.addLine("1.0.0.1,1.0.0.0,region"));
+        assertThrows(IllegalArgumentException.class, () -> converter.addLine("1.0.0.0/33,region"));
+        assertThrows(IllegalArgumentException.class, () -> converter.addLine("::2,::1,region"));
+        assertEquals(0, converter.size());
+    }
+}